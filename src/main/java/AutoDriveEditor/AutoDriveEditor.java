@@ -14,6 +14,7 @@ import AutoDriveEditor.Listeners.EditorListener;
 import AutoDriveEditor.Locale.LocaleManager;
 import AutoDriveEditor.Managers.ChangeManager;
 import AutoDriveEditor.Managers.VersionManager;
+import AutoDriveEditor.MapPanel.MapImage;
 
 import static AutoDriveEditor.GUI.GUIImages.*;
 import static AutoDriveEditor.Locale.LocaleManager.*;
@@ -35,6 +36,7 @@ public class AutoDriveEditor extends JFrame {
 
     public static boolean DEBUG = false;
     public static boolean EXPERIMENTAL = false;
+    public static boolean FOOTPRINT = false;
 
     public AutoDriveEditor() {
         super();
@@ -59,15 +61,10 @@ public class AutoDriveEditor extends JFrame {
                         saveConfigFile(null, false);
                     }
                 }
-                if ( getMapPanel().connectionDrawThread != null ) {
-                    ConnectionDrawThread.stop();
-                    getMapPanel().connectionDrawThread.interrupt();
-                }
-
-                if ( getMapPanel().nodeDrawThread != null ) {
-                    NodeDrawThread.stop();
-                    getMapPanel().nodeDrawThread.interrupt();
+                if ( getMapPanel().renderPipeline != null ) {
+                    getMapPanel().renderPipeline.shutdown();
                 }
+                MapImage.disposeMapTiles();
 
                 if ( scheduledExecutorService != null ) {
 
@@ -126,6 +123,10 @@ public class AutoDriveEditor extends JFrame {
                 LOG.info("## WARNING ..... Experimental features are unlocked, config corruption is possible.. USE --ONLY-- ON BACKUP CONFIGS!!");
                 LOG.info("##");
             }
+            if (Objects.equals(arg, "-FOOTPRINT")) {
+                FOOTPRINT = true;
+                LOG.info("## Logging the network memory footprint after every load");
+            }
         }
 
         SwingUtilities.invokeLater(() -> {
@@ -1,7 +1,11 @@
 package AutoDriveEditor.GUI;
 
 import javax.swing.*;
+import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import static AutoDriveEditor.Utils.ImageUtils.*;
 
@@ -34,6 +38,12 @@ public class GUIImages {
     public static ImageIcon reverseConnectionSubPrioIcon;
     public static ImageIcon reverseConnectionSubPrioSelectedIcon;
 
+    // copies of the node images already scaled to the sizes they are being drawn at, see
+    // getScaledImage()
+
+    private static final int MAX_SCALED_SIZES = 8;
+    private static final Map<BufferedImage, LinkedHashMap<Long, BufferedImage>> scaledImages = new WeakHashMap<>();
+
     public static void loadIcons() {
         //AD Tractor icon for main window
         tractorImage = loadImage("editor/tractor.png");
@@ -72,4 +82,40 @@ public class GUIImages {
     public static ImageIcon getMarkerIcon() {
         return markerIcon;
     }
+
+    //
+    // The image scaled to width x height, for drawing with an unscaled drawImage().
+    //
+    // Drawing a node with drawImage(image, x, y, size, size, null) scales the image again for
+    // every node of every frame. The node size only changes with the zoom and every node in a
+    // frame is the same whole number of pixels across, so the images are scaled once for each
+    // size and kept ( the last few sizes of each image ). They are scaled with the same nearest
+    // neighbour interpolation the map panel draws with, so the nodes look exactly as before,
+    // and stored premultiplied, which is the quickest format to blend onto the frame.
+    //
+    // Safe to call from the render workers, returns null if there is nothing to draw.
+    //
+
+    public static synchronized BufferedImage getScaledImage(BufferedImage source, int width, int height) {
+        if (source == null || width <= 0 || height <= 0) return null;
+        LinkedHashMap<Long, BufferedImage> sizes = scaledImages.computeIfAbsent(source, key -> new LinkedHashMap<Long, BufferedImage>(MAX_SCALED_SIZES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+                return size() > MAX_SCALED_SIZES;
+            }
+        });
+        Long size = ((long) width << 32) | height;
+        BufferedImage scaled = sizes.get(size);
+        if (scaled == null) {
+            scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(source, 0, 0, width, height, null);
+            g.dispose();
+            sizes.put(size, scaled);
+        }
+        return scaled;
+    }
 }
@@ -53,6 +53,7 @@ public class MenuBuilder {
     public static final String MENU_DEBUG_ENABLE = "Enable Debug";
 
     public static final String MENU_DEBUG_MOVETO_NODE = "DEBUG MOVETO NODE";
+    public static final String MENU_DEBUG_FOOTPRINT = "DEBUG FOOTPRINT";
     public static final String MENU_DEBUG_SHOWID = "DEBUG ID";
     public static final String MENU_DEBUG_FILEIO = "DEBUG CONFIG";
     public static final String MENU_DEBUG_SELECTED_LOCATION = "DEBUG SELECTED LOCATION";
@@ -219,6 +220,7 @@ public class MenuBuilder {
         debugMenu = makeMenu("menu_debug", KeyEvent.VK_D, "menu_debug_accstring", menuBar);
         debugMenu.setVisible(false);
         makeMenuItem("menu_debug_movetonode", "menu_debug_movetonode_accstring", debugMenu, menuListener, MENU_DEBUG_MOVETO_NODE, true);
+        makeMenuItem("menu_debug_footprint", "menu_debug_footprint_accstring", debugMenu, menuListener, MENU_DEBUG_FOOTPRINT, true);
         debugMenu.addSeparator();
         makeCheckBoxMenuItem("menu_debug_showID", "menu_debug_showID_accstring", KeyEvent.VK_6, InputEvent.ALT_DOWN_MASK, bDebugShowID, debugMenu, menuListener, MENU_DEBUG_SHOWID, true);
         makeCheckBoxMenuItem("menu_debug_showselectedlocation", "menu_debug_showselectedlocation_accstring", KeyEvent.VK_7, InputEvent.ALT_DOWN_MASK, bDebugShowSelectedLocation, debugMenu, menuListener, MENU_DEBUG_SELECTED_LOCATION, true);
@@ -27,7 +27,7 @@ public class CurvePanelListener implements ItemListener, ChangeListener {
                 } else if (cubicCurve != null && isCubicCurveCreated) {
                     cubicCurve.setNodeType(NODE_FLAG_STANDARD);
                 }
-                mapPanel.repaint();
+                mapPanel.requestRender(RENDER_OVERLAY);
                 break;
             case RADIOBUTTON_PATHTYPE_SUBPRIO:
                 if (quadCurve != null && isQuadCurveCreated) {
@@ -35,7 +35,7 @@ public class CurvePanelListener implements ItemListener, ChangeListener {
                 } else if (cubicCurve != null && isCubicCurveCreated) {
                     cubicCurve.setNodeType(NODE_FLAG_SUBPRIO);
                 }
-                mapPanel.repaint();
+                mapPanel.requestRender(RENDER_OVERLAY);
                 break;
             case RADIOBUTTON_PATHTYPE_REVERSE:
                 if (button.isSelected()) {
@@ -48,7 +48,7 @@ public class CurvePanelListener implements ItemListener, ChangeListener {
                     cubicCurve.setReversePath(button.isSelected());
                     cubicCurve.setDualPath(false);
                 }
-                mapPanel.repaint();
+                mapPanel.requestRender(RENDER_OVERLAY);
                 break;
             case RADIOBUTTON_PATHTYPE_DUAL:
                 if (button.isSelected()) {
@@ -63,7 +63,7 @@ public class CurvePanelListener implements ItemListener, ChangeListener {
                     cubicCurve.setReversePath(false);
                 }
 
-                mapPanel.repaint();
+                mapPanel.requestRender(RENDER_OVERLAY);
                 break;
         }
     }
@@ -76,10 +76,10 @@ public class CurvePanelListener implements ItemListener, ChangeListener {
             if (value < 2) value = 2;
             if (MapPanel.quadCurve != null) {
                 MapPanel.quadCurve.setNumInterpolationPoints(value);
-                MapPanel.getMapPanel().repaint();
+                MapPanel.getMapPanel().requestRender(RENDER_OVERLAY);
             } else if (cubicCurve != null) {
                 MapPanel.cubicCurve.setNumInterpolationPoints(value);
-                MapPanel.getMapPanel().repaint();
+                MapPanel.getMapPanel().requestRender(RENDER_OVERLAY);
             }
         }
     }
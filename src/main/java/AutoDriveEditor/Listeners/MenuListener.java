@@ -2,6 +2,7 @@ package AutoDriveEditor.Listeners;
 
 import AutoDriveEditor.Managers.CopyPasteManager;
 import AutoDriveEditor.MapPanel.MapPanel;
+import AutoDriveEditor.RoadNetwork.NetworkFootprint;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -439,6 +440,9 @@ public class MenuListener implements ActionListener, ItemListener {
             case MENU_DEBUG_MOVETO_NODE:
                 centreNode();
                 break;
+            case MENU_DEBUG_FOOTPRINT:
+                showInTextArea(String.join("\n", NetworkFootprint.measure(roadMap).getReport()), true, true);
+                break;
         }
 
     }
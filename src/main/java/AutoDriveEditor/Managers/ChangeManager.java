@@ -1,11 +1,13 @@
 package AutoDriveEditor.Managers;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 
-import AutoDriveEditor.MapPanel.LinearLine;
 import AutoDriveEditor.MapPanel.MapPanel;
 import AutoDriveEditor.RoadNetwork.MapMarker;
 import AutoDriveEditor.RoadNetwork.MapNode;
+import AutoDriveEditor.RoadNetwork.MapTransaction;
 import AutoDriveEditor.RoadNetwork.RoadMap;
 
 import static AutoDriveEditor.GUI.MenuBuilder.*;
@@ -262,7 +264,9 @@ public class ChangeManager {
         }
 
         public void redo(){
-            RoadMap.mapNodes.addAll(this.storeNodes);
+            MapTransaction transaction = RoadMap.beginTransaction();
+            transaction.addNodes(this.storeNodes);
+            transaction.commit();
             getMapPanel().repaint();
             getMapPanel().setStale(true);
         }
@@ -286,11 +290,7 @@ public class ChangeManager {
         public void undo(){
             if (bDebugTest) startTimer();
             for (NodeLinks insertNode : this.nodeListToDelete) {
-                if (bDebugUndoRedo) LOG.info("Insert {} ({})",insertNode.node.id,insertNode.nodeIDBackup);
-                if (insertNode.node.id != insertNode.nodeIDBackup) {
-                    if (bDebugUndoRedo) LOG.info("## RemoveNode Undo ## ID mismatch.. correcting ID {} -> ID {}", insertNode.node.id, insertNode.nodeIDBackup);
-                    insertNode.node.id = insertNode.nodeIDBackup;
-                }
+                if (bDebugUndoRedo) LOG.info("Insert {}",insertNode.node.id);
                 roadMap.insertMapNode(insertNode.node, insertNode.otherIncoming, insertNode.otherOutgoing);
                 if (insertNode.linkedMarker != null) {
                     if (bDebugUndoRedo) LOG.info("## RemoveNode Undo ## MapNode ID {} has a linked MapMarker.. restoring {} ( {} )", insertNode.node.id, insertNode.linkedMarker.name, insertNode.linkedMarker.group);
@@ -298,24 +298,17 @@ public class ChangeManager {
                 }
             }
 
-            /*if (!bDebugTest) {
-                LinkedList<MapNode> nodes = getMapPanel().getRoadMap().mapNodes;
-                for (int i = 0; i <= nodes.size() - 1 ; i++) {
-                    MapNode mapNode = nodes.get(i);
-                    mapNode.id = i+1;
-                }
-            }*/
-
             if (bDebugTest) LOG.info("result = {}", stopTimer());
             getMapPanel().repaint();
             getMapPanel().setStale(this.isStale);
         }
 
         public void redo(){
+            LinkedList<MapNode> toDelete = new LinkedList<>();
             for (NodeLinks nodeLinks : this.nodeListToDelete) {
-                MapNode toDelete = nodeLinks.node;
-                roadMap.removeMapNode(toDelete);
+                toDelete.add(nodeLinks.node);
             }
+            RoadMap.removeMapNodes(toDelete);
             getMapPanel().repaint();
             getMapPanel().setStale(true);
         }
@@ -356,20 +349,17 @@ public class ChangeManager {
                 this.fromNode.restoreConnections();
                 this.toNode.restoreConnections();
             } else {
+                LinkedList<MapNode> toDelete = new LinkedList<>();
                 for (int j = 1; j < this.autoGeneratedNodes.size() - 1 ; j++) {
                     MapNodeStore storedNode = this.autoGeneratedNodes.get(j);
-                    MapNode toDelete = storedNode.getMapNode();
-                    if (bDebugUndoRedo) LOG.info("## LinearLineChanger.undo ## undo is removing ID {} from MapNodes", toDelete.id);
-                    MapPanel.roadMap.removeMapNode(toDelete);
-                    if (storedNode.hasChangedID()) {
-                        if (bDebugUndoRedo) LOG.info("## LinearLineChanger.undo ## Removed node changed ID {}", storedNode.mapNode.id);
-                        storedNode.resetID();
-                        if (bDebugUndoRedo) LOG.info("## LinearLineChanger.undo ## Reset ID to {}", storedNode.mapNode.id);
-                    }
-                    if (MapPanel.hoveredNode == toDelete) {
+                    MapNode mapNode = storedNode.getMapNode();
+                    if (bDebugUndoRedo) LOG.info("## LinearLineChanger.undo ## undo is removing ID {} from MapNodes", mapNode.id);
+                    toDelete.add(mapNode);
+                    if (MapPanel.hoveredNode == mapNode) {
                         MapPanel.hoveredNode = null;
                     }
                 }
+                RoadMap.removeMapNodes(toDelete);
             }
             getMapPanel().repaint();
             getMapPanel().setStale(this.isStale);
@@ -377,20 +367,18 @@ public class ChangeManager {
 
         public void redo(){
 
+            MapTransaction transaction = RoadMap.beginTransaction();
             if (this.autoGeneratedNodes.size() > 2 ) {
                 for (int i = 1; i < this.autoGeneratedNodes.size() - 1 ; i++) {
                     MapNodeStore storedNode = this.autoGeneratedNodes.get(i);
                     storedNode.clearConnections();
-                    // during the undo process, removeMapNode deletes all the connections coming
-                    // to/from this node but adjusts the node id's,  so we have to manually restore
-                    // the id, .getMapNode() will check this for us and correct if necessary before
-                    // passing us the node info.
                     MapNode newNode = storedNode.getMapNode();
                     if (bDebugUndoRedo) LOG.info("## LinearLineChanger.redo ## Inserting ID {} in MapNodes", newNode.id);
-                    roadMap.insertMapNode(newNode, null,null);
+                    transaction.addNode(newNode);
                 }
             }
-            LinearLine.connectNodes(getLineLinkedList(), this.connectionType);
+            transaction.connectChain(getLineLinkedList(), this.connectionType);
+            transaction.commit();
             getMapPanel().repaint();
             getMapPanel().setStale(true);
         }
@@ -432,48 +420,32 @@ public class ChangeManager {
         }
 
         public void undo(){
+            LinkedList<MapNode> toDelete = new LinkedList<>();
             for (int i = 1; i <= this.storedCurveNodeList.size() - 2 ; i++) {
                 MapNodeStore curveNode = this.storedCurveNodeList.get(i);
                 if (bDebugUndoRedo) LOG.info("## QuadCurveChanger.undo ## Removing node ID {}", curveNode.mapNode.id);
-                roadMap.removeMapNode(curveNode.mapNode);
-                if (curveNode.hasChangedID()) {
-                    if (bDebugUndoRedo) LOG.info("## QuadCurveChanger.undo ## ID {} changed", curveNode.mapNode.id);
-                    curveNode.resetID();
-                    if (bDebugUndoRedo) LOG.info("## QuadCurveChanger.undo ## Reset ID to {}", curveNode.mapNode.id);
-                }
+                toDelete.add(curveNode.mapNode);
             }
+            RoadMap.removeMapNodes(toDelete);
             getMapPanel().repaint();
             getMapPanel().setStale(this.isStale);
         }
 
         public void redo(){
 
+            MapTransaction transaction = RoadMap.beginTransaction();
             for (int i = 1; i <= this.storedCurveNodeList.size() - 2 ; i++) {
                 MapNodeStore curveNode = this.storedCurveNodeList.get(i);
                 curveNode.clearConnections();
                 if (bDebugUndoRedo) LOG.info("## QuadCurveChanger ## Inserting mapNode ID {}", curveNode.mapNode.id);
-                roadMap.insertMapNode(curveNode.getMapNode(), null,null);
-                if (curveNode.hasChangedID()) curveNode.resetID();
+                transaction.addNode(curveNode.getMapNode());
             }
-            connectNodes(getCurveLinkedList(), this.isReversePath, this.isDualPath);
+            transaction.connectChain(getCurveLinkedList(), getCurveConnectionType(this.isReversePath, this.isDualPath));
+            transaction.commit();
             getMapPanel().repaint();
             getMapPanel().setStale(true);
         }
 
-        public static void connectNodes(LinkedList<MapNode> mergeNodesList, boolean reversePath, boolean dualPath)  {
-            for (int j = 0; j < mergeNodesList.size() - 1; j++) {
-                MapNode startNode = mergeNodesList.get(j);
-                MapNode endNode = mergeNodesList.get(j+1);
-                if (reversePath) {
-                    MapPanel.createConnectionBetween(startNode,endNode,CONNECTION_REVERSE);
-                } else if (dualPath) {
-                    MapPanel.createConnectionBetween(startNode,endNode,CONNECTION_DUAL);
-                } else {
-                    MapPanel.createConnectionBetween(startNode,endNode,CONNECTION_STANDARD);
-                }
-            }
-        }
-
         public LinkedList<MapNode> getCurveLinkedList() {
             LinkedList<MapNode> list = new LinkedList<>();
             for (int i = 0; i <= this.storedCurveNodeList.size() - 1 ; i++) {
@@ -513,6 +485,7 @@ public class ChangeManager {
             for (int i = 0; i <= this.nodesPriorityChanged.size() - 1 ; i++) {
                 MapNode mapNode = this.nodesPriorityChanged.get(i);
                 mapNode.flag = 1 - mapNode.flag;
+                RoadMap.fireNodeFlagChanged(mapNode);
             }
             getMapPanel().repaint();
             getMapPanel().setStale(this.isStale);
@@ -522,6 +495,7 @@ public class ChangeManager {
             for (int i = 0; i <= this.nodesPriorityChanged.size() - 1 ; i++) {
                 MapNode mapNode = this.nodesPriorityChanged.get(i);
                 mapNode.flag = 1 - mapNode.flag;
+                RoadMap.fireNodeFlagChanged(mapNode);
             }
             getMapPanel().repaint();
             getMapPanel().setStale(true);
@@ -595,25 +569,53 @@ public class ChangeManager {
         }
 
         public void undo() {
-            for (int i = 0; i < roadMap.mapMarkers.size(); i++) {
-                MapMarker mapMarker = roadMap.mapMarkers.get(i);
-                if (mapMarker.mapNode == this.mapNode) {
-                    mapMarker.name = this.oldName;
-                    mapMarker.group = this.oldGroup;
-                }
+            for (MapMarker mapMarker : RoadMap.getMapMarkers(this.mapNode)) {
+                mapMarker.name = this.oldName;
+                mapMarker.group = this.oldGroup;
             }
+            RoadMap.fireMarkerChanged(this.mapNode);
             getMapPanel().repaint();
             getMapPanel().setStale(this.isStale);
         }
 
         public void redo() {
-            for (int i = 0; i < roadMap.mapMarkers.size(); i++) {
-                MapMarker mapMarker = roadMap.mapMarkers.get(i);
-                if (mapMarker.mapNode == this.mapNode) {
-                    mapMarker.name = this.newName;
-                    mapMarker.group = this.newGroup;
-                }
+            for (MapMarker mapMarker : RoadMap.getMapMarkers(this.mapNode)) {
+                mapMarker.name = this.newName;
+                mapMarker.group = this.newGroup;
             }
+            RoadMap.fireMarkerChanged(this.mapNode);
+            getMapPanel().repaint();
+            getMapPanel().setStale(true);
+        }
+    }
+
+    //
+    // Road Map Changer
+    //
+
+    // The whole map was replaced by an edited copy ( e.g. a merge ), undo puts the previous
+    // map back, so the changes recorded before the swap still find their nodes
+
+    public static class RoadMapChanger implements Changeable{
+        private final Boolean isStale;
+        private final RoadMap previousMap;
+        private final RoadMap newMap;
+
+        public RoadMapChanger(RoadMap previous, RoadMap replacement){
+            super();
+            this.isStale = getMapPanel().isStale();
+            this.previousMap = previous;
+            this.newMap = replacement;
+        }
+
+        public void undo() {
+            getMapPanel().setRoadMap(this.previousMap);
+            getMapPanel().repaint();
+            getMapPanel().setStale(this.isStale);
+        }
+
+        public void redo() {
+            getMapPanel().setRoadMap(this.newMap);
             getMapPanel().repaint();
             getMapPanel().setStale(true);
         }
@@ -634,20 +636,32 @@ public class ChangeManager {
         }
 
         public void undo() {
-            for (ZStore storedNode : nodeList) {
-                storedNode.mapNode.x += storedNode.diffX;
-                storedNode.mapNode.y += storedNode.diffY;
-                storedNode.mapNode.z += storedNode.diffZ;
+            RoadMap.beginEventBatch();
+            try {
+                for (ZStore storedNode : nodeList) {
+                    storedNode.mapNode.x += storedNode.diffX;
+                    storedNode.mapNode.y += storedNode.diffY;
+                    storedNode.mapNode.z += storedNode.diffZ;
+                    RoadMap.fireNodeMoved(storedNode.mapNode);
+                }
+            } finally {
+                RoadMap.endEventBatch();
             }
             getMapPanel().repaint();
             getMapPanel().setStale(this.isStale);
         }
 
         public void redo() {
-            for (ZStore storedNode : nodeList) {
-                storedNode.mapNode.x += -storedNode.diffX;
-                storedNode.mapNode.y += -storedNode.diffY;
-                storedNode.mapNode.z += -storedNode.diffZ;
+            RoadMap.beginEventBatch();
+            try {
+                for (ZStore storedNode : nodeList) {
+                    storedNode.mapNode.x += -storedNode.diffX;
+                    storedNode.mapNode.y += -storedNode.diffY;
+                    storedNode.mapNode.z += -storedNode.diffZ;
+                    RoadMap.fireNodeMoved(storedNode.mapNode);
+                }
+            } finally {
+                RoadMap.endEventBatch();
             }
             getMapPanel().repaint();
             getMapPanel().setStale(true);
@@ -682,26 +696,17 @@ public class ChangeManager {
 
     private static class MapNodeStore {
         private final MapNode mapNode;
-        private final int mapNodeIDBackup;
-        private final LinkedList<MapNode> incomingBackup;
-        private final LinkedList<MapNode> outgoingBackup;
+        private final ArrayList<MapNode> incomingBackup;
+        private final ArrayList<MapNode> outgoingBackup;
 
         public MapNodeStore(MapNode node) {
             this.mapNode = node;
-            this.mapNodeIDBackup = node.id;
-            this.incomingBackup = new LinkedList<>();
-            this.outgoingBackup = new LinkedList<>();
+            this.incomingBackup = new ArrayList<>();
+            this.outgoingBackup = new ArrayList<>();
             backupConnections();
         }
 
-        public MapNode getMapNode() {
-            if (this.hasChangedID()) this.resetID();
-            return this.mapNode;
-        }
-
-        public void resetID() { this.mapNode.id = this.mapNodeIDBackup; }
-
-        public boolean hasChangedID() { return this.mapNode.id != this.mapNodeIDBackup; }
+        public MapNode getMapNode() { return this.mapNode; }
 
         public void clearConnections() {
             clearIncoming();
@@ -730,13 +735,9 @@ public class ChangeManager {
 
         public void restoreOutgoing() { copyList(this.outgoingBackup, this.mapNode.outgoing); }
 
-        private void copyList(LinkedList<MapNode> from, LinkedList<MapNode> to) {
+        private void copyList(List<MapNode> from, List<MapNode> to) {
             to.clear();
-            // use .clone() ??
-            for (int i = 0; i <= from.size() - 1 ; i++) {
-                MapNode mapNode = from.get(i);
-                to.add(mapNode);
-            }
+            to.addAll(from);
         }
     }
 
@@ -7,6 +7,7 @@ import java.util.LinkedList;
 import AutoDriveEditor.GUI.MenuBuilder;
 import AutoDriveEditor.MapPanel.MapPanel;
 import AutoDriveEditor.RoadNetwork.MapNode;
+import AutoDriveEditor.RoadNetwork.MapTransaction;
 import AutoDriveEditor.RoadNetwork.RoadMap;
 
 import static AutoDriveEditor.AutoDriveEditor.*;
@@ -153,22 +154,21 @@ public class CopyPasteManager {
         }
         clearMultiSelection();
 
-        canAutoSave = false;
-
-        int startID = RoadMap.mapNodes.size() + 1;
+        MapTransaction transaction = RoadMap.beginTransaction();
         for (MapNode node : newNodes) {
-            node.id = startID++;
             node.x += selectionCentre.getX();
             node.z += selectionCentre.getY();
             double yValue = getYValueFromHeightMap(node.x, node.z);
             if (yValue != -1) {
                 node.y = yValue;
             }
-            node.isSelected = true;
-            RoadMap.mapNodes.add(node);
+            node.setSelected(true);
+            transaction.addNode(node);
             multiSelectList.add(node);
         }
 
+        canAutoSave = false;
+        transaction.commit();
         canAutoSave = true;
 
         isMultipleSelected = true;
@@ -181,10 +181,15 @@ public class CopyPasteManager {
     public static void rotateSelected(double angle) {
         rectangleInfo recInfo = getSelectionBounds(multiSelectList, WORLD_COORDINATES);
         canAutoSave = false;
-        for (MapNode node : multiSelectList) {
-            if ( recInfo != null ) {
-                rotate(node, recInfo.recCentre, angle);
+        RoadMap.beginEventBatch();
+        try {
+            for (MapNode node : multiSelectList) {
+                if ( recInfo != null ) {
+                    rotate(node, recInfo.recCentre, angle);
+                }
             }
+        } finally {
+            RoadMap.endEventBatch();
         }
         canAutoSave = true;
         MapPanel.getMapPanel().repaint();
@@ -199,6 +204,7 @@ public class CopyPasteManager {
         rotation.transform(new Point2D.Double(node.x, node.z), result);
         node.x = result.getX();
         node.z = result.getY();
+        RoadMap.fireNodeMoved(node);
         //node.x = (double) Math.round(result.getX() * 50) / 50;
         //node.z = (double)Math.round(result.getY() * 50) / 50;
     }
@@ -10,6 +10,7 @@ import java.io.IOException;
 import AutoDriveEditor.GUI.MenuBuilder;
 import AutoDriveEditor.Import.DDSReader;
 import AutoDriveEditor.MapPanel.MapPanel;
+import AutoDriveEditor.MapPanel.MapTileStore;
 
 import static AutoDriveEditor.Locale.LocaleManager.*;
 import static AutoDriveEditor.MapPanel.MapImage.*;
@@ -64,6 +65,22 @@ public class ImportManager {
         image.setRGB(0, 0, width, height, pixels, 0, width);
         LOG.info("Image size {} , {}", image.getWidth(), image.getHeight());
 
+        // FS22 images cover twice the map area, only the middle half is the map
+
+        BufferedImage mapArea = image;
+        if (gameImage == FS22_IMAGE) {
+            mapArea = image.getSubimage(image.getWidth() / 4, image.getHeight() /4, image.getWidth() / 2, image.getHeight() / 2);
+        }
+
+        // Bigger than 2048 x 2048, keep the full detail in tiles instead of scaling it away
+
+        if (MapTileStore.isTiledSize(mapArea.getWidth(), mapArea.getHeight())) {
+            setImage(mapArea, false);
+            MapPanel.forceMapImageRedraw();
+            MapPanel.isUsingConvertedImage = true;
+            return;
+        }
+
         // Scale the BufferImage to a size the editor can use ( 2048 x 2048 )
 
         GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
@@ -82,12 +99,7 @@ public class ImportManager {
         g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_DEFAULT);
         g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_DEFAULT);
         g.setRenderingHint(RenderingHints.KEY_RESOLUTION_VARIANT, RenderingHints.VALUE_RESOLUTION_VARIANT_SIZE_FIT);
-        if (gameImage == FS19_IMAGE) {
-            g.drawImage( image, 0, 0, 2048, 2048, null);
-        } else if (gameImage == FS22_IMAGE) {
-            BufferedImage crop = image.getSubimage(image.getWidth() / 4, image.getHeight() /4, image.getWidth() / 2, image.getHeight() / 2);
-            g.drawImage( crop, 0, 0, 2048, 2048, null);
-        }
+        g.drawImage( mapArea, 0, 0, 2048, 2048, null);
         /*if (offsetX != 0 || offsetY != 0) {
 
         } else {
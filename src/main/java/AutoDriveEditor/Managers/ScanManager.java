@@ -5,12 +5,17 @@ import javax.swing.*;
 import AutoDriveEditor.AutoDriveEditor;
 import AutoDriveEditor.Utils.GUIUtils;
 import AutoDriveEditor.GUI.MenuBuilder;
+import AutoDriveEditor.RoadNetwork.GraphStore;
 import AutoDriveEditor.RoadNetwork.MapNode;
 import AutoDriveEditor.RoadNetwork.RoadMap;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.concurrent.ExecutionException;
 
+import static AutoDriveEditor.AutoDriveEditor.*;
 import static AutoDriveEditor.GUI.MenuBuilder.*;
 import static AutoDriveEditor.Locale.LocaleManager.*;
 import static AutoDriveEditor.MapPanel.MapPanel.*;
@@ -36,7 +41,7 @@ public class ScanManager {
             node.clearWarning();
             //node.hasWarning = false;
             //node.warningType = NODE_WARNING_NONE;
-            node.warningNodes.clear();
+            node.clearWarningNodes();
         }
         ScanNetworkWorker scanThread = new ScanNetworkWorker(searchDistance);
         scanThread.execute();
@@ -51,40 +56,139 @@ public class ScanManager {
         return 0;
     }
 
+    //
+    // The scan runs on a snapshot of the network taken when it starts ( see RoadMap.getSnapshot() ),
+    // the worker never looks at mapNodes or the spatial index the editor keeps changing, and
+    // only hands back the overlapping pairs for done() to flag. Nodes
+    // closer than 1.5 x the search distance on all three axis overlap, the same test
+    // checkAreaForNodeOverlap() does, the snapshot is bucketed into cells that size so each node
+    // is only tested against the nodes in the cells around it.
+    //
+
     public static class ScanNetworkWorker extends SwingWorker<Integer, Void> {
 
         public double scanArea;
         public int count = 0;
+        private final GraphStore snapshot;
+
+        // the overlapping pairs found, as snapshot indexes, the lower index first
+
+        private int[] overlapPairs = new int[64];
+        private int overlapPairCount = 0;
+        private long scanTime;
 
         public ScanNetworkWorker(double distance) {
             this.scanArea = distance;
+            this.snapshot = RoadMap.getSnapshot();
         }
 
         @Override
         protected Integer doInBackground() throws Exception {
             long timer = 0;
             LOG.info("Starting Background Scan for Overlapping Nodes");
-            LOG.info(" ## Distance to search around node = {} meters ##", searchDistance);
+            LOG.info(" ## Distance to search around node = {} meters ##", this.scanArea);
             timer = System.currentTimeMillis();
 
-            for (MapNode node : RoadMap.mapNodes) {
-                int result = checkAreaForNodeOverlap(node);
-                if (result > 0) count += 1;
+            findOverlaps();
+            this.scanTime = System.currentTimeMillis() - timer;
+            return count;
+        }
+
+        // The warnings are put on the nodes here on the EDT, the same thread that selects and
+        // edits them
+
+        @Override
+        protected void done() {
+            try {
+                get();
+                for (int i = 0; i < this.overlapPairCount; i += 2) {
+                    MapNode node = this.snapshot.getNode(this.overlapPairs[i]);
+                    MapNode mapNode = this.snapshot.getNode(this.overlapPairs[i + 1]);
+                    node.addWarningNode(mapNode);
+                    node.setWarning(NODE_WARNING_OVERLAP);
+                    mapNode.addWarningNode(node);
+                    mapNode.setWarning(NODE_WARNING_OVERLAP);
+                }
+
+                String text = "Roadmap nodes = " + this.snapshot.size() + " --- Found " + count + " nodes overlapping --- Time Taken " +
+                        (float) this.scanTime / 1000 + " seconds" ;
+                GUIUtils.showInTextArea(text, true, true);
+                getMapPanel().repaint();
+            } catch (InterruptedException | ExecutionException e) {
+                LOG.error(e.getMessage(), e);
+            } finally {
+                networkScanned = true;
+                MenuBuilder.fixNodesEnabled(true);
             }
+        }
 
+        private void findOverlaps() {
+            int nodeCount = this.snapshot.size();
+            double reach = this.scanArea * 1.5;
+            double cellSize = Math.max(reach, 0.001);
+            HashMap<Long, int[]> cells = new HashMap<>();
+            long[] nodeCells = new long[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                long cellX = (long) Math.floor(this.snapshot.getX(i) / cellSize);
+                long cellZ = (long) Math.floor(this.snapshot.getZ(i) / cellSize);
+                nodeCells[i] = cellKey(cellX, cellZ);
+                int[] cell = cells.get(nodeCells[i]);
+
+                // cell[0] is the number of node indexes following it
+
+                if (cell == null) {
+                    cell = new int[4];
+                } else if (cell[0] + 1 == cell.length) {
+                    cell = Arrays.copyOf(cell, cell.length * 2);
+                }
+                cell[++cell[0]] = i;
+                cells.put(nodeCells[i], cell);
+            }
 
+            boolean[] overlapping = new boolean[nodeCount];
+            int[] found = new int[16];
+            for (int i = 0; i < nodeCount; i++) {
+                double x = this.snapshot.getX(i);
+                double y = this.snapshot.getY(i);
+                double z = this.snapshot.getZ(i);
+                long cellX = (long) Math.floor(x / cellSize);
+                long cellZ = (long) Math.floor(z / cellSize);
+                int foundCount = 0;
+                for (long aroundX = cellX - 1; aroundX <= cellX + 1; aroundX++) {
+                    for (long aroundZ = cellZ - 1; aroundZ <= cellZ + 1; aroundZ++) {
+                        int[] cell = cells.get(cellKey(aroundX, aroundZ));
+                        if (cell == null) continue;
+                        for (int c = 1; c <= cell[0]; c++) {
+                            int other = cell[c];
+                            if (other <= i) continue;
+                            if (Math.abs(this.snapshot.getX(other) - x) < reach && Math.abs(this.snapshot.getY(other) - y) < reach && Math.abs(this.snapshot.getZ(other) - z) < reach) {
+                                if (foundCount == found.length) found = Arrays.copyOf(found, foundCount * 2);
+                                found[foundCount++] = other;
+                            }
+                        }
+                    }
+                }
 
-            String text = "Roadmap nodes = " + mapNodes.size() + " --- Found " + count + " nodes overlapping --- Time Taken " +
-                    (float) (System.currentTimeMillis() - timer) / 1000 + " seconds" ;
-            GUIUtils.showInTextArea(text, true, true);
-            getMapPanel().repaint();
-            return count;
+                // in network order, the order the warning lists were always built in
+
+                Arrays.sort(found, 0, foundCount);
+                for (int f = 0; f < foundCount; f++) {
+                    if (this.overlapPairCount + 2 > this.overlapPairs.length) {
+                        this.overlapPairs = Arrays.copyOf(this.overlapPairs, this.overlapPairs.length * 2);
+                    }
+                    this.overlapPairs[this.overlapPairCount++] = i;
+                    this.overlapPairs[this.overlapPairCount++] = found[f];
+                    overlapping[i] = true;
+                    overlapping[found[f]] = true;
+                }
+            }
+            for (boolean isOverlapping : overlapping) {
+                if (isOverlapping) count++;
+            }
         }
 
-        @Override
-        protected void done() {
-            networkScanned = true;
-            MenuBuilder.fixNodesEnabled(true);
+        private static long cellKey(long cellX, long cellZ) {
+            return (cellX << 32) ^ (cellZ & 0xFFFFFFFFL);
         }
     }
 
@@ -109,7 +213,10 @@ public class ScanManager {
             double areaY = (node.y + searchAreaHalf) - worldStartY;
             double areaZ = (node.z + searchAreaHalf) - worldStartZ;
 
-            for (MapNode mapNode : RoadMap.mapNodes) {
+            // only nodes within 1.5 x searchDistance on x/z can pass the test below
+
+            double reach = searchDistance * 1.5;
+            for (MapNode mapNode : RoadMap.spatialIndex.getNodesInArea(node.x - reach, node.z - reach, node.x + reach, node.z + reach)) {
                 if (mapNode != node) {
                     if (worldStartX < mapNode.x + searchDistance && (worldStartX + areaX) > mapNode.x - searchDistance &&
                             worldStartY < mapNode.y + searchDistance && (worldStartY + areaY) > mapNode.y - searchDistance &&
@@ -117,15 +224,13 @@ public class ScanManager {
 
                         result += 1;
 
-                        if (!mapNode.warningNodes.contains(node)) {
-                            mapNode.warningNodes.add(node);
-                            mapNode.hasWarning = true;
-                            mapNode.warningType = NODE_WARNING_OVERLAP;
+                        if (!mapNode.getWarningNodes().contains(node)) {
+                            mapNode.addWarningNode(node);
+                            mapNode.setWarning(NODE_WARNING_OVERLAP);
                         }
-                        if (!node.warningNodes.contains(mapNode)) {
-                            node.warningNodes.add(mapNode);
-                            node.hasWarning = true;
-                            node.warningType = NODE_WARNING_OVERLAP;
+                        if (!node.getWarningNodes().contains(mapNode)) {
+                            node.addWarningNode(mapNode);
+                            node.setWarning(NODE_WARNING_OVERLAP);
                         }
                     }
                 }
@@ -139,13 +244,12 @@ public class ScanManager {
         if (checkAreaForNodeOverlap(node) == 0 ) {
             //LOG.info("Node clear");
 
-            for (MapNode mapNode : node.warningNodes) {
+            for (MapNode mapNode : node.getWarningNodes()) {
                 //LOG.info("removing {} from {} warning list",node.id, mapNode.id);
-                mapNode.warningNodes.remove(node);
+                mapNode.removeWarningNode(node);
                 //mapNode.hasWarning = mapNode.warningNodes.size() != 0;
-                if (mapNode.warningNodes.size() != 0) {
-                    mapNode.hasWarning = true;
-                    mapNode.warningType = NODE_WARNING_OVERLAP;
+                if (mapNode.getWarningNodeCount() != 0) {
+                    mapNode.setWarning(NODE_WARNING_OVERLAP);
                 } else {
                     //mapNode.hasWarning = false;
                     mapNode.clearWarning();
@@ -153,7 +257,7 @@ public class ScanManager {
             }
 
             node.clearWarning();
-            node.warningNodes.clear();
+            node.clearWarningNodes();
         }
     }
 
@@ -162,101 +266,141 @@ public class ScanManager {
         if (response == JOptionPane.YES_OPTION) {
             if (!networkScanned) {
                 LOG.info("need to run network scan first");
-            } else {
+            } else if (roadMap != null) {
                 saveMergeBackupConfigFile();
                 canAutoSave = false;
-                LinkedList<MapNode> mergedIncoming = new LinkedList<>();
-                LinkedList<MapNode> mergedOutgoing = new LinkedList<>();
-                LinkedList<MapNode> deleteNodeList = new LinkedList<>();
-                LinkedList<MapNode> mergeNodeList = new LinkedList<>();
+                MergeNodesWorker mergeThread = new MergeNodesWorker(roadMap);
+                mergeThread.execute();
+            }
+        }
+    }
 
-                LOG.info("Running merge nodes");
-                for (MapNode mapNode : RoadMap.mapNodes) {
-                    if (mapNode.hasWarning && !mapNode.scheduleDelete) {
+    //
+    // The merge runs on a private copy of the road map so the editor stays responsive, the
+    // copy replaces the live map when it's finished unless the network was edited in the
+    // meantime, then the result is thrown away and the network is left as it was.
+    //
 
-                        if (bDebugMerge) LOG.info("Merging overlapping nodes into ID {}", mapNode.id);
+    public static class MergeNodesWorker extends SwingWorker<LinkedList<MapNode>, Void> {
 
-                        for (MapNode overlapNode : mapNode.warningNodes) {
+        private final RoadMap liveMap;
+        private final RoadMap workingMap;
+        private final long startVersion;
+        private int deleteCount = 0;
 
-                            if (bDebugMerge) LOG.info("Storing incoming for {}", overlapNode.id);
+        public MergeNodesWorker(RoadMap liveMap) {
+            this.liveMap = liveMap;
+            this.workingMap = liveMap.copy();
+            this.startVersion = RoadMap.getNetworkVersion();
+        }
 
-                            for (MapNode overlapNodeIncoming : overlapNode.incoming) {
-                                if (overlapNodeIncoming != mapNode && !mergedIncoming.contains(overlapNodeIncoming)) {
-                                    if (bDebugMerge) LOG.info("adding {} to mergedIncoming", overlapNodeIncoming.id);
-                                    mergedIncoming.add(overlapNodeIncoming);
-                                }
-                                if (overlapNodeIncoming.outgoing.contains(overlapNode)) {
-                                    if (!overlapNodeIncoming.outgoing.contains(mapNode)) {
-                                        if (bDebugMerge) LOG.info("adding {} to {}.outgoing", mapNode.id, overlapNodeIncoming.id);
-                                        overlapNodeIncoming.outgoing.add(mapNode);
-                                    }
-                                }
-                            }
+        @Override
+        protected LinkedList<MapNode> doInBackground() {
+            LinkedHashSet<MapNode> mergedIncoming = new LinkedHashSet<>();
+            LinkedHashSet<MapNode> mergedOutgoing = new LinkedHashSet<>();
+            LinkedList<MapNode> deleteNodeList = new LinkedList<>();
+            LinkedList<MapNode> mergeNodeList = new LinkedList<>();
 
-                            if (bDebugMerge) LOG.info("Storing outgoing for {}", overlapNode.id);
+            LOG.info("Running merge nodes");
+            for (MapNode mapNode : this.workingMap.getNodes()) {
+                if (mapNode.hasWarning() && !mapNode.isScheduledForDelete()) {
 
-                            for (MapNode outgoingNode : overlapNode.outgoing) {
-                                if (!mergedOutgoing.contains(outgoingNode)) {
-                                    if (bDebugMerge) LOG.info("adding {} to mergedOutgoing", outgoingNode.id);
-                                    if (outgoingNode != mapNode) mergedOutgoing.add(outgoingNode);
-                                }
-                                if (outgoingNode.incoming.contains(overlapNode)) {
-                                    if (bDebugMerge) LOG.info("adding {} to {}.outgoing", mapNode.id, outgoingNode.id);
-                                    if (!outgoingNode.incoming.contains(mapNode)) outgoingNode.incoming.add(mapNode);
-                                }
-                            }
+                    if (bDebugMerge) LOG.info("Merging overlapping nodes into ID {}", mapNode.id);
 
-                            for (MapNode reverseNode : RoadMap.mapNodes) {
-                                if (reverseNode.outgoing.contains(overlapNode) && !overlapNode.incoming.contains(reverseNode)) {
-                                    if (bDebugMerge) LOG.info("#### reverse incoming Connection from {}", reverseNode.id);
-                                    if (!reverseNode.outgoing.contains(mapNode)) reverseNode.outgoing.add(mapNode);
-                                }
-                                if (reverseNode.incoming.contains(overlapNode)) {
-                                    if (bDebugMerge) LOG.info("#### reverse incoming Connection from {}", reverseNode.id);
-                                    if (!reverseNode.incoming.contains(mapNode)) reverseNode.incoming.add(mapNode);
+                    for (MapNode overlapNode : mapNode.getWarningNodes()) {
+
+                        if (bDebugMerge) LOG.info("Storing incoming for {}", overlapNode.id);
+
+                        for (MapNode overlapNodeIncoming : overlapNode.incoming) {
+                            if (overlapNodeIncoming != mapNode && !mergedIncoming.contains(overlapNodeIncoming)) {
+                                if (bDebugMerge) LOG.info("adding {} to mergedIncoming", overlapNodeIncoming.id);
+                                mergedIncoming.add(overlapNodeIncoming);
+                            }
+                            if (overlapNodeIncoming.outgoing.contains(overlapNode)) {
+                                if (!overlapNodeIncoming.outgoing.contains(mapNode)) {
+                                    if (bDebugMerge) LOG.info("adding {} to {}.outgoing", mapNode.id, overlapNodeIncoming.id);
+                                    overlapNodeIncoming.outgoing.add(mapNode);
                                 }
                             }
+                        }
 
-                            // edge case #1 - remove self references
-                            for (MapNode node : mapNode.incoming) {
-                                if (node == mapNode) mapNode.incoming.remove(mapNode);
+                        if (bDebugMerge) LOG.info("Storing outgoing for {}", overlapNode.id);
+
+                        for (MapNode outgoingNode : overlapNode.outgoing) {
+                            if (!mergedOutgoing.contains(outgoingNode)) {
+                                if (bDebugMerge) LOG.info("adding {} to mergedOutgoing", outgoingNode.id);
+                                if (outgoingNode != mapNode) mergedOutgoing.add(outgoingNode);
                             }
-                            for (MapNode node : mapNode.outgoing) {
-                                if (node == mapNode) mapNode.outgoing.remove(mapNode);
+                            if (outgoingNode.incoming.contains(overlapNode)) {
+                                if (bDebugMerge) LOG.info("adding {} to {}.outgoing", mapNode.id, outgoingNode.id);
+                                if (!outgoingNode.incoming.contains(mapNode)) outgoingNode.incoming.add(mapNode);
                             }
-
-                            if (bDebugMerge) LOG.info("stored Connections - Deleting node {}", overlapNode.id);
-                            overlapNode.scheduleDelete = true;
-                            deleteNodeList.add(overlapNode);
                         }
-                        if (bDebugMerge) LOG.info("Adding all connections to mapNode {}", mapNode.id);
 
-                        for (MapNode node : mapNode.incoming) {
-                            if (!mergedIncoming.contains(node) && !node.scheduleDelete) mergedIncoming.add(node);
+                        for (MapNode reverseNode : this.workingMap.outgoingReferrersOf(overlapNode)) {
+                            if (!overlapNode.incoming.contains(reverseNode)) {
+                                if (bDebugMerge) LOG.info("#### reverse incoming Connection from {}", reverseNode.id);
+                                if (!reverseNode.outgoing.contains(mapNode)) reverseNode.outgoing.add(mapNode);
+                            }
                         }
-                        for (MapNode node : mapNode.outgoing) {
-                            if (!mergedOutgoing.contains(node) && !node.scheduleDelete) mergedOutgoing.add(node);
+                        for (MapNode reverseNode : this.workingMap.incomingReferrersOf(overlapNode)) {
+                            if (bDebugMerge) LOG.info("#### reverse incoming Connection from {}", reverseNode.id);
+                            if (!reverseNode.incoming.contains(mapNode)) reverseNode.incoming.add(mapNode);
                         }
-                        mapNode.incoming.clear();
-                        mapNode.outgoing.clear();
-                        mapNode.incoming.addAll(mergedIncoming);
-                        mapNode.outgoing.addAll(mergedOutgoing);
-                        mergeNodeList.add(mapNode);
-                        mergedIncoming.clear();
-                        mergedOutgoing.clear();
+
+                        // edge case #1 - remove self references
+                        mapNode.incoming.removeIf(node -> node == mapNode);
+                        mapNode.outgoing.removeIf(node -> node == mapNode);
+
+                        if (bDebugMerge) LOG.info("stored Connections - Deleting node {}", overlapNode.id);
+                        overlapNode.setScheduledForDelete(true);
+                        deleteNodeList.add(overlapNode);
+                    }
+                    if (bDebugMerge) LOG.info("Adding all connections to mapNode {}", mapNode.id);
+
+                    for (MapNode node : mapNode.incoming) {
+                        if (!mergedIncoming.contains(node) && !node.isScheduledForDelete()) mergedIncoming.add(node);
+                    }
+                    for (MapNode node : mapNode.outgoing) {
+                        if (!mergedOutgoing.contains(node) && !node.isScheduledForDelete()) mergedOutgoing.add(node);
                     }
+                    mapNode.incoming.clear();
+                    mapNode.outgoing.clear();
+                    mapNode.incoming.addAll(mergedIncoming);
+                    mapNode.outgoing.addAll(mergedOutgoing);
+                    mergeNodeList.add(mapNode);
+                    mergedIncoming.clear();
+                    mergedOutgoing.clear();
                 }
-                String text = "Merging nodes completed - Removing " + deleteNodeList.size() + " nodes";
-                GUIUtils.showInTextArea(text, true, true);
-                for (MapNode nodeToDelete : deleteNodeList) {
-                    removeMapNode(nodeToDelete);
+            }
+            this.deleteCount = deleteNodeList.size();
+            this.workingMap.removeNodes(deleteNodeList);
+            return mergeNodeList;
+        }
+
+        @Override
+        protected void done() {
+            try {
+                LinkedList<MapNode> mergeNodeList = get();
+                if (RoadMap.getNetworkVersion() != this.startVersion) {
+                    LOG.info("Network was edited while merging, discarding the merge result");
+                    GUIUtils.showInTextArea("Merging nodes cancelled - the network was edited while merging", true, true);
+                    return;
                 }
 
+                String text = "Merging nodes completed - Removing " + this.deleteCount + " nodes";
+                GUIUtils.showInTextArea(text, true, true);
+
+                // the undo history refers to nodes of the map being replaced, undoing the merge
+                // puts that map back
+
+                changeManager.addChangeable(new ChangeManager.RoadMapChanger(this.liveMap, this.workingMap));
+                getMapPanel().setRoadMap(this.workingMap);
+
                 for (MapNode mergedNode : mergeNodeList) {
                     if (checkAreaForNodeOverlap(mergedNode) == 0) {
-                        mergedNode.hasWarning = false;
-                        mergedNode.warningNodes.clear();
-                        getMapPanel().repaint();
+                        mergedNode.clearWarning();
+                        mergedNode.clearWarningNodes();
                     } else {
                         LOG.info("mapnode is still overlapping");
                     }
@@ -267,6 +411,11 @@ public class ScanManager {
                         LOG.info(" #### HIGH CONNECTION COUNT #### ID {} -- incoming {} , outgoing {}", node.id, node.incoming.size(), node.outgoing.size());
                     }
                 }
+                getMapPanel().setStale(true);
+                getMapPanel().repaint();
+            } catch (InterruptedException | ExecutionException e) {
+                LOG.error(e.getMessage(), e);
+            } finally {
                 canAutoSave = true;
             }
         }
@@ -0,0 +1,130 @@
+package AutoDriveEditor.MapPanel;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+//
+// Collects connection arrows into one path so a whole colour layer goes to the screen with
+// a single Graphics2D.draw() instead of up to five drawLine() calls per connection.
+//
+// The arrow heads are worked out from the unit vector along the connection turned by a
+// fixed +/-20 degrees, the same shape drawArrowBetween() always drew without the atan2(),
+// cos() and sin() calls for every connection. End points are cut to whole pixels just like
+// drawLine() did, so arrows drawn either way line up exactly.
+//
+// Not thread safe, each drawing thread keeps its own and reset()s it between layers.
+//
+
+public class ArrowPath {
+
+    private static final double HEAD_COS = Math.cos(Math.toRadians(20));
+    private static final double HEAD_SIN = Math.sin(Math.toRadians(20));
+
+    private final Path2D.Double path;
+    private final int[] segments;
+    private double nodeRadius;
+    private double headLength;
+    private boolean drawHeads;
+    private int arrowCount;
+
+    public ArrowPath() {
+        this.path = new Path2D.Double(Path2D.WIND_NON_ZERO, 1024);
+        this.segments = new int[20];
+    }
+
+    // Sizes for the arrows that follow, they depend on the zoom level and node size the
+    // arrows are drawn for
+
+    public void setScale(double zoomLevel, double nodeSize) {
+        this.nodeRadius = nodeSize * zoomLevel * 0.5;
+        this.headLength = 1.3 * zoomLevel;
+        this.drawHeads = zoomLevel > 2.5;
+    }
+
+    public void addArrow(double startX, double startY, double targetX, double targetY, boolean dual) {
+        int count = computeSegments(startX, startY, targetX, targetY, dual, this.nodeRadius, this.headLength, this.drawHeads, this.segments);
+        for (int i = 0; i < count; i += 4) {
+            this.path.moveTo(this.segments[i], this.segments[i + 1]);
+            this.path.lineTo(this.segments[i + 2], this.segments[i + 3]);
+        }
+        this.arrowCount++;
+    }
+
+    // a plain line without the node gaps or heads, for the zoomed out connections
+
+    public void addLine(double startX, double startY, double targetX, double targetY) {
+        this.path.moveTo(startX, startY);
+        this.path.lineTo(targetX, targetY);
+        this.arrowCount++;
+    }
+
+    public void draw(Graphics2D g) {
+        if (this.arrowCount > 0) g.draw(this.path);
+    }
+
+    // empties the path, the storage it grew to is kept for the next layer
+
+    public void reset() {
+        this.path.reset();
+        this.arrowCount = 0;
+    }
+
+    public boolean isEmpty() { return this.arrowCount == 0; }
+
+    // The line segments of one arrow as x1,y1,x2,y2 quads in out ( room for 5 segments ),
+    // returns how many ints were written
+
+    static int computeSegments(double startX, double startY, double targetX, double targetY, boolean dual, double nodeRadius, double headLength, boolean drawHeads, int[] out) {
+
+        // unit vector pointing back from the target to the start, atan2(0,0) was 0 so
+        // stacked nodes get the 0 degree direction as before
+
+        double vecX = startX - targetX;
+        double vecY = startY - targetY;
+        double length = Math.sqrt((vecX * vecX) + (vecY * vecY));
+        double unitX = 1;
+        double unitY = 0;
+        if (length > 0) {
+            unitX = vecX / length;
+            unitY = vecY / length;
+        }
+
+        // the line starts and finishes on the circumference of the nodes
+
+        double lineStartX = startX - (unitX * nodeRadius);
+        double lineStartY = startY - (unitY * nodeRadius);
+        double lineEndX = targetX + (unitX * nodeRadius);
+        double lineEndY = targetY + (unitY * nodeRadius);
+
+        int count = 0;
+        count = put(out, count, lineStartX, lineStartY, lineEndX, lineEndY);
+        if (!drawHeads) return count;
+
+        // the head is the back vector turned 20 degrees either way
+
+        double leftX = (unitX * HEAD_COS) + (unitY * HEAD_SIN);
+        double leftY = (unitY * HEAD_COS) - (unitX * HEAD_SIN);
+        double rightX = (unitX * HEAD_COS) - (unitY * HEAD_SIN);
+        double rightY = (unitY * HEAD_COS) + (unitX * HEAD_SIN);
+
+        count = put(out, count, lineEndX, lineEndY, targetX + (leftX * headLength), targetY + (leftY * headLength));
+        count = put(out, count, lineEndX, lineEndY, targetX + (rightX * headLength), targetY + (rightY * headLength));
+
+        if (dual) {
+
+            // the head at the start points the other way, the same vectors negated
+
+            count = put(out, count, lineStartX, lineStartY, startX - (leftX * headLength), startY - (leftY * headLength));
+            count = put(out, count, lineStartX, lineStartY, startX - (rightX * headLength), startY - (rightY * headLength));
+        }
+        return count;
+    }
+
+    private static int put(int[] out, int count, double x1, double y1, double x2, double y2) {
+        out[count] = (int) x1;
+        out[count + 1] = (int) y1;
+        out[count + 2] = (int) x2;
+        out[count + 3] = (int) y2;
+        return count + 4;
+    }
+}
@@ -0,0 +1,610 @@
+package AutoDriveEditor.MapPanel;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+
+import AutoDriveEditor.RoadNetwork.ChainIndex;
+import AutoDriveEditor.RoadNetwork.ConnectionList;
+import AutoDriveEditor.RoadNetwork.EdgeIndex;
+import AutoDriveEditor.RoadNetwork.GraphStore;
+import AutoDriveEditor.RoadNetwork.MapNode;
+import AutoDriveEditor.RoadNetwork.NetworkEvent;
+import AutoDriveEditor.RoadNetwork.NetworkListener;
+import AutoDriveEditor.RoadNetwork.RoadMap;
+
+import static AutoDriveEditor.MapPanel.MapPanel.*;
+import static AutoDriveEditor.XMLConfig.EditorXML.*;
+
+//
+// Keeps the connection arrows pre-drawn in tiles, so a repaint that didn't change the network
+// ( hovering, selecting, the curve previews ) or only moved the view just copies images
+// to the back buffer instead of drawing every visible connection again.
+//
+// Tiles are TILE_SIZE square and laid out in "scaled" space, the world position multiplied
+// by the current zoom, so a tile stays valid while panning. Each combination of zoom level,
+// map zoom factor and node size has its own set of tiles ( a bucket ), the last few buckets
+// are kept so zooming back in/out can reuse them.
+//
+// Missing tiles are filled from the connections RoadMap.edgeIndex has crossing them, so
+// drawing the tiles for a small area doesn't have to look at the whole network. When more
+// than one tile is missing they are drawn in parallel on the render pool.
+//
+// Edits reach the cache as RoadMap change events, every connection that could have been
+// drawn differently because of them ( looked up in the snapshot the tiles were drawn from
+// and in the new one ) has the tiles it passes through thrown away, everything else stays.
+//
+
+public class ConnectionTileCache implements NetworkListener {
+
+    public static final int TILE_SIZE = 256;
+
+    private static final int MAX_BUCKETS = 3;
+    private static final int MIN_CACHED_TILES = 96;
+
+    // tiles with nothing in them share this image and are never drawn
+
+    private static final BufferedImage EMPTY_TILE = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE);
+
+    // added to the tile local coordinates ( and taken off again with a translate ) so the
+    // int rounding in ArrowPath always rounds the same way, whichever tile draws it
+
+    private static final int BIAS = 1 << 14;
+
+    private final LinkedHashMap<BucketKey, Bucket> buckets;
+    private final Set<MapNode> dirtyNodes;
+    private boolean resetPending;
+    private GraphStore drawnSnapshot;
+    private int maxCachedTiles;
+    private int lastTilesDrawn;
+
+    // per frame working storage, only ever touched from draw() so it is reused rather than
+    // allocated again for every frame and layer
+
+    private final HashMap<Long, PendingTile> missing;
+    private final ArrayList<PendingTile> pendingPool;
+    private final ArrayList<PendingTile> toDraw;
+
+    // tiles are drawn on several threads at once, each keeps its own path
+
+    private static final ThreadLocal<ArrowPath> ARROW_PATHS = ThreadLocal.withInitial(ArrowPath::new);
+
+    private static final class BucketKey {
+        private final double zoomLevel;
+        private final int mapZoomFactor;
+        private final double nodeSize;
+        private final boolean simplified;
+
+        private BucketKey(double zoomLevel, int mapZoomFactor, double nodeSize, boolean simplified) {
+            this.zoomLevel = zoomLevel;
+            this.mapZoomFactor = mapZoomFactor;
+            this.nodeSize = nodeSize;
+            this.simplified = simplified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BucketKey)) return false;
+            BucketKey other = (BucketKey) o;
+            return Double.compare(other.zoomLevel, this.zoomLevel) == 0 && other.mapZoomFactor == this.mapZoomFactor && Double.compare(other.nodeSize, this.nodeSize) == 0 && other.simplified == this.simplified;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(this.zoomLevel) * 31 + Double.doubleToLongBits(this.nodeSize);
+            return ((int) (bits ^ (bits >>> 32)) * 31 + this.mapZoomFactor) * 2 + (this.simplified ? 1 : 0);
+        }
+    }
+
+    // All the tiles of one zoom level, least recently drawn first
+
+    private final class Bucket {
+        private final BucketKey key;
+        private final double scale;
+        private final double offset;
+        private final double padding;
+        private final LinkedHashMap<Long, BufferedImage> tiles;
+
+        private Bucket(BucketKey key) {
+            this.key = key;
+            this.scale = key.zoomLevel / key.mapZoomFactor;
+            this.offset = 1024 * key.mapZoomFactor;
+            this.padding = (key.nodeSize * key.zoomLevel * 0.5) + (1.3 * key.zoomLevel) + 2;
+            this.tiles = new LinkedHashMap<Long, BufferedImage>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+                    return size() > maxCachedTiles;
+                }
+            };
+        }
+
+        private double toScaled(double world) { return (world + this.offset) * this.scale; }
+
+        private double toWorld(double scaled) { return (scaled / this.scale) - this.offset; }
+
+        // throw away every tile the world space box ( plus the arrow padding ) touches
+
+        private void invalidate(double minX, double minZ, double maxX, double maxZ) {
+            if (this.tiles.isEmpty()) return;
+            int startX = tileOf(toScaled(minX) - this.padding);
+            int startY = tileOf(toScaled(minZ) - this.padding);
+            int endX = tileOf(toScaled(maxX) + this.padding);
+            int endY = tileOf(toScaled(maxZ) + this.padding);
+            long area = (long) (endX - startX + 1) * (endY - startY + 1);
+            if (area > this.tiles.size()) {
+                this.tiles.keySet().removeIf(key -> {
+                    int tileX = (int) (key >> 32);
+                    int tileY = (int) (long) key;
+                    return tileX >= startX && tileX <= endX && tileY >= startY && tileY <= endY;
+                });
+            } else {
+                for (int tileX = startX; tileX <= endX; tileX++) {
+                    for (int tileY = startY; tileY <= endY; tileY++) {
+                        this.tiles.remove(key(tileX, tileY));
+                    }
+                }
+            }
+        }
+    }
+
+    // A tile waiting to be drawn, and the connections that pass through it
+
+    private static final class PendingTile {
+        private int tileX;
+        private int tileY;
+        private int[] connections = new int[16];
+        private long[] packed = new long[8];
+        private int count;
+        private BufferedImage image;
+
+        // zoomed out tiles are drawn from whole chains instead
+
+        private final ArrayList<ChainIndex.Chain> chains = new ArrayList<>();
+
+        private PendingTile reuse(int tileX, int tileY) {
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.count = 0;
+            this.chains.clear();
+            return this;
+        }
+
+        private boolean isEmpty() { return this.count == 0 && this.chains.isEmpty(); }
+
+        private void add(int node, int connection) {
+            if (this.count + 2 > this.connections.length) this.connections = Arrays.copyOf(this.connections, this.connections.length * 2);
+            this.connections[this.count++] = node;
+            this.connections[this.count++] = connection;
+        }
+
+        // the edge index hands the connections over in no set order, put them back in
+        // snapshot order so overlapping arrows always blend the same way
+
+        private void sort() {
+            int pairs = this.count / 2;
+            if (pairs > this.packed.length) this.packed = new long[this.connections.length / 2];
+            for (int i = 0; i < pairs; i++) {
+                this.packed[i] = ((long) this.connections[i * 2] << 32) | this.connections[i * 2 + 1];
+            }
+            Arrays.sort(this.packed, 0, pairs);
+            for (int i = 0; i < pairs; i++) {
+                this.connections[i * 2] = (int) (this.packed[i] >> 32);
+                this.connections[i * 2 + 1] = (int) this.packed[i];
+            }
+        }
+    }
+
+    public ConnectionTileCache() {
+        this.buckets = new LinkedHashMap<>(8, 0.75f, true);
+        this.dirtyNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.resetPending = false;
+        this.maxCachedTiles = MIN_CACHED_TILES;
+        this.missing = new HashMap<>();
+        this.pendingPool = new ArrayList<>();
+        this.toDraw = new ArrayList<>();
+    }
+
+    //
+    // invalidation, EDT only
+    //
+
+    // Only takes the dirty node lock, not the cache lock draw() holds, so an edit never has
+    // to wait for a frame being drawn
+
+    @Override
+    public void networkChanged(List<NetworkEvent> events) {
+        synchronized (this.dirtyNodes) {
+            for (NetworkEvent event : events) {
+                switch (event.type) {
+                    case NetworkEvent.NETWORK_RESET:
+                        this.resetPending = true;
+                        this.dirtyNodes.clear();
+                        break;
+                    case NetworkEvent.MARKER_CHANGED:
+                        break;
+                    default:
+                        if (!this.resetPending && event.mapNode != null) this.dirtyNodes.add(event.mapNode);
+                }
+            }
+        }
+    }
+
+    // Called with the snapshot the next frame is drawn from, before the frame is handed to
+    // the render pool. Works out which tiles the edits since the last frame have made stale.
+
+    public synchronized void prepareFrame(GraphStore snapshot) {
+        ArrayList<MapNode> dirty;
+        boolean reset;
+        synchronized (this.dirtyNodes) {
+            dirty = new ArrayList<>(this.dirtyNodes);
+            reset = this.resetPending;
+            this.dirtyNodes.clear();
+            this.resetPending = false;
+        }
+        if (reset || this.drawnSnapshot == null) {
+            clear();
+        } else if (!dirty.isEmpty()) {
+            ArrayList<double[]> areas = new ArrayList<>();
+            for (MapNode mapNode : dirty) {
+                addConnectionAreas(this.drawnSnapshot, mapNode, areas);
+                addConnectionAreas(snapshot, mapNode, areas);
+
+                // connections to this node that aren't in its incoming list ( reverse routes )
+
+                int index = snapshot.indexOf(mapNode);
+                if (index != -1) {
+                    for (MapNode referrer : RoadMap.getOutgoingReferrers(mapNode)) {
+                        int referrerIndex = snapshot.indexOf(referrer);
+                        if (referrerIndex != -1) addArea(snapshot, index, referrerIndex, areas);
+                    }
+                }
+            }
+            for (Bucket bucket : this.buckets.values()) {
+                for (double[] area : areas) {
+                    bucket.invalidate(area[0], area[1], area[2], area[3]);
+                }
+            }
+        }
+        this.drawnSnapshot = snapshot;
+    }
+
+    public synchronized void clear() {
+        this.buckets.clear();
+    }
+
+    private static void addConnectionAreas(GraphStore snapshot, MapNode mapNode, ArrayList<double[]> areas) {
+        int index = snapshot.indexOf(mapNode);
+        if (index == -1) return;
+        addArea(snapshot, index, index, areas);
+        for (int i = 0; i < snapshot.getOutgoingCount(index); i++) {
+            addArea(snapshot, index, snapshot.getOutgoing(index, i), areas);
+        }
+        for (int i = 0; i < snapshot.getIncomingCount(index); i++) {
+            addArea(snapshot, index, snapshot.getIncoming(index, i), areas);
+        }
+    }
+
+    private static void addArea(GraphStore snapshot, int start, int end, ArrayList<double[]> areas) {
+        double startX = snapshot.getX(start), startZ = snapshot.getZ(start);
+        double endX = snapshot.getX(end), endZ = snapshot.getZ(end);
+        areas.add(new double[] { Math.min(startX, endX), Math.min(startZ, endZ), Math.max(startX, endX), Math.max(startZ, endZ) });
+    }
+
+    //
+    // drawing, from the render pool ( see RenderPipeline )
+    //
+
+    // Draw the connections of snapshot as seen through view, any tiles that aren't cached
+    // are drawn first. Returns the number of tiles that had to be drawn.
+
+    public synchronized int draw(Graphics2D g, GraphStore snapshot, ViewTransform view, double nodeSize) {
+        double zoomLevel = view.getZoomLevel();
+        BucketKey bucketKey = new BucketKey(zoomLevel, view.getMapZoomFactor(), nodeSize, zoomLevel < lodConnectionZoomLevel);
+        Bucket bucket = this.buckets.get(bucketKey);
+        if (bucket == null) {
+            bucket = new Bucket(bucketKey);
+            this.buckets.put(bucketKey, bucket);
+            if (this.buckets.size() > MAX_BUCKETS) {
+                Iterator<BucketKey> eldest = this.buckets.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        // the scaled position of the top left of the view, scaled 0,0 is world -offset,-offset
+
+        double viewX = -view.toScreenX(-bucket.offset);
+        double viewY = -view.toScreenY(-bucket.offset);
+
+        int startX = tileOf(viewX);
+        int startY = tileOf(viewY);
+        int endX = tileOf(viewX + view.getWidth());
+        int endY = tileOf(viewY + view.getHeight());
+        this.maxCachedTiles = Math.max(MIN_CACHED_TILES, (endX - startX + 1) * (endY - startY + 1) * 3);
+
+        int poolUsed = 0;
+        for (int tileX = startX; tileX <= endX; tileX++) {
+            for (int tileY = startY; tileY <= endY; tileY++) {
+                Long key = key(tileX, tileY);
+                if (!bucket.tiles.containsKey(key)) {
+                    if (poolUsed == this.pendingPool.size()) this.pendingPool.add(new PendingTile());
+                    this.missing.put(key, this.pendingPool.get(poolUsed++).reuse(tileX, tileY));
+                }
+            }
+        }
+        if (!this.missing.isEmpty()) drawTiles(bucket, snapshot, this.missing);
+        this.lastTilesDrawn = this.missing.size();
+        this.missing.clear();
+
+        for (int tileX = startX; tileX <= endX; tileX++) {
+            for (int tileY = startY; tileY <= endY; tileY++) {
+                BufferedImage tile = bucket.tiles.get(key(tileX, tileY));
+                if (tile != null && tile != EMPTY_TILE) {
+                    g.drawImage(tile, (int) Math.round(tileX * (double) TILE_SIZE - viewX), (int) Math.round(tileY * (double) TILE_SIZE - viewY), null);
+                }
+            }
+        }
+        return this.lastTilesDrawn;
+    }
+
+    public synchronized int getCachedTileCount() {
+        int count = 0;
+        for (Bucket bucket : this.buckets.values()) {
+            count += bucket.tiles.size();
+        }
+        return count;
+    }
+
+    private void drawTiles(Bucket bucket, GraphStore snapshot, HashMap<Long, PendingTile> missing) {
+        if (bucket.key.simplified) {
+            drawChainTiles(bucket, snapshot, missing);
+            return;
+        }
+
+        // only the connections the edge index has passing near the missing tiles are looked
+        // at, each is handed to the missing tiles its line actually crosses ( padded by the
+        // arrow size ), not every tile of its bounding box
+
+        int startX = Integer.MAX_VALUE, startY = Integer.MAX_VALUE;
+        int endX = Integer.MIN_VALUE, endY = Integer.MIN_VALUE;
+        for (PendingTile pending : missing.values()) {
+            startX = Math.min(startX, pending.tileX);
+            startY = Math.min(startY, pending.tileY);
+            endX = Math.max(endX, pending.tileX);
+            endY = Math.max(endY, pending.tileY);
+        }
+        double minX = bucket.toWorld(startX * (double) TILE_SIZE - bucket.padding);
+        double minZ = bucket.toWorld(startY * (double) TILE_SIZE - bucket.padding);
+        double maxX = bucket.toWorld((endX + 1) * (double) TILE_SIZE + bucket.padding);
+        double maxZ = bucket.toWorld((endY + 1) * (double) TILE_SIZE + bucket.padding);
+
+        for (MapNode mapNode : RoadMap.edgeIndex.getStartNodesInArea(minX, minZ, maxX, maxZ)) {
+            int node = snapshot.indexOf(mapNode);
+            if (node == -1) continue;
+            double nodeX = bucket.toScaled(snapshot.getX(node));
+            double nodeY = bucket.toScaled(snapshot.getZ(node));
+            for (int i = 0; i < snapshot.getOutgoingCount(node); i++) {
+                int target = snapshot.getOutgoing(node, i);
+                double targetX = bucket.toScaled(snapshot.getX(target));
+                double targetY = bucket.toScaled(snapshot.getZ(target));
+                int fromX = Math.max(startX, tileOf(Math.min(nodeX, targetX) - bucket.padding));
+                int toX = Math.min(endX, tileOf(Math.max(nodeX, targetX) + bucket.padding));
+                if (fromX > toX) continue;
+                int fromY = Math.max(startY, tileOf(Math.min(nodeY, targetY) - bucket.padding));
+                int toY = Math.min(endY, tileOf(Math.max(nodeY, targetY) + bucket.padding));
+                boolean singleTile = (fromX == toX && fromY == toY);
+                for (int tileX = fromX; tileX <= toX; tileX++) {
+                    for (int tileY = fromY; tileY <= toY; tileY++) {
+                        PendingTile pending = missing.get(key(tileX, tileY));
+                        if (pending == null) continue;
+                        if (singleTile || EdgeIndex.segmentIntersectsRect(nodeX, nodeY, targetX, targetY,
+                                tileX * (double) TILE_SIZE - bucket.padding, tileY * (double) TILE_SIZE - bucket.padding,
+                                (tileX + 1) * (double) TILE_SIZE + bucket.padding, (tileY + 1) * (double) TILE_SIZE + bucket.padding)) {
+                            pending.add(node, i);
+                        }
+                    }
+                }
+            }
+        }
+
+        renderTiles(bucket, snapshot, missing);
+    }
+
+    // Zoomed out, the tiles are drawn from RoadMap.chainIndex. Each plain stretch of road is
+    // one chain, so there are far fewer to sort into tiles than there are connections. The
+    // chains are the live network, but the positions they are drawn at come from the
+    // snapshot, so a node moved while the frame is being drawn can't leave a stale tile
+    // behind that the next prepareFrame() doesn't know about.
+
+    private void drawChainTiles(Bucket bucket, GraphStore snapshot, HashMap<Long, PendingTile> missing) {
+        int startX = Integer.MAX_VALUE, startY = Integer.MAX_VALUE;
+        int endX = Integer.MIN_VALUE, endY = Integer.MIN_VALUE;
+        for (PendingTile pending : missing.values()) {
+            startX = Math.min(startX, pending.tileX);
+            startY = Math.min(startY, pending.tileY);
+            endX = Math.max(endX, pending.tileX);
+            endY = Math.max(endY, pending.tileY);
+        }
+        double minX = bucket.toWorld(startX * (double) TILE_SIZE - bucket.padding);
+        double minZ = bucket.toWorld(startY * (double) TILE_SIZE - bucket.padding);
+        double maxX = bucket.toWorld((endX + 1) * (double) TILE_SIZE + bucket.padding);
+        double maxZ = bucket.toWorld((endY + 1) * (double) TILE_SIZE + bucket.padding);
+
+        for (ChainIndex.Chain chain : RoadMap.chainIndex.getChainsInArea(minX, minZ, maxX, maxZ)) {
+            int fromX = Math.max(startX, tileOf(bucket.toScaled(chain.getMinX()) - bucket.padding));
+            int toX = Math.min(endX, tileOf(bucket.toScaled(chain.getMaxX()) + bucket.padding));
+            int fromY = Math.max(startY, tileOf(bucket.toScaled(chain.getMinZ()) - bucket.padding));
+            int toY = Math.min(endY, tileOf(bucket.toScaled(chain.getMaxZ()) + bucket.padding));
+            for (int tileX = fromX; tileX <= toX; tileX++) {
+                for (int tileY = fromY; tileY <= toY; tileY++) {
+                    PendingTile pending = missing.get(key(tileX, tileY));
+                    if (pending != null) pending.chains.add(chain);
+                }
+            }
+        }
+
+        renderTiles(bucket, snapshot, missing);
+    }
+
+    // Draw the images of the missing tiles and add them to the bucket. Every tile only reads
+    // the snapshot and its own pending list, so with more than one to do they are drawn as
+    // separate tasks on the pool draw() was called from ( the common pool otherwise ).
+
+    private void renderTiles(Bucket bucket, GraphStore snapshot, HashMap<Long, PendingTile> missing) {
+        for (Map.Entry<Long, PendingTile> entry : missing.entrySet()) {
+            PendingTile pending = entry.getValue();
+            if (pending.isEmpty()) {
+                bucket.tiles.put(entry.getKey(), EMPTY_TILE);
+            } else {
+                this.toDraw.add(pending);
+            }
+        }
+        if (this.toDraw.size() == 1) {
+            renderTile(bucket, snapshot, this.toDraw.get(0));
+        } else if (this.toDraw.size() > 1) {
+            ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(this.toDraw.size());
+            for (PendingTile pending : this.toDraw) {
+                tasks.add(ForkJoinTask.adapt(() -> renderTile(bucket, snapshot, pending)));
+            }
+            ForkJoinTask.invokeAll(tasks);
+        }
+
+        // the bucket itself is only touched from this thread
+
+        for (PendingTile pending : this.toDraw) {
+            bucket.tiles.put(key(pending.tileX, pending.tileY), pending.image);
+            pending.image = null;
+        }
+        this.toDraw.clear();
+    }
+
+    private static void renderTile(Bucket bucket, GraphStore snapshot, PendingTile pending) {
+        pending.image = bucket.key.simplified ? drawChainTile(bucket, snapshot, pending) : drawTile(bucket, snapshot, pending);
+    }
+
+    private static BufferedImage drawChainTile(Bucket bucket, GraphStore snapshot, PendingTile pending) {
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.translate(-BIAS, -BIAS);
+            double originX = pending.tileX * (double) TILE_SIZE - BIAS;
+            double originY = pending.tileY * (double) TILE_SIZE - BIAS;
+            drawChainLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_SUBPRIO_DUAL, BROWN);
+            drawChainLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_DUAL, Color.BLUE);
+            drawChainLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_REVERSE, Color.CYAN);
+            drawChainLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_SUBPRIO, Color.ORANGE);
+            drawChainLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_STANDARD, Color.GREEN);
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+
+    // Every chain of one type as a polyline between the centres of the pixels its nodes fall
+    // in, nodes landing in the same pixel as the one before are skipped. Only the blocks of a
+    // chain that come near the tile are looked at.
+
+    private static void drawChainLayer(Graphics2D g, Bucket bucket, GraphStore snapshot, PendingTile pending, double originX, double originY, int type, Color colour) {
+        double minX = bucket.toWorld(pending.tileX * (double) TILE_SIZE - bucket.padding);
+        double minZ = bucket.toWorld(pending.tileY * (double) TILE_SIZE - bucket.padding);
+        double maxX = bucket.toWorld((pending.tileX + 1) * (double) TILE_SIZE + bucket.padding);
+        double maxZ = bucket.toWorld((pending.tileY + 1) * (double) TILE_SIZE + bucket.padding);
+        ArrowPath arrowPath = ARROW_PATHS.get();
+        arrowPath.reset();
+        for (ChainIndex.Chain chain : pending.chains) {
+            if (chain.getType() != type) continue;
+            for (int block = 0; block < chain.getBlockCount(); block++) {
+                if (!chain.blockIntersects(block, minX, minZ, maxX, maxZ)) continue;
+
+                // nodes added since the snapshot was taken aren't drawn until the next frame
+
+                boolean hasLast = false;
+                double lastX = 0;
+                double lastY = 0;
+                for (int i = chain.getBlockStart(block); i <= chain.getBlockEnd(block); i++) {
+                    int node = snapshot.indexOf(chain.getNode(i));
+                    if (node == -1) {
+                        hasLast = false;
+                        continue;
+                    }
+                    double pixelX = Math.floor(bucket.toScaled(snapshot.getX(node)) - originX) + 0.5;
+                    double pixelY = Math.floor(bucket.toScaled(snapshot.getZ(node)) - originY) + 0.5;
+                    if (hasLast && pixelX == lastX && pixelY == lastY) continue;
+                    if (hasLast) arrowPath.addLine(lastX, lastY, pixelX, pixelY);
+                    hasLast = true;
+                    lastX = pixelX;
+                    lastY = pixelY;
+                }
+            }
+        }
+        if (arrowPath.isEmpty()) return;
+        g.setColor(colour);
+        arrowPath.draw(g);
+    }
+
+    private static BufferedImage drawTile(Bucket bucket, GraphStore snapshot, PendingTile pending) {
+        pending.sort();
+        ARROW_PATHS.get().setScale(bucket.key.zoomLevel, bucket.key.nodeSize);
+        BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.translate(-BIAS, -BIAS);
+            double originX = pending.tileX * (double) TILE_SIZE - BIAS;
+            double originY = pending.tileY * (double) TILE_SIZE - BIAS;
+
+            // same order the connections were always drawn in, regular connections end up on top
+
+            drawLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_SUBPRIO_DUAL, BROWN);
+            drawLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_DUAL, Color.BLUE);
+            drawLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_REVERSE, Color.CYAN);
+            drawLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_SUBPRIO, Color.ORANGE);
+            drawLayer(g, bucket, snapshot, pending, originX, originY, ConnectionList.TYPE_STANDARD, Color.GREEN);
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+
+    // every connection of one type in the tile as one path, drawn with a single call
+
+    private static void drawLayer(Graphics2D g, Bucket bucket, GraphStore snapshot, PendingTile pending, double originX, double originY, int type, Color colour) {
+        boolean dual = (type == ConnectionList.TYPE_DUAL || type == ConnectionList.TYPE_SUBPRIO_DUAL);
+        ArrowPath arrowPath = ARROW_PATHS.get();
+        arrowPath.reset();
+        for (int i = 0; i < pending.count; i += 2) {
+            int node = pending.connections[i];
+            int connection = pending.connections[i + 1];
+            if (snapshot.getOutgoingType(node, connection) != type) continue;
+            int target = snapshot.getOutgoing(node, connection);
+            arrowPath.addArrow(bucket.toScaled(snapshot.getX(node)) - originX, bucket.toScaled(snapshot.getZ(node)) - originY,
+                    bucket.toScaled(snapshot.getX(target)) - originX, bucket.toScaled(snapshot.getZ(target)) - originY, dual);
+        }
+        if (arrowPath.isEmpty()) return;
+        g.setColor(colour);
+        arrowPath.draw(g);
+    }
+
+    private static int tileOf(double scaled) {
+        return (int) Math.floor(scaled / TILE_SIZE);
+    }
+
+    private static Long key(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+}
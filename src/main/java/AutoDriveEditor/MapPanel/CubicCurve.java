@@ -1,11 +1,13 @@
 package AutoDriveEditor.MapPanel;
 
 import java.awt.geom.Point2D;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 import AutoDriveEditor.GUI.GUIBuilder;
 import AutoDriveEditor.Managers.ChangeManager.CurveChanger;
 import AutoDriveEditor.RoadNetwork.MapNode;
+import AutoDriveEditor.RoadNetwork.MapTransaction;
 import AutoDriveEditor.RoadNetwork.RoadMap;
 
 import static AutoDriveEditor.AutoDriveEditor.*;
@@ -102,54 +104,47 @@ public class CubicCurve {
     }
 
     public void commitCurve() {
-        canAutoSave = false;
         LinkedList<MapNode> mergeNodesList  = new LinkedList<>();
 
         mergeNodesList.add(curveStartNode);
 
         if (this.curveStartNode.y != -1 && this.curveEndNode.y == -1) {
             this.curveEndNode.y = this.curveStartNode.y;
+            RoadMap.fireNodeMoved(this.curveEndNode);
         }
         if (this.curveEndNode.y != -1 && this.curveStartNode.y == -1) {
             this.curveStartNode.y = this.curveEndNode.y;
+            RoadMap.fireNodeMoved(this.curveStartNode);
         }
 
         float yInterpolation = (float) ((curveEndNode.y - curveStartNode.y) / (this.curveNodesList.size() - 1));
 
+        MapTransaction transaction = RoadMap.beginTransaction();
+        Iterator<MapNode> iterator = this.curveNodesList.iterator();
+        if (iterator.hasNext()) iterator.next();
         for (int j = 1; j < curveNodesList.size() - 1; j++) {
-            MapNode tempNode = curveNodesList.get(j);
+            MapNode tempNode = iterator.next();
             double heightMapY = getYValueFromHeightMap(tempNode.x, tempNode.z);
             if (heightMapY == -1) {
                 heightMapY = curveStartNode.y + ( yInterpolation * j);
             }
-            MapNode newNode = new MapNode(RoadMap.mapNodes.size() + 1, tempNode.x, heightMapY, tempNode.z, this.nodeType, false, false);
-            RoadMap.mapNodes.add(newNode);
-            mergeNodesList.add(newNode);
+            mergeNodesList.add(transaction.createNode(tempNode.x, heightMapY, tempNode.z, this.nodeType));
         }
 
         mergeNodesList.add(curveEndNode);
-        changeManager.addChangeable( new CurveChanger(mergeNodesList, isReversePath, isDualPath));
-        connectNodes(mergeNodesList, isReversePath, isDualPath);
+        transaction.connectChain(mergeNodesList, getCurveConnectionType(isReversePath, isDualPath));
+
+        // the undo record backs up the end nodes connections, so it's made before they change
 
+        canAutoSave = false;
+        changeManager.addChangeable(new CurveChanger(mergeNodesList, isReversePath, isDualPath));
+        transaction.commit();
         canAutoSave = true;
+        getMapPanel().repaint();
 
         if (DEBUG) LOG.info("CubicCurve created {} nodes", mergeNodesList.size() - 2 );
     }
 
-    public static void connectNodes(LinkedList<MapNode> mergeNodesList, boolean reversePath, boolean dualPath)  {
-        for (int j = 0; j < mergeNodesList.size() - 1; j++) {
-            MapNode startNode = mergeNodesList.get(j);
-            MapNode endNode = mergeNodesList.get(j+1);
-            if (reversePath) {
-                MapPanel.createConnectionBetween(startNode,endNode,CONNECTION_REVERSE);
-            } else if (dualPath) {
-                MapPanel.createConnectionBetween(startNode,endNode,CONNECTION_DUAL);
-            } else {
-                MapPanel.createConnectionBetween(startNode,endNode,CONNECTION_STANDARD);
-            }
-        }
-    }
-
     public void clear() {
         this.curveNodesList.clear();
         this.controlPoint1 = null;
@@ -0,0 +1,191 @@
+package AutoDriveEditor.MapPanel;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//
+// The text labels on the map ( marker names, debug node ID's ) drawn from images.
+//
+// drawString() lays out and rasterizes the glyphs again every time, for every label of
+// every frame. Here each text is rasterized once per style into a small image and after that
+// drawing a label is a single unscaled drawImage(). The last MAX_LABELS are kept.
+//
+// Labels are also placed instead of just drawn, a label that would overlap one already
+// drawn this frame is skipped, so a crowd of labels stays readable and only the ones that
+// can be seen cost anything. The first label placed wins, so the callers draw the most
+// important ones first.
+//
+// Not thread safe, the render pipeline keeps one and only uses it for the frame being drawn.
+//
+
+public class LabelCache {
+
+    private static final int MAX_LABELS = 4096;
+    private static final int CELL_SIZE = 64;
+
+    // the font Graphics2D starts with, what drawString() always used
+
+    private static final Font LABEL_FONT = new Font(Font.DIALOG, Font.PLAIN, 12);
+
+    public static final Style PLAIN = new Style(LABEL_FONT, Color.WHITE, null);
+
+    private final HashMap<Style, LinkedHashMap<String, Label>> labels;
+    private final Graphics2D measure;
+
+    // placed labels as x,y,width,height runs in the CELL_SIZE cells they cover
+
+    private int columns;
+    private int rows;
+    private int width;
+    private int height;
+    private int[][] cells = new int[0][];
+    private int[] cellCounts = new int[0];
+
+    public static final class Style {
+        private final Font font;
+        private final Color colour;
+        private final Color background;
+
+        public Style(Font font, Color colour, Color background) {
+            this.font = font;
+            this.colour = colour;
+            this.background = background;
+        }
+    }
+
+    private static final class Label {
+        private final BufferedImage image;
+        private final int ascent;
+
+        private Label(BufferedImage image, int ascent) {
+            this.image = image;
+            this.ascent = ascent;
+        }
+    }
+
+    public LabelCache() {
+        this.labels = new HashMap<>();
+        this.measure = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+
+    // start placing the labels of a new frame width x height pixels
+
+    public void begin(int width, int height) {
+        int newColumns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+        int newRows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+        if (newColumns != this.columns || newRows != this.rows) {
+            this.columns = newColumns;
+            this.rows = newRows;
+            this.cells = new int[newColumns * newRows][];
+            this.cellCounts = new int[newColumns * newRows];
+        } else {
+            Arrays.fill(this.cellCounts, 0);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    // Draw text with its baseline starting at x,y, like drawString(). Returns false if the
+    // label was skipped, off screen or overlapping one already drawn.
+
+    public boolean draw(Graphics2D g, String text, Style style, int x, int y) {
+        if (text == null || text.isEmpty()) return false;
+        Label label = getLabel(text, style);
+        int left = x;
+        int top = y - label.ascent;
+        int labelWidth = label.image.getWidth();
+        int labelHeight = label.image.getHeight();
+        if (left >= this.width || top >= this.height || left + labelWidth <= 0 || top + labelHeight <= 0) return false;
+        if (!place(left, top, labelWidth, labelHeight)) return false;
+        g.drawImage(label.image, left, top, null);
+        return true;
+    }
+
+    public int size() {
+        int count = 0;
+        for (LinkedHashMap<String, Label> styleLabels : this.labels.values()) {
+            count += styleLabels.size();
+        }
+        return count;
+    }
+
+    //
+    // internal
+    //
+
+    private Label getLabel(String text, Style style) {
+        LinkedHashMap<String, Label> styleLabels = this.labels.computeIfAbsent(style, key -> new LinkedHashMap<String, Label>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Label> eldest) {
+                return size() > MAX_LABELS;
+            }
+        });
+        Label label = styleLabels.get(text);
+        if (label == null) {
+            label = rasterize(text, style);
+            styleLabels.put(text, label);
+        }
+        return label;
+    }
+
+    private Label rasterize(String text, Style style) {
+        FontMetrics fm = this.measure.getFontMetrics(style.font);
+        int ascent = fm.getAscent();
+        int textWidth = Math.max(1, fm.stringWidth(text));
+        int textHeight = Math.max(1, ascent + fm.getDescent() + ((style.background != null) ? 2 : 0));
+        BufferedImage image = new BufferedImage(textWidth, textHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        try {
+            RenderPipeline.applyHints(g);
+            g.setFont(style.font);
+            if (style.background != null) {
+                g.setColor(style.background);
+                g.fillRect(0, 0, textWidth, textHeight);
+            }
+            g.setColor(style.colour);
+            g.drawString(text, 0, ascent);
+        } finally {
+            g.dispose();
+        }
+        return new Label(image, ascent);
+    }
+
+    // Claim the screen area for a label, false if part of it is already taken
+
+    private boolean place(int x, int y, int labelWidth, int labelHeight) {
+        int startColumn = Math.max(0, x / CELL_SIZE);
+        int startRow = Math.max(0, y / CELL_SIZE);
+        int endColumn = Math.min(this.columns - 1, (x + labelWidth - 1) / CELL_SIZE);
+        int endRow = Math.min(this.rows - 1, (y + labelHeight - 1) / CELL_SIZE);
+        for (int row = startRow; row <= endRow; row++) {
+            for (int column = startColumn; column <= endColumn; column++) {
+                int cell = (row * this.columns) + column;
+                int[] placed = this.cells[cell];
+                for (int i = 0; i < this.cellCounts[cell]; i += 4) {
+                    if (x < placed[i] + placed[i + 2] && placed[i] < x + labelWidth && y < placed[i + 1] + placed[i + 3] && placed[i + 1] < y + labelHeight) return false;
+                }
+            }
+        }
+        for (int row = startRow; row <= endRow; row++) {
+            for (int column = startColumn; column <= endColumn; column++) {
+                int cell = (row * this.columns) + column;
+                int count = this.cellCounts[cell];
+                if (this.cells[cell] == null) {
+                    this.cells[cell] = new int[16];
+                } else if (count + 4 > this.cells[cell].length) {
+                    this.cells[cell] = Arrays.copyOf(this.cells[cell], this.cells[cell].length * 2);
+                }
+                this.cells[cell][count] = x;
+                this.cells[cell][count + 1] = y;
+                this.cells[cell][count + 2] = labelWidth;
+                this.cells[cell][count + 3] = labelHeight;
+                this.cellCounts[cell] = count + 4;
+            }
+        }
+        return true;
+    }
+}
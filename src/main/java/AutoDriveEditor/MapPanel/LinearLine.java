@@ -1,10 +1,12 @@
 package AutoDriveEditor.MapPanel;
 
 import java.awt.geom.Point2D;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 import AutoDriveEditor.Managers.ChangeManager;
 import AutoDriveEditor.RoadNetwork.MapNode;
+import AutoDriveEditor.RoadNetwork.MapTransaction;
 import AutoDriveEditor.RoadNetwork.RoadMap;
 
 import static AutoDriveEditor.AutoDriveEditor.*;
@@ -66,15 +68,20 @@ public class LinearLine {
     }
 
     public void commit(MapNode lineEndNode, int connectionType, int nodeType) {
-        canAutoSave = false;
 
         LinkedList<MapNode> mergeNodesList  = new LinkedList<>();
 
         if (DEBUG) LOG.info("LinearLine size = {}",this.lineNodeList.size());
         mergeNodesList.add(lineStartNode);
 
-        if (lineEndNode.y == -1 && lineStartNode.y != -1) lineEndNode.y = lineStartNode.y;
-        if (lineEndNode.y != -1 && lineStartNode.y == -1) lineStartNode.y = lineEndNode.y;
+        if (lineEndNode.y == -1 && lineStartNode.y != -1) {
+            lineEndNode.y = lineStartNode.y;
+            RoadMap.fireNodeMoved(lineEndNode);
+        }
+        if (lineEndNode.y != -1 && lineStartNode.y == -1) {
+            lineStartNode.y = lineEndNode.y;
+            RoadMap.fireNodeMoved(lineStartNode);
+        }
 
 
 
@@ -82,34 +89,29 @@ public class LinearLine {
 
         LOG.info(" start = {} , end = {}, interp = {}", lineStartNode.y, lineEndNode.y, yInterpolation );
 
+        MapTransaction transaction = RoadMap.beginTransaction();
+        Iterator<MapNode> iterator = this.lineNodeList.iterator();
+        if (iterator.hasNext()) iterator.next();
         for (int j = 1; j < this.lineNodeList.size() - 1; j++) {
-            MapNode tempNode = this.lineNodeList.get(j);
+            MapNode tempNode = iterator.next();
             double heightMapY = getYValueFromHeightMap(tempNode.x, tempNode.z);
             if (heightMapY == -1) {
                 heightMapY = lineStartNode.y + ( yInterpolation * j);
             }
-            MapNode newNode = new MapNode(RoadMap.mapNodes.size() + 1, tempNode.x, heightMapY, tempNode.z, nodeType, false, false);
-            RoadMap.mapNodes.add(newNode);
-            mergeNodesList.add(newNode);
+            mergeNodesList.add(transaction.createNode(tempNode.x, heightMapY, tempNode.z, nodeType));
         }
 
         mergeNodesList.add(lineEndNode);
         if (DEBUG) LOG.info("mergeNodesList size = {}",mergeNodesList.size());
-        changeManager.addChangeable( new ChangeManager.LinearLineChanger(this.lineStartNode, lineEndNode, mergeNodesList, connectionType));
-        connectNodes(mergeNodesList, connectionType);
+        transaction.connectChain(mergeNodesList, connectionType);
 
-        canAutoSave = true;
+        // the undo record backs up the end nodes connections, so it's made before they change
 
-    }
-
-    public static void connectNodes(LinkedList<MapNode> mergeNodesList, int connectionType)  {
         canAutoSave = false;
-        for (int j = 0; j < mergeNodesList.size() - 1; j++) {
-            MapNode startNode = mergeNodesList.get(j);
-            MapNode endNode = mergeNodesList.get(j+1);
-            MapPanel.createConnectionBetween(startNode,endNode,connectionType);
-        }
+        changeManager.addChangeable(new ChangeManager.LinearLineChanger(this.lineStartNode, lineEndNode, mergeNodesList, connectionType));
+        transaction.commit();
         canAutoSave = true;
+        getMapPanel().repaint();
     }
 
     public boolean isLineCreated() {
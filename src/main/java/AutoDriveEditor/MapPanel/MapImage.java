@@ -8,6 +8,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import AutoDriveEditor.AutoDriveEditor;
 import AutoDriveEditor.GUI.GUIBuilder;
@@ -29,11 +31,22 @@ public class MapImage {
 
     public static BufferedImage mapImage;
     public static BufferedImage heightMapImage;
-    public static Image backBufferImage = null;
-    public static Graphics2D backBufferGraphics = null;
     private static boolean bImageFound = false;
     public static BufferedImage image;
-    public static BufferedImage croppedImage;
+
+    // the image halved again and again down to MIN_LEVEL_SIZE, see getImageLevel(). Kept for
+    // each image shown so switching between the map and the heightmap doesn't build them again
+
+    private static final int MIN_LEVEL_SIZE = 256;
+    private static final Map<BufferedImage, BufferedImage[]> imageLevels = new WeakHashMap<>();
+    private static BufferedImage[] levels = new BufferedImage[0];
+
+    // the full size detail of a map image bigger than 2048 x 2048, see MapTileStore. Only shown
+    // while the 2048 image made from it is
+
+    private static MapTileStore mapTiles;
+    private static BufferedImage mapTilesImage;
+    private static BufferedImage shownImage;
 
     public static void loadMapImage(String mapName) {
 
@@ -194,26 +207,6 @@ public class MapImage {
 
 
 
-    public static void getNewBackBufferImage(int width, int height) {
-        GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
-        GraphicsDevice gd = ge.getDefaultScreenDevice();
-        GraphicsConfiguration gc = gd.getDefaultConfiguration();
-
-        backBufferImage = gc.createCompatibleImage(width, height, Transparency.OPAQUE);
-        if (DEBUG) LOG.info("Accelerated BackBufferImage = {}", gc.getImageCapabilities().isAccelerated());
-        backBufferImage.setAccelerationPriority(1);
-        backBufferGraphics = (Graphics2D) backBufferImage.getGraphics();
-        backBufferGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        backBufferGraphics.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
-        backBufferGraphics.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_SPEED);
-        backBufferGraphics.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
-        backBufferGraphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
-        backBufferGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-        backBufferGraphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
-        backBufferGraphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-        backBufferGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
-    }
-
     public static BufferedImage getNewBufferImage(int width, int height) {
         GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
         GraphicsDevice gd = ge.getDefaultScreenDevice();
@@ -232,6 +225,17 @@ public class MapImage {
     public static void  setImage(BufferedImage loadedImage, Boolean ignoreSize) {
         if (loadedImage != null) {
             LOG.info("Selected Image size is {} x {}",loadedImage.getWidth(), loadedImage.getHeight());
+            if (!ignoreSize && MapTileStore.isTiledSize(loadedImage.getWidth(), loadedImage.getHeight())) {
+                if (mapTiles != null) mapTiles.dispose();
+                mapTiles = new MapTileStore(loadedImage);
+                mapTilesImage = mapTiles.getBaseImage();
+
+                // don't keep the full size image around, the tiles have it
+
+                if (mapImage == loadedImage) mapImage = mapTilesImage;
+                loadedImage = mapTilesImage;
+            }
+            BufferedImage sourceImage = loadedImage;
             if (loadedImage.getWidth() != 2048 || loadedImage.getHeight() != 2048 ) {
                 if (!ignoreSize) {
                     String message;
@@ -248,6 +252,11 @@ public class MapImage {
                 }
             }
 
+            // a normal image replacing a tiled one, its tiles aren't needed any more. The heightmap
+            // ( ignoreSize ) is only shown for a while, the map image's tiles are kept for it.
+
+            if (!ignoreSize && sourceImage != mapTilesImage) disposeMapTiles();
+
             if (ignoreSize) {
                 Image heightImage = loadedImage.getScaledInstance(2048,2048, Image.SCALE_DEFAULT);
                 loadedImage = getNewBufferedImage(2048,2048, Transparency.OPAQUE);
@@ -260,6 +269,8 @@ public class MapImage {
             Graphics2D g2d = (Graphics2D) image.getGraphics();
             g2d.drawImage(loadedImage, 0, 0, null);
             g2d.dispose();
+            levels = imageLevels.computeIfAbsent(sourceImage, key -> buildImageLevels(image));
+            shownImage = sourceImage;
 
             if (!oldConfigFormat) {
                 GUIBuilder.updateGUIButtons(true);
@@ -269,6 +280,66 @@ public class MapImage {
         }
     }
 
+    //
+    // Zoomed out, every frame used to scale the visible part of the full size image down to
+    // the panel. Each level here is the one above halved with every 2x2 pixels averaged, so
+    // a frame can take the level nearest to the zoom and scale it by close to 1:1. Level 0 is
+    // the image itself.
+    //
+
+    public static BufferedImage getImageLevel(int level) {
+        if (level <= 0 || levels.length == 0) return image;
+        return levels[Math.min(level, levels.length) - 1];
+    }
+
+    // the level whose pixels are nearest in size to the screen pixels at zoomLevel
+
+    public static int getLevelForZoom(double zoomLevel) {
+        if (zoomLevel <= 0) return 0;
+        int level = (int) Math.round(Math.log(1 / zoomLevel) / Math.log(2));
+        return Math.max(0, Math.min(level, levels.length));
+    }
+
+    // the detail tiles of the image being shown, null if it has none
+
+    public static MapTileStore getMapTiles() {
+        return (shownImage != null && shownImage == mapTilesImage) ? mapTiles : null;
+    }
+
+    public static void disposeMapTiles() {
+        if (mapTiles != null) {
+            mapTiles.dispose();
+            mapTiles = null;
+            mapTilesImage = null;
+        }
+    }
+
+    private static BufferedImage[] buildImageLevels(BufferedImage source) {
+        long startTime = System.currentTimeMillis();
+        int count = 0;
+        for (int size = Math.min(source.getWidth(), source.getHeight()); size / 2 >= MIN_LEVEL_SIZE; size /= 2) count++;
+        BufferedImage[] newLevels = new BufferedImage[count];
+        BufferedImage previous = source;
+        for (int i = 0; i < count; i++) {
+            newLevels[i] = halveImage(previous, getNewBufferedImage(previous.getWidth() / 2, previous.getHeight() / 2, Transparency.OPAQUE));
+            previous = newLevels[i];
+        }
+        LOG.info("Built {} map image levels in {} ms", count, System.currentTimeMillis() - startTime);
+        return newLevels;
+    }
+
+    // Draw source into half, which is half its size, and return half. Halving with bilinear
+    // filtering samples every destination pixel exactly between four source pixels, which is
+    // their average. Also used for the levels of MapTileStore.
+
+    static BufferedImage halveImage(BufferedImage source, BufferedImage half) {
+        Graphics2D g = half.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(source, 0, 0, half.getWidth(), half.getHeight(), null);
+        g.dispose();
+        return half;
+    }
+
     public static void getMapZoomFactor(String mapName) {
         for (int i = 0; i <= mapZoomStore.size() - 1; i++) {
             MapZoomStore store = mapZoomStore.get(i);
@@ -9,6 +9,7 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.awt.image.RasterFormatException;
 import java.text.Collator;
 import java.util.ArrayList;
@@ -16,16 +17,17 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Objects;
 import java.util.concurrent.*;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import AutoDriveEditor.GUI.GUIBuilder;
 import AutoDriveEditor.Listeners.KeyboardListener;
 import AutoDriveEditor.Listeners.MouseListener;
 import AutoDriveEditor.Managers.CopyPasteManager;
+import AutoDriveEditor.RoadNetwork.ChainIndex;
+import AutoDriveEditor.RoadNetwork.GraphStore;
 import AutoDriveEditor.RoadNetwork.MapMarker;
 import AutoDriveEditor.RoadNetwork.MapNode;
 import AutoDriveEditor.RoadNetwork.MarkerGroup;
+import AutoDriveEditor.RoadNetwork.NetworkFootprint;
 import AutoDriveEditor.RoadNetwork.RoadMap;
 
 import static AutoDriveEditor.AutoDriveEditor.*;
@@ -52,24 +54,47 @@ public class MapPanel extends JPanel{
     public static final int CONNECTION_DUAL = 2;
     public static final int CONNECTION_REVERSE = 3;
 
+    // what has changed since the last render, see requestRender()
+
+    public static final int RENDER_OVERLAY = 1;
+    public static final int RENDER_VIEWPORT = 2;
+    public static final int RENDER_NETWORK = 4;
+    public static final int RENDER_ALL = RENDER_OVERLAY | RENDER_VIEWPORT | RENDER_NETWORK;
+
     public static final int CONFIG_SAVEGAME = 1;
     public static final int CONFIG_ROUTEMANAGER = 2;
 
     public static int configType;
 
-    public Thread nodeDrawThread;
-    public Thread connectionDrawThread;
+    public RenderPipeline renderPipeline;
+    private Timer renderTimer;
+    private int dirtyFlags = 0;
+
+    // the screen area the overlay covered when it was last shown, and the area the overlay
+    // being drawn covers so far ( see markOverlay() ). overlayMeasure has nothing to draw
+    // onto, drawing the overlay with it only works out the area.
+
+    private Rectangle overlayBounds;
+    private Rectangle drawnOverlayBounds;
+    private final Graphics2D overlayMeasure;
+    private long lastRenderTime = 0;
     public static ScheduledExecutorService scheduledExecutorService;
     public static ScheduledFuture scheduledFuture;
-    private static final Lock drawLock = new ReentrantLock();
-    private static CountDownLatch latch;
     public static volatile boolean canAutoSave= true;
 
+    // pre-drawn connection tiles, kept up to date from the network change events
+
+    private static final ConnectionTileCache connectionTiles = new ConnectionTileCache();
 
-    public int offsetX, oldOffsetX;
-    public int offsetY, oldOffsetY;
-    public int widthScaled, oldWidthScaled;
-    public int heightScaled, oldHeightScaled;
+    static {
+        RoadMap.addNetworkListener(connectionTiles);
+    }
+
+
+    public int offsetX;
+    public int offsetY;
+    public int widthScaled;
+    public int heightScaled;
     public static boolean isUsingConvertedImage = false;
     private static double x = 0.5;
     private static double y = 0.5;
@@ -111,7 +136,7 @@ public class MapPanel extends JPanel{
     public static double preSnapX, preSnapY;
     public static CopyPasteManager cnpManager;
 
-    private static final Color BROWN = new Color(152, 104, 50 );
+    static final Color BROWN = new Color(152, 104, 50 );
 
 
     public MapPanel() {
@@ -124,7 +149,6 @@ public class MapPanel extends JPanel{
         addComponentListener(new ComponentAdapter(){
             @Override
             public void componentResized(ComponentEvent e) {
-                getNewBackBufferImage(mapPanel.getWidth(), mapPanel.getHeight());
                 // Part 2 of work around for map resize bug, force a refresh of all the values
                 // used to redraw the map.
                 forceMapImageRedraw();
@@ -135,17 +159,14 @@ public class MapPanel extends JPanel{
         setFocusable(true);
         addKeyListener(keyListener);
 
-        // start the thread responsible for drawing node connections
-
-        ConnectionDrawThread t1 = new ConnectionDrawThread();
-        connectionDrawThread = new Thread(t1 ,"ConnectionDraw Thread");
-        connectionDrawThread.start();
+        // start the render pool the map frames are drawn on
 
-        // start the thread responsible for drawing nodes
-
-        NodeDrawThread t2 = new NodeDrawThread();
-        nodeDrawThread = new Thread(t2 ,"NodeDraw Thread");
-        nodeDrawThread.start();
+        renderPipeline = new RenderPipeline(connectionTiles, this::captureFrame, this::presentFrame);
+        renderTimer = new Timer(0, e -> renderDirty());
+        overlayMeasure = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        overlayMeasure.setClip(0, 0, 0, 0);
+        RenderPipeline.applyHints(overlayMeasure);
+        renderTimer.setRepeats(false);
 
         // initialize the copy/paste manager
 
@@ -183,640 +204,398 @@ public class MapPanel extends JPanel{
 
 
     //
-    // The NodeDraw thread is at least 2 or 3 times quicker to execute that connectionDraw(), so we
-    // try and spread the draw load around by doing the curve/line/rectangle drawing here
+    // The frames of the map, the connections and the nodes are drawn by the render pool ( see
+    // RenderPipeline ) from a snapshot of the network. paintComponent() shows the last one that
+    // finished and draws what follows the mouse ( the hovered node, the connection and curve
+    // previews, the selection rectangle ) straight over it, from the live editor state, so
+    // they never wait for a frame to be drawn.
     //
 
-    public static class NodeDrawThread implements Runnable {
+    private static class TextDisplayStore {
+        String text;
+        Point2D position;
+        Color colour;
+        boolean useBackground;
 
-        private static volatile boolean isStopped = false;
+        public TextDisplayStore(String text, Point2D textPos, Color textColour, boolean background) {
+            this.text = text;
+            this.position = textPos;
+            this.colour = textColour;
+            this.useBackground = background;
+        }
+    }
 
-        private static class TextDisplayStore {
-            String text;
-            Point2D position;
-            Color colour;
-            boolean useBackground;
+    // Called by the render pipeline on the EDT when a frame is started
 
-            public TextDisplayStore(String text, Point2D textPos, Color textColour, boolean background) {
-                this.text = text;
-                this.position = textPos;
-                this.colour = textColour;
-                this.useBackground = background;
-            }
-        }
+    private RenderPipeline.FrameRequest captureFrame() {
+        if (image == null || roadMap == null) return null;
 
-        public static void stop() {
-            LOG.info("Stopping NodeDraw thread");
-            isStopped = true;
-        }
+        // node id's are only kept up to date on request, the debug id display needs them
 
-        @Override
-        public synchronized void run() {
+        if (bDebugShowID) RoadMap.ensureIds();
+        GraphStore snapshot = RoadMap.getSnapshot();
+        return new RenderPipeline.FrameRequest(snapshot, RenderPipeline.captureNodeState(snapshot), getViewTransform(), nodeSize, getMapBackground(), bShowGrid,
+                gridSpacingX, gridSpacingY, zoomLevel < lodNodeZoomLevel, bDebugShowID, bDebugProfile);
+    }
 
-            ArrayList<TextDisplayStore> textList = new ArrayList<>();
-            LOG.info("Starting NodeDraw thread");
+    // the map image level nearest the zoom, any detail tiles and where the panel sits on them
 
+    private RenderPipeline.MapBackground getMapBackground() {
+        if (widthScaled <= 0 || heightScaled <= 0) return null;
+        BufferedImage level = getImageLevel(getLevelForZoom(zoomLevel));
+        return new RenderPipeline.MapBackground(level, (double) level.getWidth() / image.getWidth(), getMapTiles(), offsetX, offsetY,
+                getWidth() / (double) widthScaled, getHeight() / (double) heightScaled);
+    }
 
-            while ( !isStopped ) {
+    // Called by the render pipeline on the EDT when a new frame is ready
 
-                try {
-                    this.wait();
-                } catch (InterruptedException e) {
-                    if (isStopped) {
-                        LOG.info("NodeDraw Thread exiting");
-                        return;
-                    }
+    private void presentFrame() {
+        paintImmediately(0, 0, getWidth(), getHeight());
+    }
 
-                    long startTime = 0;
+    //
+    // Render scheduling
+    //
+    // Mouse events can arrive far quicker than frames can be drawn, so nothing renders
+    // straight away. requestRender() adds to the dirty flags and starts a timer that fires no
+    // sooner than one frame ( see EditorXML.maxFrameRate ) after the last render, everything
+    // asked for until then is done in one go. If the render pool is still busy with the last
+    // frame when the timer fires, RenderPipeline keeps only the newest request.
+    //
+    // A change to the view or the network needs a new frame from the render pool, a change
+    // to the overlay ( see drawOverlay() ) only needs the last frame shown again with it on
+    // top, and only where the overlay was or is now, so hovering and dragging out previews
+    // copies a few pixels of the last frame instead of all of it.
+    //
 
-                    if (bDebugProfile) {
-                        startTime = System.currentTimeMillis();
-                    }
+    public void requestRender(int flags) {
+        dirtyFlags |= flags;
+        if (renderTimer.isRunning()) return;
+        long frameTime = 1000L / Math.max(1, maxFrameRate);
+        long wait = lastRenderTime + frameTime - System.currentTimeMillis();
+        renderTimer.setInitialDelay((int) Math.max(0, Math.min(wait, frameTime)));
+        renderTimer.start();
+    }
 
-                    int width = getMapPanel().getWidth();
-                    int height = getMapPanel().getHeight();
-
-                    int sizeScaled = (int) (nodeSize * zoomLevel);
-                    int sizeScaledHalf = (int) (sizeScaled * 0.5);
-
-                    if (backBufferGraphics != null) {
-
-                        LinkedList<MapNode> mapNodes = RoadMap.mapNodes;
-
-                        //
-                        // Draw all nodes in visible area of map
-                        // The original code would draw all the nodes even if they were not visible
-                        //
-
-                        drawLock.lock();
-                        try {
-                            for (MapNode mapNode : mapNodes) {
-                                Point2D nodePos = worldPosToScreenPos(mapNode.x, mapNode.z);
-                                if (0 < nodePos.getX() && width > nodePos.getX() && 0 < nodePos.getY() && height > nodePos.getY()) {
-                                    if (mapNode.hasWarning && mapNode.isSelected) {
-                                        backBufferGraphics.drawImage(nodeImageSelected, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                                    } else if (mapNode.isSelected && mapNode.flag == 0) {
-                                        backBufferGraphics.drawImage(nodeImageSelected, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                                    } else if (mapNode.isSelected && mapNode.flag == 1) {
-                                        backBufferGraphics.drawImage(subPrioNodeImageSelected, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                                    } else if (mapNode.flag == 1) {
-                                        backBufferGraphics.drawImage(subPrioNodeImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                                    } else {
-                                        backBufferGraphics.drawImage(nodeImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                                    }
-
-                                    if (mapNode.hasWarning) {
-                                        if (mapNode.warningType == NODE_WARNING_OVERLAP) {
-                                            backBufferGraphics.drawImage(warningImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), warningImage.getWidth(), warningImage.getHeight(), null);
-                                        }
-                                    } else {
-                                        if (mapNode.y == -1) {
-                                            backBufferGraphics.drawImage(warningYImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), warningYImage.getWidth(), warningYImage.getHeight(), null);
-                                        }
-                                    }
-                                }
-
-                                // show the node ID if we in debug mode, the higher the node count, the more text spam there is :-P
-                                // It will affect editor speed, the more nodes the worse it will get, you have been warned :)
-
-                                if (bDebugShowID) {
-                                    Point2D newPoint =  new Point2D.Double(nodePos.getX() - 12 , nodePos.getY() + 30);
-                                    textList.add(new TextDisplayStore(String.valueOf(mapNode.id), newPoint, Color.WHITE, false));
-                                }
-                            }
-                        } finally {
-                            drawLock.unlock();
-                        }
+    private void renderDirty() {
+        int flags = dirtyFlags;
+        dirtyFlags = 0;
+        lastRenderTime = System.currentTimeMillis();
+        if ((flags & (RENDER_VIEWPORT | RENDER_NETWORK)) != 0) {
 
-                        // do we draw the node hover-over image and add the marker name/group to the draw list
+            // the overlay is drawn again when the frame is shown
 
-                        if (hoveredNode != null) {
-                            Point2D hoverNodePos = worldPosToScreenPos(hoveredNode.x, hoveredNode.z);
-                            if (hoveredNode.flag == NODE_FLAG_STANDARD) {
-                                backBufferGraphics.drawImage(nodeImageSelected, (int) (hoverNodePos.getX() - sizeScaledHalf), (int) (hoverNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                            } else if (hoveredNode.flag == NODE_FLAG_SUBPRIO) {
-                                backBufferGraphics.drawImage(subPrioNodeImageSelected, (int) (hoverNodePos.getX() - sizeScaledHalf), (int) (hoverNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                            }
-                            for (MapMarker mapMarker : RoadMap.mapMarkers) {
-                                if (hoveredNode.id == mapMarker.mapNode.id) {
-                                    String text = mapMarker.name + " ( " + mapMarker.group + " )";
-                                    Point2D nodePosMarker = worldPosToScreenPos(mapMarker.mapNode.x - 1, mapMarker.mapNode.z - 1);
-                                    textList.add( new TextDisplayStore( text, nodePosMarker, Color.WHITE, false));
-                                }
-                            }
-                            if (bDebugShowSelectedLocation) {
-                                String text = "X = " + hoveredNode.x + " , Y = " + hoveredNode.y + " , Z = " + hoveredNode.z + " , Flags = " + hoveredNode.flag + " , In = " + hoveredNode.incoming.size() + " , Out = " + hoveredNode.outgoing.size();
-                                if (hoveredNode.hasWarning) text +=" , " + (hoveredNode.warningNodes.size() + 1) + " Overlapping Nodes";
-                                Point2D nodePosMarker = worldPosToScreenPos(hoveredNode.x + 1, hoveredNode.z);
-                                textList.add( new TextDisplayStore( text, nodePosMarker, Color.WHITE, false));
-                            }
-                            if (hoveredNode.hasWarning && !bDebugShowSelectedLocation ) {
-                                String text = (hoveredNode.warningNodes.size() + 1) + " Nodes Overlapping";
-                                Point2D nodePosMarker = worldPosToScreenPos(hoveredNode.x + 1, hoveredNode.z);
-                                textList.add( new TextDisplayStore( text, nodePosMarker, Color.WHITE, true));
+            renderPipeline.requestFrame();
+        } else if ((flags & RENDER_OVERLAY) != 0) {
+            Rectangle dirty = measureOverlay();
+            if (overlayBounds != null) {
+                dirty = (dirty == null) ? new Rectangle(overlayBounds) : dirty.union(overlayBounds);
+            }
+            if (dirty != null) super.repaint(dirty.x - 2, dirty.y - 2, dirty.width + 4, dirty.height + 4);
+        }
+    }
 
-                            }
+    private Rectangle measureOverlay() {
+        if (image == null || roadMap == null) return null;
+        drawnOverlayBounds = null;
+        overlayMeasure.setFont(getFont());
+        drawOverlay(overlayMeasure);
+        return drawnOverlayBounds;
+    }
 
-                            if (hoveredNode.y == -1 ) {
-                                String text = "Node Y is invalid ( -1 )";
-                                Point2D nodePosMarker = worldPosToScreenPos(hoveredNode.x + 1, hoveredNode.z);
-                                textList.add( new TextDisplayStore( text, nodePosMarker, Color.WHITE, true));
-                            }
-                        }
+    // Anything outside the map panel that changes what it shows calls repaint() without
+    // saying what changed, so that renders everything at the next frame
 
-                        // iterate over all the markers and add the names to the draw list
+    @Override
+    public void repaint() {
+        if (renderTimer == null) {
+            super.repaint();
+        } else {
+            requestRender(RENDER_ALL);
+        }
+    }
 
-                        LinkedList<MapMarker> mapMarkers = RoadMap.mapMarkers;
-                        for (MapMarker mapMarker : mapMarkers) {
-                            if (RoadMap.mapNodes.contains(mapMarker.mapNode)) {
-                                Point2D nodePos = worldPosToScreenPos(mapMarker.mapNode.x - 1, mapMarker.mapNode.z - 1);
-                                textList.add(new TextDisplayStore(mapMarker.name, nodePos, Color.WHITE, false));
-                            }
-                        }
+    private void drawOverlay(Graphics2D g) {
 
-                        // display all the text we need to render
-
-                        drawLock.lock();
-                        try {
-                            for (TextDisplayStore list : textList) {
-                                backBufferGraphics.setColor(list.colour);
-                                if (list.useBackground) {
-                                    FontMetrics fm = backBufferGraphics.getFontMetrics();
-                                    Rectangle2D rect = fm.getStringBounds(list.text, backBufferGraphics);
-
-                                    backBufferGraphics.setColor(Color.YELLOW);
-                                    backBufferGraphics.fillRect((int)list.position.getX(),
-                                            (int) list.position.getY() - fm.getAscent(),
-                                            (int) rect.getWidth(),
-                                            (int) rect.getHeight() + 2);
-                                    backBufferGraphics.setColor(Color.BLACK);
-                                }
-                                backBufferGraphics.drawString(list.text, (int) list.position.getX(), (int) list.position.getY());
-                            }
-                        } finally {
-                            drawLock.unlock();
-                        }
-                    }
+        int sizeScaled = (int) (nodeSize * zoomLevel);
+        int sizeScaledHalf = (int) (sizeScaled * 0.5);
+        ArrayList<TextDisplayStore> textList = new ArrayList<>();
 
-                    // Draw any liner lines
-
-                    if (selected != null) {
-                        if (editorState == EDITORSTATE_CONNECTING) {
-
-                            Color colour = Color.GREEN;
-
-                            if (linearLine.lineNodeList.size() > 1) {
-                                for (int j = 0; j < linearLine.lineNodeList.size() -1; j++) { // skip the starting node of the array
-                                    MapNode firstPos = linearLine.lineNodeList.get(j);
-                                    MapNode secondPos = linearLine.lineNodeList.get(j+1);
-
-                                    Point2D startNodePos = worldPosToScreenPos(firstPos.x, firstPos.z);
-                                    Point2D endNodePos = worldPosToScreenPos(secondPos.x, secondPos.z);
-
-                                    // don't draw the circle for the last node in the array
-                                    if (j < linearLine.lineNodeList.size() - 1 ) {
-                                        backBufferGraphics.drawImage(curveNodeImage, (int) (startNodePos.getX() - sizeScaledHalf), (int) (startNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                                    }
-                                    if ( connectionType == CONNECTION_DUAL ) {
-                                        colour = Color.BLUE;
-                                    } else if ( connectionType == CONNECTION_REVERSE ) {
-                                        colour = Color.CYAN;
-                                    }
-
-                                    drawLock.lock();
-                                    try {
-                                        backBufferGraphics.setColor(colour);
-                                        drawArrowBetween(backBufferGraphics, startNodePos, endNodePos, connectionType == CONNECTION_DUAL);
-                                    } finally {
-                                        drawLock.unlock();
-                                    }
-                                }
-                            }  else {
-                                if (linearLine.lineNodeList.size() == 1) {
-                                    if ( connectionType == CONNECTION_DUAL ) {
-                                        colour = Color.BLUE;
-                                    } else if ( connectionType == CONNECTION_REVERSE ) {
-                                        colour = Color.CYAN;
-                                    }
-                                    Point2D startNodePos = worldPosToScreenPos(linearLine.getLineStartNode().x, linearLine.getLineStartNode().z);
-                                    Point2D mousePos = new Point2D.Double(currentMouseX,currentMouseY);
-                                    drawLock.lock();
-                                    try {
-                                        backBufferGraphics.setColor(colour);
-                                        drawArrowBetween(backBufferGraphics, startNodePos, mousePos, connectionType == CONNECTION_DUAL);
-                                    } finally {
-                                        drawLock.unlock();
-                                    }
-                                }
-                            }
-                        } else {
+        // do we draw the node hover-over image and add the marker name/group to the draw list
 
-                            Point2D startNodePos = worldPosToScreenPos(selected.x, selected.z);
-                            Point2D mousePos = new Point2D.Double(currentMouseX,currentMouseY);
+        if (hoveredNode != null) {
+            Point2D hoverNodePos = worldPosToScreenPos(hoveredNode.x, hoveredNode.z);
+            if (hoveredNode.flag == NODE_FLAG_STANDARD) {
+                g.drawImage(nodeImageSelected, (int) (hoverNodePos.getX() - sizeScaledHalf), (int) (hoverNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+            } else if (hoveredNode.flag == NODE_FLAG_SUBPRIO) {
+                g.drawImage(subPrioNodeImageSelected, (int) (hoverNodePos.getX() - sizeScaledHalf), (int) (hoverNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+            }
+            markOverlay(hoverNodePos, hoverNodePos, sizeScaledHalf + 1);
+            for (MapMarker mapMarker : RoadMap.getMapMarkers(hoveredNode)) {
+                String text = mapMarker.name + " ( " + mapMarker.group + " )";
+                Point2D nodePosMarker = worldPosToScreenPos(mapMarker.mapNode.x - 1, mapMarker.mapNode.z - 1);
+                textList.add( new TextDisplayStore( text, nodePosMarker, Color.WHITE, false));
+            }
+            if (bDebugShowSelectedLocation) {
+                String text = "X = " + hoveredNode.x + " , Y = " + hoveredNode.y + " , Z = " + hoveredNode.z + " , Flags = " + hoveredNode.flag + " , In = " + hoveredNode.incoming.size() + " , Out = " + hoveredNode.outgoing.size();
+                if (hoveredNode.hasWarning()) text +=" , " + (hoveredNode.getWarningNodeCount() + 1) + " Overlapping Nodes";
+                Point2D nodePosMarker = worldPosToScreenPos(hoveredNode.x + 1, hoveredNode.z);
+                textList.add( new TextDisplayStore( text, nodePosMarker, Color.WHITE, false));
+            }
+            if (hoveredNode.hasWarning() && !bDebugShowSelectedLocation ) {
+                String text = (hoveredNode.getWarningNodeCount() + 1) + " Nodes Overlapping";
+                Point2D nodePosMarker = worldPosToScreenPos(hoveredNode.x + 1, hoveredNode.z);
+                textList.add( new TextDisplayStore( text, nodePosMarker, Color.WHITE, true));
 
-                            drawLock.lock();
-                            try {
-                                backBufferGraphics.setColor(Color.WHITE);
-                                drawArrowBetween(backBufferGraphics, startNodePos, mousePos, false);
-                            } finally {
-                                drawLock.unlock();
-                            }
-                        }
-                    }
+            }
 
-                    // Draw the quad curve connection preview
+            if (hoveredNode.y == -1 ) {
+                String text = "Node Y is invalid ( -1 )";
+                Point2D nodePosMarker = worldPosToScreenPos(hoveredNode.x + 1, hoveredNode.z);
+                textList.add( new TextDisplayStore( text, nodePosMarker, Color.WHITE, true));
+            }
+        }
 
-                    if (quadCurve != null) {
-                        if (isQuadCurveCreated) {
-                            // draw control point
-                            Point2D nodePos = worldPosToScreenPos(quadCurve.getControlPoint().x, quadCurve.getControlPoint().z);
-                            if (quadCurve.getControlPoint().isSelected || hoveredNode == quadCurve.getControlPoint()) {
-                                backBufferGraphics.drawImage(controlPointImageSelected, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                            } else {
-                                backBufferGraphics.drawImage(controlPointImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                            }
+        // display all the text we need to render
 
-                            //draw interpolation points for curve
-                            Color colour = Color.GREEN;
-                            for (int j = 0; j < quadCurve.curveNodesList.size() - 1; j++) {
-
-                                MapNode currentNode = quadCurve.curveNodesList.get(j);
-                                MapNode nextNode = quadCurve.curveNodesList.get(j + 1);
-
-                                Point2D currentNodePos = worldPosToScreenPos(currentNode.x, currentNode.z);
-                                Point2D nextNodePos = worldPosToScreenPos(nextNode.x, nextNode.z);
-
-                                //don't draw the first node as it already been drawn
-                                if (j != 0) {
-                                    if (quadCurve.getNodeType() == NODE_FLAG_STANDARD) {
-                                        backBufferGraphics.drawImage(curveNodeImage,(int) (currentNodePos.getX() - sizeScaledHalf), (int) (currentNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                                    } else {
-                                        backBufferGraphics.drawImage(subPrioNodeImage,(int) (currentNodePos.getX() - (sizeScaledHalf / 2 )), (int) (currentNodePos.getY() - (sizeScaledHalf / 2 )), sizeScaledHalf, sizeScaledHalf, null);
-                                    }
-                                }
-
-                                if (quadCurve.isReversePath()) {
-                                    colour = Color.CYAN;
-                                } else if (quadCurve.isDualPath() && quadCurve.getNodeType() == NODE_FLAG_STANDARD) {
-                                    colour = Color.BLUE;
-                                } else if (quadCurve.isDualPath() && quadCurve.getNodeType() == NODE_FLAG_SUBPRIO) {
-                                    colour = BROWN;
-                                } else if (currentNode.flag == 1) {
-                                    colour = Color.ORANGE;
-                                }
-
-                                drawLock.lock();
-                                try {
-                                    backBufferGraphics.setColor(colour);
-                                    drawArrowBetween(backBufferGraphics, currentNodePos, nextNodePos, quadCurve.isDualPath()) ;
-                                } finally {
-                                    drawLock.unlock();
-                                }
-                            }
-                        }
-                    }
+        for (TextDisplayStore list : textList) {
+            g.setColor(list.colour);
+            if (list.useBackground) {
+                FontMetrics fm = g.getFontMetrics();
+                Rectangle2D rect = fm.getStringBounds(list.text, g);
 
-                    // Draw the cubic curve connection preview
+                g.setColor(Color.YELLOW);
+                g.fillRect((int)list.position.getX(),
+                        (int) list.position.getY() - fm.getAscent(),
+                        (int) rect.getWidth(),
+                        (int) rect.getHeight() + 2);
+                g.setColor(Color.BLACK);
+            }
+            g.drawString(list.text, (int) list.position.getX(), (int) list.position.getY());
+            FontMetrics fm = g.getFontMetrics();
+            markOverlay(list.position.getX(), list.position.getY() - fm.getAscent(), list.position.getX() + fm.stringWidth(list.text), list.position.getY() + fm.getDescent() + 2, 1);
+        }
 
-                    if (cubicCurve != null) {
-                        if (isCubicCurveCreated) {
-                            // draw control point
-                            Point2D nodePos = worldPosToScreenPos(cubicCurve.getControlPoint1().x, cubicCurve.getControlPoint1().z);
-                            if (cubicCurve.getControlPoint1().isSelected || hoveredNode == cubicCurve.getControlPoint1()) {
-                                backBufferGraphics.drawImage(controlPointImageSelected, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                            } else {
-                                backBufferGraphics.drawImage(controlPointImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                            }
+        // Draw any liner lines
 
-                            nodePos = worldPosToScreenPos(cubicCurve.getControlPoint2().x, cubicCurve.getControlPoint2().z);
-                            if (cubicCurve.getControlPoint2().isSelected || hoveredNode == cubicCurve.getControlPoint2()) {
-                                backBufferGraphics.drawImage(controlPointImageSelected, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                            } else {
-                                backBufferGraphics.drawImage(controlPointImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                            }
+        if (selected != null) {
+            if (editorState == EDITORSTATE_CONNECTING) {
 
-                            //draw interpolation points for curve
-                            Color colour = Color.GREEN;
-                            for (int j = 0; j < cubicCurve.curveNodesList.size() - 1; j++) {
-
-                                MapNode current = cubicCurve.curveNodesList.get(j);
-                                MapNode next = cubicCurve.curveNodesList.get(j + 1);
-
-                                Point2D currentNodePos = worldPosToScreenPos(current.x, current.z);
-                                Point2D nextNodePos = worldPosToScreenPos(next.x, next.z);
-
-                                //don't draw the first node as it already been drawn
-                                if (j != 0) {
-                                    if (cubicCurve.getNodeType() == NODE_FLAG_STANDARD) {
-                                        backBufferGraphics.drawImage(curveNodeImage,(int) (currentNodePos.getX() - sizeScaledHalf), (int) (currentNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
-                                    } else {
-                                        backBufferGraphics.drawImage(subPrioNodeImage,(int) (currentNodePos.getX() - (sizeScaledHalf / 2 )), (int) (currentNodePos.getY() - (sizeScaledHalf / 2 )), sizeScaledHalf, sizeScaledHalf, null);
-                                    }
-                                }
-
-                                if (cubicCurve.isReversePath()) {
-                                    colour = Color.CYAN;
-                                } else if (cubicCurve.isDualPath() && cubicCurve.getNodeType() == NODE_FLAG_STANDARD) {
-                                    colour = Color.BLUE;
-                                } else if (cubicCurve.isDualPath() && cubicCurve.getNodeType() == NODE_FLAG_SUBPRIO) {
-                                    colour = BROWN;
-                                } else if (current.flag == 1) {
-                                    colour = Color.ORANGE;
-                                }
-
-                                drawLock.lock();
-                                try {
-                                    backBufferGraphics.setColor(colour);
-                                    drawArrowBetween(backBufferGraphics, currentNodePos, nextNodePos, cubicCurve.isDualPath()) ;
-                                } finally {
-                                    drawLock.unlock();
-                                }
-                            }
-                        }
-                    }
+                Color colour = Color.GREEN;
 
-                    // draw the right button selection rectangle
+                if (linearLine.lineNodeList.size() > 1) {
+                    for (int j = 0; j < linearLine.lineNodeList.size() -1; j++) { // skip the starting node of the array
+                        MapNode firstPos = linearLine.lineNodeList.get(j);
+                        MapNode secondPos = linearLine.lineNodeList.get(j+1);
 
-                    if (rectangleStart != null) {
+                        Point2D startNodePos = worldPosToScreenPos(firstPos.x, firstPos.z);
+                        Point2D endNodePos = worldPosToScreenPos(secondPos.x, secondPos.z);
 
-                        Point2D mousePos = new Point2D.Double(prevMousePosX,prevMousePosY);
-                        int diffX = (int) (mousePos.getX() - rectangleStart.getX());
-                        int diffY = (int) (mousePos.getY() - rectangleStart.getY());
-                        int rectangleX = (int) rectangleStart.getX();
-                        int rectangleY = (int) rectangleStart.getY();
-                        if (diffX < 0) {
-                            rectangleX += diffX;
-                            diffX = -diffX;
+                        // don't draw the circle for the last node in the array
+                        if (j < linearLine.lineNodeList.size() - 1 ) {
+                            g.drawImage(curveNodeImage, (int) (startNodePos.getX() - sizeScaledHalf), (int) (startNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
                         }
-                        if (diffY < 0) {
-                            rectangleY += diffY;
-                            diffY = -diffY;
+                        if ( connectionType == CONNECTION_DUAL ) {
+                            colour = Color.BLUE;
+                        } else if ( connectionType == CONNECTION_REVERSE ) {
+                            colour = Color.CYAN;
                         }
 
-                        drawLock.lock();
-                        try {
-                            backBufferGraphics.setColor(Color.WHITE);
-                            backBufferGraphics.drawRect(rectangleX, rectangleY, diffX, diffY);
-                        } finally {
-                            drawLock.unlock();
-                        }
+                        g.setColor(colour);
+                        drawArrowBetween(g, startNodePos, endNodePos, connectionType == CONNECTION_DUAL);
+                        markOverlay(startNodePos, endNodePos, sizeScaled);
                     }
-
-                    if (bDebugProfile) {
-                        String text = "Finished Node Rendering in " + (System.currentTimeMillis() - startTime) + " ms";
-                        showInTextArea(text,false, false);
+                }  else {
+                    if (linearLine.lineNodeList.size() == 1) {
+                        if ( connectionType == CONNECTION_DUAL ) {
+                            colour = Color.BLUE;
+                        } else if ( connectionType == CONNECTION_REVERSE ) {
+                            colour = Color.CYAN;
+                        }
+                        Point2D startNodePos = worldPosToScreenPos(linearLine.getLineStartNode().x, linearLine.getLineStartNode().z);
+                        Point2D mousePos = new Point2D.Double(currentMouseX,currentMouseY);
+                        g.setColor(colour);
+                        drawArrowBetween(g, startNodePos, mousePos, connectionType == CONNECTION_DUAL);
+                        markOverlay(startNodePos, mousePos, sizeScaled);
                     }
-
-                    textList.clear();
-                    latch.countDown();
                 }
-            }
-
-
-        }
-    }
-
-    //
-    // The connection drawing thread finishes last in almost all cases, so we keep this as small as possible
-    // we only draw the connections in the visible area (plus some extra padding) so we don't see the
-    // connections clipping.
-    //
-
-    public static class ConnectionDrawThread implements Runnable {
-        private static volatile boolean isStopped = false;
-        private final LinkedList<DrawList> brownDrawList = new LinkedList<>();
-        private final LinkedList<DrawList> blueDrawList = new LinkedList<>();
-        private final LinkedList<DrawList> cyanDrawList = new LinkedList<>();
-        private final LinkedList<DrawList> orangeDrawList = new LinkedList<>();
-        private final LinkedList<DrawList> greenDrawList = new LinkedList<>();
-
-        private static class DrawList {
-            Point2D startPos;
-            Point2D endPos;
-            boolean isDual;
+            } else {
 
-            public DrawList(Point2D start, Point2D end, boolean dual) {
-                this.startPos = start;
-                this.endPos = end;
-                this.isDual = dual;
+                Point2D startNodePos = worldPosToScreenPos(selected.x, selected.z);
+                Point2D mousePos = new Point2D.Double(currentMouseX,currentMouseY);
 
+                g.setColor(Color.WHITE);
+                drawArrowBetween(g, startNodePos, mousePos, false);
+                markOverlay(startNodePos, mousePos, sizeScaled);
             }
         }
 
-        public static void stop() {
-            LOG.info("Stopping ConnectionDraw Thread");
-            isStopped = true;
-        }
-
-        @Override
-        public synchronized void run() {
+        // Draw the quad curve connection preview
 
-            LOG.info("Starting ConnectionDraw Thread");
+        if (quadCurve != null) {
+            if (isQuadCurveCreated) {
+                // draw control point
+                Point2D nodePos = worldPosToScreenPos(quadCurve.getControlPoint().x, quadCurve.getControlPoint().z);
+                if (quadCurve.getControlPoint().isSelected() || hoveredNode == quadCurve.getControlPoint()) {
+                    g.drawImage(controlPointImageSelected, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+                } else {
+                    g.drawImage(controlPointImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+                }
+                markOverlay(nodePos, nodePos, sizeScaledHalf + 1);
 
-            while ( !isStopped ) {
+                //draw interpolation points for curve
+                Color colour = Color.GREEN;
+                for (int j = 0; j < quadCurve.curveNodesList.size() - 1; j++) {
 
-                try {
-                    brownDrawList.clear();
-                    blueDrawList.clear();
-                    cyanDrawList.clear();
-                    orangeDrawList.clear();
-                    greenDrawList.clear();
-                    this.wait();
-                } catch (InterruptedException e) {
-                    if (isStopped) {
-                        LOG.info("ConnectionDraw Thread exiting");
-                        return;
-                    }
+                    MapNode currentNode = quadCurve.curveNodesList.get(j);
+                    MapNode nextNode = quadCurve.curveNodesList.get(j + 1);
 
-                    long startTime = 0;
+                    Point2D currentNodePos = worldPosToScreenPos(currentNode.x, currentNode.z);
+                    Point2D nextNodePos = worldPosToScreenPos(nextNode.x, nextNode.z);
 
-                    if (bDebugProfile) {
-                        startTime = System.currentTimeMillis();
+                    //don't draw the first node as it already been drawn
+                    if (j != 0) {
+                        if (quadCurve.getNodeType() == NODE_FLAG_STANDARD) {
+                            g.drawImage(curveNodeImage,(int) (currentNodePos.getX() - sizeScaledHalf), (int) (currentNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+                        } else {
+                            g.drawImage(subPrioNodeImage,(int) (currentNodePos.getX() - (sizeScaledHalf / 2 )), (int) (currentNodePos.getY() - (sizeScaledHalf / 2 )), sizeScaledHalf, sizeScaledHalf, null);
+                        }
                     }
 
-                    //double currentNodeSize = nodeSize * zoomLevel * 0.5;
-
-                    if (backBufferGraphics != null) {
-
-                        int width = getMapPanel().getWidth();
-                        int height = getMapPanel().getHeight();
-                        //Color drawColour;
-
-                        LinkedList<MapNode> nodes = RoadMap.mapNodes;
-
-                        for (MapNode mapNode : nodes) {
-                            LinkedList<MapNode> mapNodes = mapNode.outgoing;
-                            Point2D nodePos = worldPosToScreenPos(mapNode.x, mapNode.z);
-
-                            if (0 - (40 * zoomLevel) < nodePos.getX() && width + (40 * zoomLevel) > nodePos.getX() && 0 - (40 * zoomLevel) < nodePos.getY() && height + (40 * zoomLevel) > nodePos.getY()) {
-                                for (MapNode outgoing : mapNodes) {
-                                    boolean dual = RoadMap.isDual(mapNode, outgoing);
-                                    boolean reverse = RoadMap.isReverse(mapNode, outgoing);
-
-                                    Point2D outPos = worldPosToScreenPos(outgoing.x, outgoing.z);
-
-                                    if (dual && mapNode.flag == 1) {
-                                        brownDrawList.add(new DrawList(nodePos, outPos, true));
-                                    } else if (dual) {
-                                        blueDrawList.add(new DrawList(nodePos, outPos, true));
-                                    } else if (reverse) {
-                                        cyanDrawList.add(new DrawList(nodePos, outPos, false));
-                                    } else if (mapNode.flag == 1) {
-                                        orangeDrawList.add(new DrawList(nodePos, outPos, false));
-                                    } else {
-                                        greenDrawList.add(new DrawList(nodePos, outPos, false));
-                                    }
-                                }
-                            }
-                        }
+                    if (quadCurve.isReversePath()) {
+                        colour = Color.CYAN;
+                    } else if (quadCurve.isDualPath() && quadCurve.getNodeType() == NODE_FLAG_STANDARD) {
+                        colour = Color.BLUE;
+                    } else if (quadCurve.isDualPath() && quadCurve.getNodeType() == NODE_FLAG_SUBPRIO) {
+                        colour = BROWN;
+                    } else if (currentNode.flag == 1) {
+                        colour = Color.ORANGE;
+                    }
 
+                    g.setColor(colour);
+                    drawArrowBetween(g, currentNodePos, nextNodePos, quadCurve.isDualPath()) ;
+                    markOverlay(currentNodePos, nextNodePos, sizeScaled);
+                }
+            }
+        }
 
+        // Draw the cubic curve connection preview
 
-                        // draw all the dual subPriority connection arrows
+        if (cubicCurve != null) {
+            if (isCubicCurveCreated) {
+                // draw control point
+                Point2D nodePos = worldPosToScreenPos(cubicCurve.getControlPoint1().x, cubicCurve.getControlPoint1().z);
+                if (cubicCurve.getControlPoint1().isSelected() || hoveredNode == cubicCurve.getControlPoint1()) {
+                    g.drawImage(controlPointImageSelected, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+                } else {
+                    g.drawImage(controlPointImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+                }
+                markOverlay(nodePos, nodePos, sizeScaledHalf + 1);
 
-                        if (brownDrawList.size() > 0) {
-                            drawLock.lock();
-                            try {
-                                backBufferGraphics.setColor(BROWN);
-                                for (DrawList drawList : brownDrawList) {
-                                    drawArrowBetween(backBufferGraphics, drawList.startPos, drawList.endPos, drawList.isDual);
-                                }
-                            } finally {
-                                drawLock.unlock();
-                            }
-                        }
+                nodePos = worldPosToScreenPos(cubicCurve.getControlPoint2().x, cubicCurve.getControlPoint2().z);
+                if (cubicCurve.getControlPoint2().isSelected() || hoveredNode == cubicCurve.getControlPoint2()) {
+                    g.drawImage(controlPointImageSelected, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+                } else {
+                    g.drawImage(controlPointImage, (int) (nodePos.getX() - sizeScaledHalf), (int) (nodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+                }
+                markOverlay(nodePos, nodePos, sizeScaledHalf + 1);
 
-                        // draw all the Dual connection arrows
-
-                        if (blueDrawList.size() > 0) {
-                            drawLock.lock();
-                            try {
-                                backBufferGraphics.setColor(Color.BLUE);
-                                for (DrawList drawList : blueDrawList) {
-                                    drawArrowBetween(backBufferGraphics, drawList.startPos, drawList.endPos, drawList.isDual);
-                                }
-                            } finally {
-                                drawLock.unlock();
-                            }
-                        }
+                //draw interpolation points for curve
+                Color colour = Color.GREEN;
+                for (int j = 0; j < cubicCurve.curveNodesList.size() - 1; j++) {
 
-                        // draw all the reverse connection arrows
-
-                        if (cyanDrawList.size() > 0) {
-                            drawLock.lock();
-                            try {
-                                backBufferGraphics.setColor(Color.CYAN);
-                                for (DrawList drawList : cyanDrawList) {
-                                    drawArrowBetween(backBufferGraphics, drawList.startPos, drawList.endPos, drawList.isDual);
-                                }
-                            } finally {
-                                drawLock.unlock();
-                            }
-                        }
+                    MapNode current = cubicCurve.curveNodesList.get(j);
+                    MapNode next = cubicCurve.curveNodesList.get(j + 1);
 
-                        // draw all the SubPriority connection arrows
-
-                        if (orangeDrawList.size() > 0) {
-                            drawLock.lock();
-                            try {
-                                backBufferGraphics.setColor(Color.ORANGE);
-                                for (DrawList drawList : orangeDrawList) {
-                                    drawArrowBetween(backBufferGraphics, drawList.startPos, drawList.endPos, drawList.isDual);
-                                }
-                            } finally {
-                                drawLock.unlock();
-                            }
-                        }
+                    Point2D currentNodePos = worldPosToScreenPos(current.x, current.z);
+                    Point2D nextNodePos = worldPosToScreenPos(next.x, next.z);
 
-                        // draw all the regular connection arrows
-
-                        if (greenDrawList.size() > 0) {
-                            drawLock.lock();
-                            try {
-                                backBufferGraphics.setColor(Color.GREEN);
-                                for (DrawList drawList : greenDrawList) {
-                                    drawArrowBetween(backBufferGraphics, drawList.startPos, drawList.endPos, drawList.isDual);
-                                }
-                            } finally {
-                                drawLock.unlock();
-                            }
+                    //don't draw the first node as it already been drawn
+                    if (j != 0) {
+                        if (cubicCurve.getNodeType() == NODE_FLAG_STANDARD) {
+                            g.drawImage(curveNodeImage,(int) (currentNodePos.getX() - sizeScaledHalf), (int) (currentNodePos.getY() - sizeScaledHalf), sizeScaled, sizeScaled, null);
+                        } else {
+                            g.drawImage(subPrioNodeImage,(int) (currentNodePos.getX() - (sizeScaledHalf / 2 )), (int) (currentNodePos.getY() - (sizeScaledHalf / 2 )), sizeScaledHalf, sizeScaledHalf, null);
                         }
                     }
 
-                    if (bDebugProfile) {
-                        String text = "Finished Connection Rendering in " + (System.currentTimeMillis() - startTime) + " ms (" + zoomLevel + ")";
-                        showInTextArea(text, false, false);
+                    if (cubicCurve.isReversePath()) {
+                        colour = Color.CYAN;
+                    } else if (cubicCurve.isDualPath() && cubicCurve.getNodeType() == NODE_FLAG_STANDARD) {
+                        colour = Color.BLUE;
+                    } else if (cubicCurve.isDualPath() && cubicCurve.getNodeType() == NODE_FLAG_SUBPRIO) {
+                        colour = BROWN;
+                    } else if (current.flag == 1) {
+                        colour = Color.ORANGE;
                     }
-                    latch.countDown();
+
+                    g.setColor(colour);
+                    drawArrowBetween(g, currentNodePos, nextNodePos, cubicCurve.isDualPath()) ;
+                    markOverlay(currentNodePos, nextNodePos, sizeScaled);
                 }
             }
         }
-    }
-
-    // Draw the snap grid
 
-    public synchronized void drawGrid() {
+        // draw the right button selection rectangle
 
-        int worldMax = 1024 * mapZoomFactor;
-        Point2D panelWorldTopLeft = screenPosToWorldPos(0,0);
-        Point2D panelWorldBottomRight = screenPosToWorldPos(MapPanel.getMapPanel().getWidth(),MapPanel.getMapPanel().getHeight());
+        if (rectangleStart != null) {
 
-        if (zoomLevel > 2 ) {
-            Color colour = new Color(25,25,25);
-            backBufferGraphics.setPaint(colour);
-            for (double worldX = 0; worldX < worldMax; worldX += gridSpacingX) {
-                if ( worldX < panelWorldBottomRight.getX()) {
-                    Point2D worldStart = worldPosToScreenPos(worldX, panelWorldTopLeft.getY());
-                    Point2D worldEnd = worldPosToScreenPos(worldX, panelWorldBottomRight.getY());
-                    backBufferGraphics.drawLine((int) worldStart.getX(), (int) worldStart.getY(), (int) worldEnd.getX(), (int) worldEnd.getY());
-                }
-                if ( -worldX > panelWorldTopLeft.getX()) {
-                    Point2D worldStart = worldPosToScreenPos(-worldX, panelWorldTopLeft.getY());
-                    Point2D worldEnd = worldPosToScreenPos(-worldX, panelWorldBottomRight.getY());
-                    backBufferGraphics.drawLine( (int) worldStart.getX(), (int) worldStart.getY(), (int) worldEnd.getX(), (int) worldEnd.getY());
-                }
+            Point2D mousePos = new Point2D.Double(prevMousePosX,prevMousePosY);
+            int diffX = (int) (mousePos.getX() - rectangleStart.getX());
+            int diffY = (int) (mousePos.getY() - rectangleStart.getY());
+            int rectangleX = (int) rectangleStart.getX();
+            int rectangleY = (int) rectangleStart.getY();
+            if (diffX < 0) {
+                rectangleX += diffX;
+                diffX = -diffX;
             }
-            for (double worldY = 0; worldY < worldMax; worldY += gridSpacingY) {
-                if ( worldY > panelWorldTopLeft.getY() && worldY < panelWorldBottomRight.getY() ) {
-                    Point2D worldStart = worldPosToScreenPos(panelWorldTopLeft.getX(), worldY);
-                    Point2D worldEnd = worldPosToScreenPos(panelWorldBottomRight.getX(), worldY);
-                    backBufferGraphics.drawLine((int) worldStart.getX(), (int) worldStart.getY(), (int) worldEnd.getX(), (int) worldEnd.getY());
-                }
-                if (-worldY < panelWorldBottomRight.getY()) {
-                    Point2D worldStart = worldPosToScreenPos(panelWorldTopLeft.getX(), -worldY);
-                    Point2D worldEnd = worldPosToScreenPos(panelWorldBottomRight.getX(), -worldY);
-                    backBufferGraphics.drawLine( (int) worldStart.getX(), (int) worldStart.getY(), (int) worldEnd.getX(), (int) worldEnd.getY());
-                }
+            if (diffY < 0) {
+                rectangleY += diffY;
+                diffY = -diffY;
             }
+
+            g.setColor(Color.WHITE);
+            g.drawRect(rectangleX, rectangleY, diffX, diffY);
+            markOverlay(rectangleX, rectangleY, rectangleX + diffX, rectangleY + diffY, 1);
         }
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    // Add the box x1,y1 - x2,y2 grown by pad pixels to the screen area the overlay being drawn
+    // covers, see renderDirty()
 
-        if (bDebugProfile) {
-            showInTextArea("", true, false);
+    private void markOverlay(double x1, double y1, double x2, double y2, int pad) {
+        int left = (int) Math.floor(Math.min(x1, x2)) - pad;
+        int top = (int) Math.floor(Math.min(y1, y2)) - pad;
+        int right = (int) Math.ceil(Math.max(x1, x2)) + pad;
+        int bottom = (int) Math.ceil(Math.max(y1, y2)) + pad;
+        Rectangle area = new Rectangle(left, top, right - left + 1, bottom - top + 1);
+        if (drawnOverlayBounds == null) {
+            drawnOverlayBounds = area;
+        } else {
+            drawnOverlayBounds.add(area);
         }
+    }
 
-        if (image != null) {
-            backBufferGraphics.clipRect(0, 0, this.getWidth(), this.getHeight());
-            backBufferGraphics.drawImage(croppedImage, 0, 0, this.getWidth(), this.getHeight(), null);
-
-            if (bShowGrid) drawGrid();
+    private void markOverlay(Point2D start, Point2D end, int pad) {
+        markOverlay(start.getX(), start.getY(), end.getX(), end.getY(), pad);
+    }
 
-            if (roadMap != null) {
-                latch = new CountDownLatch(2);
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
 
-                nodeDrawThread.interrupt();
-                connectionDrawThread.interrupt();
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+        if (image != null && roadMap != null) {
+            BufferedImage frame = renderPipeline.getFrame();
+            if (frame != null) g.drawImage(frame, 0, 0, null);
 
-                g.drawImage(backBufferImage, 0, 0, null);
+            Graphics2D overlay = (Graphics2D) g.create();
+            try {
+                RenderPipeline.applyHints(overlay);
+                drawnOverlayBounds = null;
+                drawOverlay(overlay);
+                overlayBounds = drawnOverlayBounds;
+            } finally {
+                overlay.dispose();
             }
         }
     }
@@ -868,20 +647,6 @@ public class MapPanel extends JPanel{
 
             offsetX = (centerX - (widthScaled / 2) );
             offsetY = (centerY - (heightScaled / 2));
-
-            if (offsetX != oldOffsetX || offsetY != oldOffsetY || widthScaled != oldWidthScaled || heightScaled != oldHeightScaled) {
-                try {
-                    croppedImage = image.getSubimage(offsetX, offsetY, widthScaled, heightScaled);
-                    oldOffsetX = offsetX;
-                    oldOffsetY = offsetY;
-                    oldWidthScaled = widthScaled;
-                    oldHeightScaled = heightScaled;
-                } catch (Exception e) {
-                    LOG.info("## MapPanel.ResizeMap() ## Exception in getSubImage()");
-                    LOG.info("## MapPanel.ResizeMap() ## x = {} , y = {} , offsetX = {} , offsetY = {}  -- width = {} , height = {} , zoomLevel = {} , widthScaled = {} , heightScaled = {}", x, y, offsetX, offsetY, this.getWidth(), this.getHeight(), zoomLevel, widthScaled, heightScaled);
-                    e.printStackTrace();
-                }
-            }
         }
     }
 
@@ -893,7 +658,7 @@ public class MapPanel extends JPanel{
         y -= diffY / (zoomLevel * image.getHeight());
 
         getResizedMap();
-        this.repaint();
+        requestRender(RENDER_VIEWPORT);
     }
 
     public void increaseZoomLevelBy(int rotations) {
@@ -908,7 +673,7 @@ public class MapPanel extends JPanel{
         if ((zoomLevel - step) >=0 && (zoomLevel - step) < 30) {
             zoomLevel -= step;
             getResizedMap();
-            this.repaint();
+            requestRender(RENDER_VIEWPORT);
         }
     }
 
@@ -930,43 +695,49 @@ public class MapPanel extends JPanel{
         scaledDiffX = newX - movingNode.x;
         scaledDiffY = newY - movingNode.z;
 
-        for (MapNode node : nodeList) {
-            if (!node.isControlNode) {
-                if (node.x + scaledDiffX > -1024 * mapZoomFactor && node.x + scaledDiffX < 1024 * mapZoomFactor) {
-                    node.x += scaledDiffX;
-                }
-                if (node.z + scaledDiffY > -1024 * mapZoomFactor && node.z + scaledDiffY < 1024 * mapZoomFactor) {
-                    node.z += scaledDiffY;
-                }
-            }
-            if (isQuadCurveCreated) {
-                if (node == quadCurve.getCurveStartNode()) {
-                    quadCurve.setCurveStartNode(node);
-                } else if (node == quadCurve.getCurveEndNode()) {
-                    quadCurve.setCurveEndNode(node);
-                }
-                    if (node == quadCurve.getControlPoint()) {
-                        quadCurve.updateControlPoint(scaledDiffX, scaledDiffY);
+        RoadMap.beginEventBatch();
+        try {
+            for (MapNode node : nodeList) {
+                if (!node.isControlNode()) {
+                    if (node.x + scaledDiffX > -1024 * mapZoomFactor && node.x + scaledDiffX < 1024 * mapZoomFactor) {
+                        node.x += scaledDiffX;
                     }
-            }
-            if (isCubicCurveCreated) {
-                if (node == cubicCurve.getCurveStartNode()) {
-                    cubicCurve.setCurveStartNode(node);
-                } else if (node == cubicCurve.getCurveEndNode()) {
-                    cubicCurve.setCurveEndNode(node);
+                    if (node.z + scaledDiffY > -1024 * mapZoomFactor && node.z + scaledDiffY < 1024 * mapZoomFactor) {
+                        node.z += scaledDiffY;
+                    }
+                    RoadMap.fireNodeMoved(node);
                 }
-                if (node == cubicCurve.getControlPoint1()) {
-                    cubicCurve.updateControlPoint1(scaledDiffX, scaledDiffY);
+                if (isQuadCurveCreated) {
+                    if (node == quadCurve.getCurveStartNode()) {
+                        quadCurve.setCurveStartNode(node);
+                    } else if (node == quadCurve.getCurveEndNode()) {
+                        quadCurve.setCurveEndNode(node);
+                    }
+                        if (node == quadCurve.getControlPoint()) {
+                            quadCurve.updateControlPoint(scaledDiffX, scaledDiffY);
+                        }
                 }
-                if (node == cubicCurve.getControlPoint2()) {
-                    cubicCurve.updateControlPoint2(scaledDiffX, scaledDiffY);
+                if (isCubicCurveCreated) {
+                    if (node == cubicCurve.getCurveStartNode()) {
+                        cubicCurve.setCurveStartNode(node);
+                    } else if (node == cubicCurve.getCurveEndNode()) {
+                        cubicCurve.setCurveEndNode(node);
+                    }
+                    if (node == cubicCurve.getControlPoint1()) {
+                        cubicCurve.updateControlPoint1(scaledDiffX, scaledDiffY);
+                    }
+                    if (node == cubicCurve.getControlPoint2()) {
+                        cubicCurve.updateControlPoint2(scaledDiffX, scaledDiffY);
+                    }
                 }
             }
+        } finally {
+            RoadMap.endEventBatch();
         }
 
         canAutoSave = true;
 
-        this.repaint();
+        requestRender(RENDER_NETWORK | RENDER_OVERLAY);
     }
 
     public void moveNodeBy(LinkedList<MapNode> nodeList, int diffX, int diffY, boolean snapOverride) {
@@ -975,70 +746,76 @@ public class MapPanel extends JPanel{
 
         canAutoSave = false;
 
-        for (MapNode node : nodeList) {
-            if (bGridSnap && !snapOverride) {
-                Point2D p = screenPosToWorldPos( prevMousePosX + diffX, prevMousePosY + diffY);
-                double newX, newY;
-                if (bGridSnapSubs) {
-                    newX = Math.round(p.getX() / (gridSpacingX / (gridSubDivisions + 1))) * (gridSpacingX / (gridSubDivisions + 1));
-                    newY = Math.round(p.getY() / (gridSpacingY / (gridSubDivisions + 1))) * (gridSpacingY / (gridSubDivisions + 1));
+        RoadMap.beginEventBatch();
+        try {
+            for (MapNode node : nodeList) {
+                if (bGridSnap && !snapOverride) {
+                    Point2D p = screenPosToWorldPos( prevMousePosX + diffX, prevMousePosY + diffY);
+                    double newX, newY;
+                    if (bGridSnapSubs) {
+                        newX = Math.round(p.getX() / (gridSpacingX / (gridSubDivisions + 1))) * (gridSpacingX / (gridSubDivisions + 1));
+                        newY = Math.round(p.getY() / (gridSpacingY / (gridSubDivisions + 1))) * (gridSpacingY / (gridSubDivisions + 1));
+                    } else {
+                        newX = Math.round(p.getX() / gridSpacingX) * gridSpacingX;
+                        newY = Math.round(p.getY() / gridSpacingY) * gridSpacingY;
+                    }
+                    scaledDiffX = newX - node.x;
+                    scaledDiffY = newY - node.z;
+
                 } else {
-                    newX = Math.round(p.getX() / gridSpacingX) * gridSpacingX;
-                    newY = Math.round(p.getY() / gridSpacingY) * gridSpacingY;
+                    scaledDiffX = (diffX * mapZoomFactor) / zoomLevel;
+                    scaledDiffY = (diffY * mapZoomFactor) / zoomLevel;
                 }
-                scaledDiffX = newX - node.x;
-                scaledDiffY = newY - node.z;
-
-            } else {
-                scaledDiffX = (diffX * mapZoomFactor) / zoomLevel;
-                scaledDiffY = (diffY * mapZoomFactor) / zoomLevel;
-            }
 
-            if (!node.isControlNode) {
-                if (node.x + scaledDiffX > -1024 * mapZoomFactor && node.x + scaledDiffX < 1024 * mapZoomFactor) {
-                    if (bGridSnap && !snapOverride) {
-                        node.x = (double) Math.round((node.x + scaledDiffX) * 50) / 50;
-                    } else {
-                        node.x += scaledDiffX;
+                if (!node.isControlNode()) {
+                    if (node.x + scaledDiffX > -1024 * mapZoomFactor && node.x + scaledDiffX < 1024 * mapZoomFactor) {
+                        if (bGridSnap && !snapOverride) {
+                            node.x = (double) Math.round((node.x + scaledDiffX) * 50) / 50;
+                        } else {
+                            node.x += scaledDiffX;
+                        }
                     }
-                }
-                if (node.z + scaledDiffY > -1024 * mapZoomFactor && node.z + scaledDiffY < 1024 * mapZoomFactor) {
-                    if (bGridSnap && !snapOverride) {
-                        node.z = (double) Math.round((node.z + scaledDiffY) * 50) / 50;
-                    } else {
-                        node.z += scaledDiffY;
+                    if (node.z + scaledDiffY > -1024 * mapZoomFactor && node.z + scaledDiffY < 1024 * mapZoomFactor) {
+                        if (bGridSnap && !snapOverride) {
+                            node.z = (double) Math.round((node.z + scaledDiffY) * 50) / 50;
+                        } else {
+                            node.z += scaledDiffY;
+                        }
                     }
+                    RoadMap.fireNodeMoved(node);
                 }
-            }
 
-            if (isQuadCurveCreated) {
-                if (node == quadCurve.getCurveStartNode()) {
-                    quadCurve.setCurveStartNode(node);
-                } else if (node == quadCurve.getCurveEndNode()) {
-                    quadCurve.setCurveEndNode(node);
-                }
-                if (node == quadCurve.getControlPoint()) {
-                    quadCurve.updateControlPoint(scaledDiffX, scaledDiffY);
-                }
-            }
-            if (isCubicCurveCreated) {
-                if (node == cubicCurve.getCurveStartNode()) {
-                    cubicCurve.setCurveStartNode(node);
-                } else if (node == cubicCurve.getCurveEndNode()) {
-                    cubicCurve.setCurveEndNode(node);
-                }
-                if (node == cubicCurve.getControlPoint1()) {
-                    cubicCurve.updateControlPoint1(scaledDiffX, scaledDiffY);
+                if (isQuadCurveCreated) {
+                    if (node == quadCurve.getCurveStartNode()) {
+                        quadCurve.setCurveStartNode(node);
+                    } else if (node == quadCurve.getCurveEndNode()) {
+                        quadCurve.setCurveEndNode(node);
+                    }
+                    if (node == quadCurve.getControlPoint()) {
+                        quadCurve.updateControlPoint(scaledDiffX, scaledDiffY);
+                    }
                 }
-                if (node == cubicCurve.getControlPoint2()) {
-                    cubicCurve.updateControlPoint2(scaledDiffX, scaledDiffY);
+                if (isCubicCurveCreated) {
+                    if (node == cubicCurve.getCurveStartNode()) {
+                        cubicCurve.setCurveStartNode(node);
+                    } else if (node == cubicCurve.getCurveEndNode()) {
+                        cubicCurve.setCurveEndNode(node);
+                    }
+                    if (node == cubicCurve.getControlPoint1()) {
+                        cubicCurve.updateControlPoint1(scaledDiffX, scaledDiffY);
+                    }
+                    if (node == cubicCurve.getControlPoint2()) {
+                        cubicCurve.updateControlPoint2(scaledDiffX, scaledDiffY);
+                    }
                 }
             }
+        } finally {
+            RoadMap.endEventBatch();
         }
 
         canAutoSave = true;
 
-        this.repaint();
+        requestRender(RENDER_NETWORK | RENDER_OVERLAY);
     }
 
     public MapNode getNodeAt(double posX, double posY) {
@@ -1052,7 +829,7 @@ public class MapPanel extends JPanel{
 
             // make sure we prioritize returning control nodes over regular nodes
 
-            for (MapNode mapNode : RoadMap.mapNodes) {
+            for (MapNode mapNode : getNodesNearScreenArea(posX - currentNodeSize, posY - currentNodeSize, posX + currentNodeSize, posY + currentNodeSize)) {
                 outPos = worldPosToScreenPos(mapNode.x, mapNode.z);
                 if (posX < outPos.getX() + currentNodeSize && posX > outPos.getX() - currentNodeSize && posY < outPos.getY() + currentNodeSize && posY > outPos.getY() - currentNodeSize) {
                     selected = mapNode;
@@ -1060,6 +837,21 @@ public class MapPanel extends JPanel{
                 }
             }
 
+            // zoomed out the nodes are too small to hit, settle for the nearest node of the
+            // road passing under the mouse
+
+            if (selected == null && zoomLevel < lodNodeZoomLevel) {
+                ViewTransform view = getViewTransform();
+                double range = NodeDensityLayer.CELL_SIZE / view.getScale();
+                double worldX = view.toWorldX(posX);
+                double worldZ = view.toWorldY(posY);
+                ChainIndex.Chain chain = RoadMap.chainIndex.getChainAt(worldX, worldZ, range);
+                if (chain != null) {
+                    MapNode nearest = chain.getNearestNode(worldX, worldZ);
+                    if (Math.abs(nearest.x - worldX) <= range * 2 && Math.abs(nearest.z - worldZ) <= range * 2) selected = nearest;
+                }
+            }
+
             if (isQuadCurveCreated) {
                 outPos = worldPosToScreenPos(quadCurve.getControlPoint().x, quadCurve.getControlPoint().z);
                 if (posX < outPos.getX() + currentNodeSize && posX > outPos.getX() - currentNodeSize && posY < outPos.getY() + currentNodeSize && posY > outPos.getY() - currentNodeSize) {
@@ -1100,10 +892,11 @@ public class MapPanel extends JPanel{
     public void removeDeleteListNodes() {
         canAutoSave = false;
 
+        LinkedList<MapNode> toDelete = new LinkedList<>();
         for (NodeLinks nodeLinks : deleteNodeList) {
-            MapNode inList = nodeLinks.node;
-            RoadMap.removeMapNode(inList);
+            toDelete.add(nodeLinks.node);
         }
+        RoadMap.removeMapNodes(toDelete);
 
         canAutoSave = true;
 
@@ -1115,13 +908,7 @@ public class MapPanel extends JPanel{
     public void removeDestination(MapNode toDelete) {
         canAutoSave = false;
 
-        MapMarker destinationToDelete = null;
-        LinkedList<MapMarker> mapMarkers = RoadMap.mapMarkers;
-        for (MapMarker mapMarker : mapMarkers) {
-            if (mapMarker.mapNode.id == toDelete.id) {
-                destinationToDelete = mapMarker;
-            }
-        }
+        MapMarker destinationToDelete = RoadMap.getMapMarker(toDelete);
         if (destinationToDelete != null) {
             changeManager.addChangeable( new MarkerRemoveChanger(destinationToDelete));
             RoadMap.removeMapMarker(destinationToDelete);
@@ -1148,6 +935,16 @@ public class MapPanel extends JPanel{
         return mapNode;
     }
 
+    // Candidate nodes for a hit test against a screen area, looked up in the spatial index.
+    // The world area is padded by a pixel either side so the caller still does the exact test.
+
+    private static ArrayList<MapNode> getNodesNearScreenArea(double minScreenX, double minScreenY, double maxScreenX, double maxScreenY) {
+        Point2D worldStart = screenPosToWorldPos((int) Math.floor(minScreenX) - 1, (int) Math.floor(minScreenY) - 1);
+        Point2D worldEnd = screenPosToWorldPos((int) Math.ceil(maxScreenX) + 1, (int) Math.ceil(maxScreenY) + 1);
+        return RoadMap.spatialIndex.getNodesInArea(Math.min(worldStart.getX(), worldEnd.getX()), Math.min(worldStart.getY(), worldEnd.getY()),
+                Math.max(worldStart.getX(), worldEnd.getX()), Math.max(worldStart.getY(), worldEnd.getY()));
+    }
+
     public static Point2D screenPosToWorldPos(int screenX, int screenY) {
         double centerX = (x * (image.getWidth()));
         double centerY = (y * (image.getHeight()));
@@ -1169,6 +966,14 @@ public class MapPanel extends JPanel{
         return new Point2D.Double(worldPosX, worldPosY);
     }
 
+    // The current world <-> screen mapping, for code that converts lots of positions
+
+    public static ViewTransform getViewTransform() {
+        double topLeftX = (x * (image.getWidth() * zoomLevel)) - ((double) mapPanel.getWidth() / 2);
+        double topLeftY = (y * (image.getHeight() * zoomLevel)) - ((double) mapPanel.getHeight() / 2);
+        return new ViewTransform(zoomLevel, mapZoomFactor, topLeftX, topLeftY, mapPanel.getWidth(), mapPanel.getHeight());
+    }
+
     public static Point2D worldPosToScreenPos(double worldX, double worldY) {
 
         int centerPointOffset = 1024 * mapZoomFactor;
@@ -1188,51 +993,12 @@ public class MapPanel extends JPanel{
         return new Point2D.Double(scaledX - topLeftX,scaledY - topLeftY);
     }
 
-    public static void createConnectionBetween(MapNode start, MapNode target, int type) {
-        if (start == target) {
-            return;
-        }
-
-        //if (target.incoming.size() == 0 && target.outgoing.size() == 0) { target.y = start.y; }
-
-        if (!start.outgoing.contains(target)) {
-            start.outgoing.add(target);
-
-            if (type == CONNECTION_STANDARD) {
-                if (!target.incoming.contains(start))
-                target.incoming.add(start);
-            } else if (type == CONNECTION_REVERSE ) {
-                start.incoming.remove(target);
-                target.incoming.remove(start);
-                target.outgoing.remove(start);
-            } else if (type == CONNECTION_DUAL) {
-                if (!target.incoming.contains(start)) {
-                    target.incoming.add(start);
-                }
-                if (!target.outgoing.contains(start)) {
-                    target.outgoing.add(start);
-                }
-                if (!start.incoming.contains(target)) {
-                    start.incoming.add(target);
-                }
-            }
-        } else {
-            if (type == CONNECTION_STANDARD) {
-                start.outgoing.remove(target);
-                target.incoming.remove(start);
-            } else if (type == CONNECTION_REVERSE ) {
-                start.outgoing.remove(target);
-                start.incoming.remove(target);
-                target.outgoing.remove(start);
-                target.incoming.remove(start);
+    // The connection type the curve tools use for the path options they were given
 
-            } else if (type == CONNECTION_DUAL) {
-                start.outgoing.remove(target);
-                start.incoming.remove(target);
-                target.incoming.remove(start);
-                target.outgoing.remove(start);
-            }
-        }
+    public static int getCurveConnectionType(boolean reversePath, boolean dualPath) {
+        if (reversePath) return CONNECTION_REVERSE;
+        if (dualPath) return CONNECTION_DUAL;
+        return CONNECTION_STANDARD;
     }
 
     public void createDestinationAt(MapNode mapNode, String destinationName, String groupName) {
@@ -1241,13 +1007,9 @@ public class MapPanel extends JPanel{
             MapMarker mapMarker = new MapMarker(mapNode, destinationName, groupName);
             changeManager.addChangeable( new MarkerAddChanger(mapMarker));
             if (configType == CONFIG_ROUTEMANAGER) {
-                boolean found = false;
-                for (MarkerGroup marker : markerGroup) {
-                    if (Objects.equals(marker.groupName, groupName)) found = true;
-                }
-                if (!found && !groupName.equals("All")) {
+                if (!hasMarkerGroup(groupName) && !groupName.equals("All")) {
                     LOG.info("Adding new group {} to markerGroup", groupName);
-                    markerGroup.add(new MarkerGroup(markerGroup.size() + 1, groupName));
+                    addMarkerGroup(new MarkerGroup(markerGroup.size() + 1, groupName));
                 }
             }
             roadMap.addMapMarker(mapMarker);
@@ -1257,6 +1019,7 @@ public class MapPanel extends JPanel{
 
     public void changeNodePriority(MapNode nodeToChange) {
         nodeToChange.flag = 1 - nodeToChange.flag;
+        RoadMap.fireNodeFlagChanged(nodeToChange);
         changeManager.addChangeable( new NodePriorityChanger(nodeToChange));
         setStale(true);
         this.repaint();
@@ -1270,17 +1033,17 @@ public class MapPanel extends JPanel{
             if (multiSelectList.contains(quadCurve.getCurveStartNode())) {
                 if (DEBUG) LOG.info("Cannot delete start node of quad curve until it is confirmed or cancelled");
                 multiSelectList.remove(quadCurve.getCurveStartNode());
-                quadCurve.getCurveStartNode().isSelected = false;
+                quadCurve.getCurveStartNode().setSelected(false);
             }
             if (multiSelectList.contains(quadCurve.getCurveEndNode())) {
                 if (DEBUG) LOG.info("Cannot delete end nodes of quad curve until it is confirmed or cancelled");
                 multiSelectList.remove(quadCurve.getCurveEndNode());
-                quadCurve.getCurveEndNode().isSelected = false;
+                quadCurve.getCurveEndNode().setSelected(false);
             }
             if (multiSelectList.contains(quadCurve.getControlPoint())) {
                 if (DEBUG) LOG.info("Cannot delete quad curve control point");
                 multiSelectList.remove(quadCurve.getControlPoint());
-                quadCurve.getControlPoint().isSelected = false;
+                quadCurve.getControlPoint().setSelected(false);
 
             }
         }
@@ -1288,22 +1051,22 @@ public class MapPanel extends JPanel{
             if (multiSelectList.contains(cubicCurve.getCurveStartNode())) {
                 if (DEBUG) LOG.info("Cannot delete start node of cubic curve until it is confirmed or cancelled");
                 multiSelectList.remove(cubicCurve.getCurveStartNode());
-                cubicCurve.getCurveStartNode().isSelected = false;
+                cubicCurve.getCurveStartNode().setSelected(false);
             }
             if (multiSelectList.contains(cubicCurve.getCurveEndNode())) {
                 if (DEBUG) LOG.info("Cannot delete end node of cubic curve until it is confirmed or cancelled");
                 multiSelectList.remove(cubicCurve.getCurveEndNode());
-                cubicCurve.getCurveEndNode().isSelected = false;
+                cubicCurve.getCurveEndNode().setSelected(false);
             }
             if (multiSelectList.contains(cubicCurve.getControlPoint1())) {
                 if (DEBUG) LOG.info("Cannot delete cubic curve control point 1");
                 multiSelectList.remove(cubicCurve.getControlPoint1());
-                cubicCurve.getControlPoint1().isSelected = false;
+                cubicCurve.getControlPoint1().setSelected(false);
             }
             if (multiSelectList.contains(cubicCurve.getControlPoint2())) {
                 if (DEBUG) LOG.info("Cannot delete cubic curve control point 2");
                 multiSelectList.remove(cubicCurve.getControlPoint2());
-                cubicCurve.getControlPoint2().isSelected = false;
+                cubicCurve.getControlPoint2().setSelected(false);
             }
         }
         for (MapNode node : multiSelectList) {
@@ -1324,8 +1087,14 @@ public class MapPanel extends JPanel{
 
         getAllNodesInScreenArea(rectangleStartScreen, rectangleEndScreen);
         if (!multiSelectList.isEmpty()) {
-            for (MapNode node : multiSelectList) {
-                node.flag = 1 - node.flag;
+            RoadMap.beginEventBatch();
+            try {
+                for (MapNode node : multiSelectList) {
+                    node.flag = 1 - node.flag;
+                    RoadMap.fireNodeFlagChanged(node);
+                }
+            } finally {
+                RoadMap.endEventBatch();
             }
         }
         changeManager.addChangeable( new NodePriorityChanger(multiSelectList));
@@ -1350,7 +1119,7 @@ public class MapPanel extends JPanel{
        height = (int) rectangle.getHeight();
        double currentNodeSize = nodeSize * zoomLevel * 0.5;
 
-       for (MapNode mapNode : RoadMap.mapNodes) {
+       for (MapNode mapNode : getNodesNearScreenArea(screenStartX - currentNodeSize, screenStartY - currentNodeSize, screenStartX + width + currentNodeSize, screenStartY + height + currentNodeSize)) {
 
            Point2D nodePos = worldPosToScreenPos(mapNode.x, mapNode.z);
 
@@ -1358,10 +1127,10 @@ public class MapPanel extends JPanel{
 
                if (multiSelectList.contains(mapNode)) {
                    multiSelectList.remove(mapNode);
-                   mapNode.isSelected = false;
+                   mapNode.setSelected(false);
                } else {
                    multiSelectList.add(mapNode);
-                   mapNode.isSelected = true;
+                   mapNode.setSelected(true);
                }
            }
        }
@@ -1372,10 +1141,10 @@ public class MapPanel extends JPanel{
            if (screenStartX < nodePos.getX() + currentNodeSize && (screenStartX + width) > nodePos.getX() - currentNodeSize && screenStartY < nodePos.getY() + currentNodeSize && (screenStartY + height) > nodePos.getY() - currentNodeSize) {
                if (multiSelectList.contains(controlPoint)) {
                    multiSelectList.remove(controlPoint);
-                   controlPoint.isSelected = false;
+                   controlPoint.setSelected(false);
                } else {
                    multiSelectList.add(controlPoint);
-                   controlPoint.isSelected = true;
+                   controlPoint.setSelected(true);
                }
            }
        }
@@ -1388,20 +1157,20 @@ public class MapPanel extends JPanel{
            if (screenStartX < nodePos1.getX() + currentNodeSize && (screenStartX + width) > nodePos1.getX() - currentNodeSize && screenStartY < nodePos1.getY() + currentNodeSize && (screenStartY + height) > nodePos1.getY() - currentNodeSize) {
                if (multiSelectList.contains(controlPoint1)) {
                    multiSelectList.remove(controlPoint1);
-                   controlPoint1.isSelected = false;
+                   controlPoint1.setSelected(false);
                } else {
                    multiSelectList.add(controlPoint1);
-                   controlPoint1.isSelected = true;
+                   controlPoint1.setSelected(true);
                }
            }
            Point2D nodePos2 = worldPosToScreenPos(controlPoint2.x, controlPoint2.z);
            if (screenStartX < nodePos2.getX() + currentNodeSize && (screenStartX + width) > nodePos2.getX() - currentNodeSize && screenStartY < nodePos2.getY() + currentNodeSize && (screenStartY + height) > nodePos2.getY() - currentNodeSize) {
                if (multiSelectList.contains(controlPoint2)) {
                    multiSelectList.remove(controlPoint2);
-                   controlPoint2.isSelected = false;
+                   controlPoint2.setSelected(false);
                } else {
                    multiSelectList.add(controlPoint2);
-                   controlPoint2.isSelected = true;
+                   controlPoint2.setSelected(true);
                }
            }
        }
@@ -1420,7 +1189,7 @@ public class MapPanel extends JPanel{
     public static void clearMultiSelection() {
         if (multiSelectList != null && multiSelectList.size() > 0 ) {
             for (MapNode node : multiSelectList) {
-                node.isSelected = false;
+                node.setSelected(false);
             }
             multiSelectList.clear();
         }
@@ -1431,61 +1200,14 @@ public class MapPanel extends JPanel{
     }
 
     public static void drawArrowBetween(Graphics g, Point2D start, Point2D target, boolean dual) {
+        drawArrowBetween(g, start.getX(), start.getY(), target.getX(), target.getY(), dual);
+    }
 
-        double startX = start.getX();
-        double startY = start.getY();
-        double targetX = target.getX();
-        double targetY = target.getY();
-
-
-        double vecX = startX - targetX;
-        double vecY = startY - targetY;
-
-        double angleRad = Math.atan2(vecY, vecX);
-
-        angleRad = normalizeAngle(angleRad);
-
-        // calculate where to start the line based around the circumference of the node
-
-        double distCos = ((nodeSize * zoomLevel) * 0.5) * Math.cos(angleRad);
-        double distSin = ((nodeSize * zoomLevel) * 0.5) * Math.sin(angleRad);
-
-        double lineStartX = startX - distCos;
-        double lineStartY = startY - distSin;
-
-        // calculate where to finish the line based around the circumference of the node
-        double lineEndX = targetX + distCos;
-        double lineEndY = targetY + distSin;
-
-        g.drawLine((int) lineStartX, (int) lineStartY, (int) lineEndX, (int) lineEndY);
-
-        if (zoomLevel > 2.5) {
-            double arrowLength = 1.3 * zoomLevel;
-
-            double arrowLeft = normalizeAngle(angleRad + Math.toRadians(-20));
-            double arrowLeftX = targetX + Math.cos(arrowLeft) * arrowLength;
-            double arrowLeftY = targetY + Math.sin(arrowLeft) * arrowLength;
-
-            double arrowRight = normalizeAngle(angleRad + Math.toRadians(20));
-            double arrowRightX = targetX + Math.cos(arrowRight) * arrowLength;
-            double arrowRightY = targetY + Math.sin(arrowRight) * arrowLength;
-            g.drawLine((int) lineEndX, (int) lineEndY, (int) arrowLeftX, (int) arrowLeftY);
-            g.drawLine((int) lineEndX, (int) lineEndY, (int) arrowRightX, (int) arrowRightY);
-
-            if (dual) {
-                angleRad = normalizeAngle(angleRad+Math.PI);
-
-                arrowLeft = normalizeAngle(angleRad + Math.toRadians(-20));
-                arrowRight = normalizeAngle(angleRad + Math.toRadians(20));
-
-                arrowLeftX = start.getX() + Math.cos(arrowLeft) * arrowLength;
-                arrowLeftY = start.getY() + Math.sin(arrowLeft) * arrowLength;
-                arrowRightX = start.getX() + Math.cos(arrowRight) * arrowLength;
-                arrowRightY = start.getY() + Math.sin(arrowRight) * arrowLength;
-
-                g.drawLine((int) lineStartX, (int) lineStartY, (int) arrowLeftX, (int) arrowLeftY);
-                g.drawLine((int) lineStartX, (int) lineStartY, (int) arrowRightX, (int) arrowRightY);
-            }
+    public static void drawArrowBetween(Graphics g, double startX, double startY, double targetX, double targetY, boolean dual) {
+        int[] segments = new int[20];
+        int count = ArrowPath.computeSegments(startX, startY, targetX, targetY, dual, (nodeSize * zoomLevel) * 0.5, 1.3 * zoomLevel, zoomLevel > 2.5, segments);
+        for (int i = 0; i < count; i += 4) {
+            g.drawLine(segments[i], segments[i + 1], segments[i + 2], segments[i + 3]);
         }
     }
 
@@ -1543,7 +1265,7 @@ public class MapPanel extends JPanel{
         quadCurve = null;
         selected = null;
         //if (cubicCurve == null)  GUIBuilder.curvePanel.setVisible(false);
-        this.repaint();
+        requestRender(RENDER_OVERLAY);
     }
 
     private void stopCubicCurve() {
@@ -1553,7 +1275,7 @@ public class MapPanel extends JPanel{
         cubicCurve = null;
         selected = null;
         //if (quadCurve == null) GUIBuilder.curvePanel.setVisible(false);
-        this.repaint();
+        requestRender(RENDER_OVERLAY);
     }
 
     //
@@ -1584,19 +1306,19 @@ public class MapPanel extends JPanel{
                 if (isDraggingRoute) {
                     Point2D pointerPos = screenPosToWorldPos(mousePosX, mousePosY);
                     linearLine.updateLine(pointerPos.getX(), pointerPos.getY());
-                    this.repaint();
+                    requestRender(RENDER_OVERLAY);
                 }
             }
             if (editorState == EDITORSTATE_QUADRATICBEZIER && selected != null) {
-                this.repaint();
+                requestRender(RENDER_OVERLAY);
             }
             if (editorState == EDITORSTATE_CUBICBEZIER && selected != null) {
-                this.repaint();
+                requestRender(RENDER_OVERLAY);
             }
             movingNode = getNodeAt(mousePosX, mousePosY);
             if (movingNode != hoveredNode) {
                 hoveredNode = movingNode;
-                this.repaint();
+                requestRender(RENDER_OVERLAY);
             }
         }
     }
@@ -1640,7 +1362,7 @@ public class MapPanel extends JPanel{
                 if (quadCurve != null) {
                     quadCurve.updateCurve();
                 }
-                this.repaint();
+                requestRender(RENDER_OVERLAY);
             }
         }
 
@@ -1649,12 +1371,12 @@ public class MapPanel extends JPanel{
                 if (cubicCurve != null) {
                     cubicCurve.updateCurve();
                 }
-                this.repaint();
+                requestRender(RENDER_OVERLAY);
             }
         }
 
         if (rectangleStart != null && isMultiSelectAllowed) {
-                this.repaint();
+                requestRender(RENDER_OVERLAY);
         }
     }
 
@@ -1689,13 +1411,11 @@ public class MapPanel extends JPanel{
 
         if (editorState == EDITORSTATE_CREATING_DESTINATION) {
             if (movingNode != null) {
-                for (int i = 0; i < RoadMap.mapMarkers.size(); i++) {
-                    MapMarker mapMarker = RoadMap.mapMarkers.get(i);
-                    if (mapMarker.mapNode == movingNode) {
-                        LOG.info("{}", localeString.getString("console_marker_add_exists"));
-                        return;
-                    }
+                if (RoadMap.hasMapMarker(movingNode)) {
+                    LOG.info("{}", localeString.getString("console_marker_add_exists"));
+                    return;
                 }
+                RoadMap.ensureIds();
                 destInfo info = showNewMarkerDialog(movingNode.id);
                 if (info != null && info.getName() != null) {
                     LOG.info("{} {} - Name = {} , Group = {}", localeString.getString("console_marker_add"), movingNode.id, info.getName(), info.getGroup());
@@ -1707,30 +1427,22 @@ public class MapPanel extends JPanel{
 
         if (editorState == EDITORSTATE_EDITING_DESTINATION) {
             if (movingNode != null) {
-                for (int i = 0; i < RoadMap.mapMarkers.size(); i++) {
-                    MapMarker mapMarker = RoadMap.mapMarkers.get(i);
-                    if (mapMarker.mapNode == movingNode) {
-                        destInfo info = showEditMarkerDialog(mapMarker.mapNode.id, mapMarker.name, mapMarker.group);
-                        if (info != null && info.getName() != null) {
-                            LOG.info("{} {} - old name = {} , old group = {}", localeString.getString("console_marker_modify"), movingNode.id, info.getName(), info.getGroup());
-                            changeManager.addChangeable( new MarkerEditChanger(mapMarker.mapNode, movingNode.id, mapMarker.name, info.getName(), mapMarker.group, info.getGroup()));
-                            if (configType == CONFIG_ROUTEMANAGER) {
-                                boolean found = false;
-                                for (MarkerGroup marker : markerGroup) {
-                                    if (Objects.equals(marker.groupName, info.getGroup())) {
-                                        found = true;
-                                        break;
-                                    }
-                                }
-                                if (!found && !info.getGroup().equals("All")) {
-                                    LOG.info("Adding new group {} to markerGroup", info.getGroup());
-                                    markerGroup.add(new MarkerGroup(markerGroup.size() + 1, info.getGroup()));
-                                }
+                RoadMap.ensureIds();
+                for (MapMarker mapMarker : RoadMap.getMapMarkers(movingNode)) {
+                    destInfo info = showEditMarkerDialog(mapMarker.mapNode.id, mapMarker.name, mapMarker.group);
+                    if (info != null && info.getName() != null) {
+                        LOG.info("{} {} - old name = {} , old group = {}", localeString.getString("console_marker_modify"), movingNode.id, info.getName(), info.getGroup());
+                        changeManager.addChangeable( new MarkerEditChanger(mapMarker.mapNode, movingNode.id, mapMarker.name, info.getName(), mapMarker.group, info.getGroup()));
+                        if (configType == CONFIG_ROUTEMANAGER) {
+                            if (!hasMarkerGroup(info.getGroup()) && !info.getGroup().equals("All")) {
+                                LOG.info("Adding new group {} to markerGroup", info.getGroup());
+                                addMarkerGroup(new MarkerGroup(markerGroup.size() + 1, info.getGroup()));
                             }
-                            mapMarker.name = info.getName();
-                            mapMarker.group = info.getGroup();
-                            setStale(true);
                         }
+                        mapMarker.name = info.getName();
+                        mapMarker.group = info.getGroup();
+                        RoadMap.fireMarkerChanged(mapMarker.mapNode);
+                        setStale(true);
                     }
                 }
             }
@@ -1741,8 +1453,14 @@ public class MapPanel extends JPanel{
                 LOG.info("Horizontal Align {} nodes at {}",multiSelectList.size(), movingNode.y);
                 changeManager.addChangeable( new AlignmentChanger(multiSelectList, 0, 0, movingNode.z));
                 canAutoSave = false;
-                for (MapNode node : multiSelectList) {
-                    node.z = movingNode.z;
+                RoadMap.beginEventBatch();
+                try {
+                    for (MapNode node : multiSelectList) {
+                        node.z = movingNode.z;
+                        RoadMap.fireNodeMoved(node);
+                    }
+                } finally {
+                    RoadMap.endEventBatch();
                 }
                 if (isQuadCurveCreated) {
                     quadCurve.updateCurve();
@@ -1759,8 +1477,14 @@ public class MapPanel extends JPanel{
                 LOG.info("Vertical Align {} nodes at {}",multiSelectList.size(), movingNode.x);
                 changeManager.addChangeable( new AlignmentChanger(multiSelectList, movingNode.x, 0,0));
                 canAutoSave = false;
-                for (MapNode node : multiSelectList) {
-                    node.x = movingNode.x;
+                RoadMap.beginEventBatch();
+                try {
+                    for (MapNode node : multiSelectList) {
+                        node.x = movingNode.x;
+                        RoadMap.fireNodeMoved(node);
+                    }
+                } finally {
+                    RoadMap.endEventBatch();
                 }
                 if (isQuadCurveCreated) {
                     quadCurve.updateCurve();
@@ -1779,8 +1503,14 @@ public class MapPanel extends JPanel{
                 LOG.info("Depth Aligning {} nodes at {}",multiSelectList.size(), movingNode.y);
                 changeManager.addChangeable( new AlignmentChanger(multiSelectList, 0, movingNode.y, 0));
                 canAutoSave = false;
-                for (MapNode node : multiSelectList) {
-                    node.y = movingNode.y;
+                RoadMap.beginEventBatch();
+                try {
+                    for (MapNode node : multiSelectList) {
+                        node.y = movingNode.y;
+                        RoadMap.fireNodeMoved(node);
+                    }
+                } finally {
+                    RoadMap.endEventBatch();
                 }
                 if (isQuadCurveCreated) {
                     quadCurve.updateCurve();
@@ -1818,7 +1548,7 @@ public class MapPanel extends JPanel{
                         selected = null;
                     }
                 }
-                this.repaint();
+                requestRender(RENDER_OVERLAY);
             }
         }
 
@@ -1840,7 +1570,7 @@ public class MapPanel extends JPanel{
                         selected = null;
                     }
                 }
-                this.repaint();
+                requestRender(RENDER_OVERLAY);
             }
         }
     }
@@ -1852,7 +1582,7 @@ public class MapPanel extends JPanel{
         if (editorState == EDITORSTATE_CONNECTING) {
             if (movingNode != null) {
                 if (selected == null) {
-                    if (!movingNode.isControlNode) {
+                    if (!movingNode.isControlNode()) {
                         selected = movingNode;
                         Point2D pointerPos = screenPosToWorldPos(mousePosX, mousePosY);
                         linearLine = new LinearLine(selected, pointerPos.getX(), pointerPos.getY());
@@ -1863,7 +1593,7 @@ public class MapPanel extends JPanel{
                     selected = null;
                     showInTextArea(localeString.getString("linearline_cancel"), true, false);
                 } else {
-                    if (!movingNode.isControlNode) {
+                    if (!movingNode.isControlNode()) {
                         int nodeType = 0;
                         if (connectionType == CONNECTION_STANDARD) {
                             nodeType = createRegularConnectionState;
@@ -2016,7 +1746,7 @@ public class MapPanel extends JPanel{
             selected = null;
             if (linearLine != null ) linearLine.clear();
             showInTextArea("",true, false);
-            this.repaint();
+            requestRender(RENDER_OVERLAY);
             return;
         }
 
@@ -2087,29 +1817,13 @@ public class MapPanel extends JPanel{
     }
 
     public static void addToDeleteList(MapNode node) {
-        LinkedList<MapNode> otherNodesInLinks = new LinkedList<>();
-        LinkedList<MapNode> otherNodesOutLinks = new LinkedList<>();
-
-        LinkedList<MapNode> roadmapNodes = RoadMap.mapNodes;
-        for (MapNode mapNode : roadmapNodes) {
-            if (mapNode != node) {
-                if (mapNode.outgoing.contains(node)) {
-                    otherNodesOutLinks.add(mapNode);
-                }
-                if (mapNode.incoming.contains(node)) {
-                    otherNodesInLinks.add(mapNode);
-                }
-            }
+        LinkedList<MapNode> otherNodesInLinks = RoadMap.getIncomingReferrers(node);
+        LinkedList<MapNode> otherNodesOutLinks = RoadMap.getOutgoingReferrers(node);
+        otherNodesInLinks.remove(node);
+        otherNodesOutLinks.remove(node);
 
-        }
-        MapMarker linkedMarker = null;
-        LinkedList<MapMarker> mapMarkers = RoadMap.mapMarkers;
-        for (MapMarker mapMarker : mapMarkers) {
-            if (mapMarker.mapNode == node) {
-                if (DEBUG) LOG.info("## MapNode ID {} has a linked MapMarker ## storing in case undo system needs it", node.id);
-                linkedMarker = mapMarker;
-            }
-        }
+        MapMarker linkedMarker = RoadMap.getMapMarker(node);
+        if (DEBUG && linkedMarker != null) LOG.info("## MapNode ID {} has a linked MapMarker ## storing in case undo system needs it", node.id);
         // NOTE -- linkedMarker is safe to be passed as null, just means no marker is linked to that node
         deleteNodeList.add(new NodeLinks(node, otherNodesInLinks, otherNodesOutLinks, linkedMarker));
     }
@@ -2162,6 +1876,7 @@ public class MapPanel extends JPanel{
         if (roadMap != null && mapImage != null ) {
             int result = mapPanel.showCentreNodeDialog();
             if (result != -1) {
+                RoadMap.ensureIds();
                 MapNode node = RoadMap.mapNodes.get(result);
                 Point2D target = worldPosToScreenPos(node.x, node.z);
                 double x = (getMapPanel().getWidth() >> 1) - target.getX();
@@ -2176,12 +1891,18 @@ public class MapPanel extends JPanel{
         if (roadMap != null) {
             int result = JOptionPane.showConfirmDialog(editor, localeString.getString("dialog_fix_node_height"), "AutoDrive Editor", JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
             if (result == JOptionPane.OK_OPTION) {
-                for (MapNode node : RoadMap.mapNodes) {
-                    double heightMapY = getYValueFromHeightMap(node.x, node.z);
-                    if (node.y == -1) {
-                        //LOG.info("ID {} ({}) adjusting Y to {}", node.id, node.y, heightMapY);
-                        node.y = heightMapY;
+                RoadMap.beginEventBatch();
+                try {
+                    for (MapNode node : RoadMap.mapNodes) {
+                        double heightMapY = getYValueFromHeightMap(node.x, node.z);
+                        if (node.y == -1) {
+                            //LOG.info("ID {} ({}) adjusting Y to {}", node.id, node.y, heightMapY);
+                            node.y = heightMapY;
+                            RoadMap.fireNodeMoved(node);
+                        }
                     }
+                } finally {
+                    RoadMap.endEventBatch();
                 }
             } else {
                 LOG.info("Cancelled node fix");
@@ -2320,6 +2041,7 @@ public class MapPanel extends JPanel{
             node.x = Double.parseDouble(posX.getText());
             node.y = Double.parseDouble(posY.getText());
             node.z = Double.parseDouble(posZ.getText());
+            RoadMap.fireNodeMoved(node);
             this.repaint();
         }
     }
@@ -2445,8 +2167,7 @@ public class MapPanel extends JPanel{
 
         ArrayList<String> groupArray = new ArrayList<>();
         if (configType == CONFIG_SAVEGAME) {
-            LinkedList<MapMarker> mapMarkers = RoadMap.mapMarkers;
-            for (MapMarker mapMarker : mapMarkers) {
+            for (MapMarker mapMarker : RoadMap.mapMarkers) {
                 if (!mapMarker.group.equals("All")) {
                     if (!groupArray.contains(mapMarker.group)) {
                         groupArray.add(mapMarker.group);
@@ -2513,8 +2234,7 @@ public class MapPanel extends JPanel{
 
         ArrayList<String> groupArray = new ArrayList<>();
         if (configType == CONFIG_SAVEGAME) {
-            LinkedList<MapMarker> mapMarkers = RoadMap.mapMarkers;
-            for (MapMarker mapMarker : mapMarkers) {
+            for (MapMarker mapMarker : RoadMap.mapMarkers) {
                 if (!mapMarker.group.equals("All")) {
                     if (!groupArray.contains(mapMarker.group)) {
                         groupArray.add(mapMarker.group);
@@ -2621,7 +2341,6 @@ public class MapPanel extends JPanel{
 
 
     public static void forceMapImageRedraw() {
-        mapPanel.oldWidthScaled = 0;
         MapPanel.getMapPanel().getResizedMap();
         MapPanel.getMapPanel().moveMapBy(0,1); // hacky way to get map image to refresh
         mapPanel.repaint();
@@ -2633,7 +2352,22 @@ public class MapPanel extends JPanel{
         return roadMap;
     }
 
+    // Switch the editor over to another map, nothing selected, hovered or being drawn can
+    // belong to it
+
     public void setRoadMap(RoadMap roadMap) {
+        if (roadMap != null && !roadMap.isActive()) {
+            clearMultiSelection();
+            hoveredNode = null;
+            stopQuadCurve();
+            stopCubicCurve();
+            if (linearLine != null) linearLine.clear();
+            selected = null;
+            roadMap.activate();
+            if (FOOTPRINT) {
+                for (String line : NetworkFootprint.measure(roadMap).getReport()) LOG.info(line);
+            }
+        }
         MapPanel.roadMap = roadMap;
     }
 
@@ -2659,14 +2393,12 @@ public class MapPanel extends JPanel{
     public static class NodeLinks {
 
         public MapNode node;
-        public int nodeIDBackup;
         public LinkedList<MapNode> otherIncoming;
         public LinkedList<MapNode> otherOutgoing;
         public MapMarker linkedMarker;
 
         public NodeLinks(MapNode mapNode, LinkedList<MapNode> in, LinkedList<MapNode> out, MapMarker marker) {
             this.node = mapNode;
-            this.nodeIDBackup = mapNode.id;
             this.otherIncoming = new LinkedList<>();
             this.otherOutgoing = new LinkedList<>();
             this.linkedMarker = marker;
@@ -0,0 +1,231 @@
+package AutoDriveEditor.MapPanel;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static AutoDriveEditor.MapPanel.MapPanel.*;
+import static AutoDriveEditor.Utils.LoggerUtils.*;
+
+//
+// Map images bigger than the 2048 x 2048 the editor works in ( the 4x and 16x maps ).
+//
+// Everything else still uses a 2048 x 2048 image, so that is made from the big one and
+// used as normal. The detail above it is cut into TILE_SIZE tiles at every level between
+// the full size and 2048 and written to a temporary folder. Zoomed in past 1:1 a frame
+// asks for the tiles it can see at the level nearest the zoom; the ones not in memory
+// are read back in the background and the frame is drawn again when they arrive, until
+// then the 2048 image is shown under them. The last tiles read are kept in memory, twice as
+// many as the last frame could see ( and never fewer than MIN_CACHED_TILES ), so a frame's
+// own tiles can't push each other out of the cache.
+//
+// The full size image is only held until its tiles have been written.
+//
+
+public class MapTileStore {
+
+    public static final int BASE_SIZE = 2048;
+    public static final int TILE_SIZE = 256;
+
+    private static final int MIN_CACHED_TILES = 192;
+
+    private final int levelCount;
+    private final BufferedImage baseImage;
+    private final ExecutorService tileThread;
+    private final Set<Long> writtenTiles = ConcurrentHashMap.newKeySet();
+    private final Set<Long> loadingTiles = ConcurrentHashMap.newKeySet();
+    private final LinkedHashMap<Long, BufferedImage> cachedTiles;
+    private int maxCachedTiles = MIN_CACHED_TILES;
+    private volatile Path tileFolder;
+    private volatile boolean disposed;
+
+    // Is width x height a size that can be tiled, square and 2048 doubled one or more times
+
+    public static boolean isTiledSize(int width, int height) {
+        if (width != height || width <= BASE_SIZE || width % BASE_SIZE != 0) return false;
+        int multiple = width / BASE_SIZE;
+        return (multiple & (multiple - 1)) == 0;
+    }
+
+    // Make the 2048 image now and start writing the tiles, fullImage must be a tiled size
+
+    public MapTileStore(BufferedImage fullImage) {
+        this.cachedTiles = new LinkedHashMap<Long, BufferedImage>(MIN_CACHED_TILES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+                return size() > maxCachedTiles;
+            }
+        };
+        this.tileThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Map Tile Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // level n is the full size image halved n times, the last one is the 2048 image
+
+        int count = Integer.numberOfTrailingZeros(fullImage.getWidth() / BASE_SIZE);
+        BufferedImage[] levels = new BufferedImage[count + 1];
+        levels[0] = fullImage;
+        for (int i = 1; i <= count; i++) {
+            BufferedImage half = new BufferedImage(levels[i - 1].getWidth() / 2, levels[i - 1].getHeight() / 2, BufferedImage.TYPE_INT_RGB);
+            levels[i] = MapImage.halveImage(levels[i - 1], half);
+        }
+        this.levelCount = count;
+        this.baseImage = levels[count];
+
+        LOG.info("Tiling {} x {} map image into {} detail levels", fullImage.getWidth(), fullImage.getHeight(), count);
+        this.tileThread.execute(() -> writeTiles(levels));
+    }
+
+    // The number of levels above the 2048 image, level 1 is twice the size, level 2 four times...
+
+    public int getLevelCount() {
+        return this.levelCount;
+    }
+
+    public BufferedImage getBaseImage() {
+        return this.baseImage;
+    }
+
+    // zoomed in, a level n pixel is a screen pixel at a zoom of 2^n. 0 means the 2048 image,
+    // which isn't stored here, is detailed enough
+
+    public int getLevelForZoom(double zoomLevel) {
+        if (zoomLevel <= 1) return 0;
+        int level = (int) Math.round(Math.log(zoomLevel) / Math.log(2));
+        return Math.max(0, Math.min(level, this.levelCount));
+    }
+
+    //
+    // Safe to call from the render workers, returns null if the tile isn't in memory yet and
+    // asks for it to be read in.
+    //
+
+    public BufferedImage getTile(int level, int column, int row) {
+        long key = tileKey(level, column, row);
+        BufferedImage tile;
+        synchronized (this.cachedTiles) {
+            tile = this.cachedTiles.get(key);
+        }
+        if (tile == null && !this.disposed && this.writtenTiles.contains(key) && this.loadingTiles.add(key)) {
+            this.tileThread.execute(() -> loadTile(key, level, column, row));
+        }
+        return tile;
+    }
+
+    // The number of tiles the frame being drawn covers, the cache is sized from it. Safe to
+    // call from the render workers.
+
+    public void setVisibleTileCount(int count) {
+        synchronized (this.cachedTiles) {
+            this.maxCachedTiles = Math.max(MIN_CACHED_TILES, count * 2);
+            Iterator<Long> eldest = this.cachedTiles.keySet().iterator();
+            while (this.cachedTiles.size() > this.maxCachedTiles) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    // Stop reading and writing and delete the tile folder, once any tile being written is done
+
+    public void dispose() {
+        this.disposed = true;
+        synchronized (this.cachedTiles) {
+            this.cachedTiles.clear();
+        }
+        this.tileThread.execute(this::deleteTiles);
+        this.tileThread.shutdown();
+    }
+
+    //
+    // internal
+    //
+
+    private static long tileKey(int level, int column, int row) {
+        return ((long) level << 48) | ((long) column << 24) | row;
+    }
+
+    private File tileFile(int level, int column, int row) {
+        return this.tileFolder.resolve("tile_" + level + "_" + column + "_" + row + ".png").toFile();
+    }
+
+    // levels[0] is the full size image, tiles are written coarsest first so the ones needed
+    // first after a load are there soonest
+
+    private void writeTiles(BufferedImage[] levels) {
+        long startTime = System.currentTimeMillis();
+        try {
+            this.tileFolder = Files.createTempDirectory("AutoDriveEditor_tiles");
+            this.tileFolder.toFile().deleteOnExit();
+            for (int level = 1; level <= this.levelCount; level++) {
+                BufferedImage levelImage = levels[this.levelCount - level];
+                int tiles = levelImage.getWidth() / TILE_SIZE;
+                for (int row = 0; row < tiles; row++) {
+                    for (int column = 0; column < tiles; column++) {
+                        if (this.disposed) return;
+                        BufferedImage tile = levelImage.getSubimage(column * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                        File file = tileFile(level, column, row);
+                        file.deleteOnExit();
+                        ImageIO.write(tile, "png", file);
+                        this.writtenTiles.add(tileKey(level, column, row));
+                    }
+                }
+                levels[this.levelCount - level] = null;
+            }
+            LOG.info("Wrote {} map image tiles to {} in {} ms", this.writtenTiles.size(), this.tileFolder, System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            LOG.error("Failed to write map image tiles, only the 2048 x 2048 image will be shown", e);
+        }
+    }
+
+    private void loadTile(long key, int level, int column, int row) {
+        try {
+            if (this.disposed) return;
+            BufferedImage file = ImageIO.read(tileFile(level, column, row));
+            if (file == null) return;
+
+            // store them in the format the frame is in, the quickest to draw from
+
+            BufferedImage tile = new BufferedImage(file.getWidth(), file.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = tile.createGraphics();
+            g.drawImage(file, 0, 0, null);
+            g.dispose();
+            synchronized (this.cachedTiles) {
+                this.cachedTiles.put(key, tile);
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (!this.disposed && getMapPanel() != null) getMapPanel().requestRender(RENDER_VIEWPORT);
+            });
+        } catch (IOException e) {
+            LOG.info("Failed to read map image tile {}", tileFile(level, column, row));
+        } finally {
+            this.loadingTiles.remove(key);
+        }
+    }
+
+    private void deleteTiles() {
+        Path folder = this.tileFolder;
+        if (folder == null) return;
+        File[] files = folder.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) LOG.info("Failed to delete map image tile {}", file);
+            }
+        }
+        if (!folder.toFile().delete()) LOG.info("Failed to delete map image tile folder {}", folder);
+    }
+}
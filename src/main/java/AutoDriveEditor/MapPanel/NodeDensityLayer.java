@@ -0,0 +1,96 @@
+package AutoDriveEditor.MapPanel;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+//
+// The zoomed out stand-in for drawing every node image.
+//
+// Below EditorXML.lodNodeZoomLevel the nodes are only a pixel or two across, so instead of
+// a scaled drawImage() per node, the visible nodes are counted into a grid of CELL_SIZE
+// pixel cells and the grid is drawn as one small heat image stretched over the panel. The
+// cost of putting it on screen depends on the panel size, not on how many nodes there are.
+//
+// Cells holding a selected node are drawn in the selection colour so a selection stays
+// visible when zoomed out.
+//
+// Not thread safe, the RenderPipeline keeps one and only uses it for the single density
+// layer of a frame.
+//
+
+public class NodeDensityLayer {
+
+    public static final int CELL_SIZE = 3;
+
+    private static final int SELECTED_COLOUR = 0xFFFFFF00;
+
+    private int columns;
+    private int rows;
+    private int[] counts = new int[0];
+    private boolean[] selected = new boolean[0];
+    private BufferedImage image;
+    private int maxCount;
+
+    // start a new frame for a panel width x height pixels
+
+    public void begin(int width, int height) {
+        int newColumns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+        int newRows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+        if (newColumns != this.columns || newRows != this.rows) {
+            this.columns = newColumns;
+            this.rows = newRows;
+            this.counts = new int[newColumns * newRows];
+            this.selected = new boolean[newColumns * newRows];
+            this.image = new BufferedImage(newColumns, newRows, BufferedImage.TYPE_INT_ARGB);
+        } else {
+            Arrays.fill(this.counts, 0);
+            Arrays.fill(this.selected, false);
+        }
+        this.maxCount = 0;
+    }
+
+    // a node at screen position x,y, anything off the panel is ignored
+
+    public void add(double screenX, double screenY, boolean isSelected) {
+        if (screenX < 0 || screenY < 0) return;
+        int column = (int) (screenX / CELL_SIZE);
+        int row = (int) (screenY / CELL_SIZE);
+        if (column >= this.columns || row >= this.rows) return;
+        int cell = (row * this.columns) + column;
+        int count = ++this.counts[cell];
+        if (count > this.maxCount) this.maxCount = count;
+        if (isSelected) this.selected[cell] = true;
+    }
+
+    public void draw(Graphics2D g) {
+        if (this.image == null || this.maxCount == 0) return;
+        int[] pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+
+        // log scale, a single node still shows up next to a yard with hundreds of them
+
+        double logMax = Math.log(this.maxCount + 1);
+        for (int i = 0; i < pixels.length; i++) {
+            int count = this.counts[i];
+            if (count == 0) {
+                pixels[i] = 0;
+            } else if (this.selected[i]) {
+                pixels[i] = SELECTED_COLOUR;
+            } else {
+                pixels[i] = heatColour(Math.log(count + 1) / logMax);
+            }
+        }
+        g.drawImage(this.image, 0, 0, this.columns * CELL_SIZE, this.rows * CELL_SIZE, null);
+    }
+
+    // dark red for the odd node, through red and orange, to white for the densest cells
+
+    private static int heatColour(double heat) {
+        int red = (int) (160 + (95 * Math.min(1, heat * 2)));
+        int green = (int) (255 * Math.max(0, Math.min(1, (heat * 2) - 0.5)));
+        int blue = (int) (255 * Math.max(0, (heat * 4) - 3));
+        int alpha = (int) (170 + (85 * heat));
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+}
@@ -2,12 +2,14 @@ package AutoDriveEditor.MapPanel;
 
 import java.awt.event.MouseAdapter;
 import java.awt.geom.Point2D;
+import java.util.Iterator;
 import java.util.LinkedList;
 
 import AutoDriveEditor.AutoDriveEditor;
 import AutoDriveEditor.GUI.GUIBuilder;
 import AutoDriveEditor.Managers.ChangeManager;
 import AutoDriveEditor.RoadNetwork.MapNode;
+import AutoDriveEditor.RoadNetwork.MapTransaction;
 import AutoDriveEditor.RoadNetwork.RoadMap;
 
 import static AutoDriveEditor.AutoDriveEditor.*;
@@ -100,54 +102,44 @@ public class QuadCurve extends MouseAdapter {
     }
 
     public void commitCurve() {
-        canAutoSave = false;
-
         LinkedList<MapNode> mergeNodesList = new LinkedList<>();
 
         mergeNodesList.add(curveStartNode);
 
         if (this.curveStartNode.y != -1 && this.curveEndNode.y == -1) {
             this.curveEndNode.y = this.curveStartNode.y;
+            RoadMap.fireNodeMoved(this.curveEndNode);
         }
         if (this.curveEndNode.y != -1 && this.curveStartNode.y == -1) {
             this.curveStartNode.y = this.curveEndNode.y;
+            RoadMap.fireNodeMoved(this.curveStartNode);
         }
         float yInterpolation = (float) ((curveEndNode.y - curveStartNode.y) / (this.curveNodesList.size() - 1));
 
+        MapTransaction transaction = RoadMap.beginTransaction();
+        Iterator<MapNode> iterator = this.curveNodesList.iterator();
+        if (iterator.hasNext()) iterator.next();
         for (int j = 1; j < curveNodesList.size() - 1; j++) {
-            MapNode tempNode = curveNodesList.get(j);
+            MapNode tempNode = iterator.next();
             double heightMapY = getYValueFromHeightMap(tempNode.x, tempNode.z);
             if (heightMapY == -1) {
                 heightMapY = curveStartNode.y + ( yInterpolation * j);
             }
-            MapNode newNode = new MapNode(RoadMap.mapNodes.size() + 1, tempNode.x, heightMapY, tempNode.z, this.nodeType, false, false);
-            RoadMap.mapNodes.add(newNode);
-            mergeNodesList.add(newNode);
+            mergeNodesList.add(transaction.createNode(tempNode.x, heightMapY, tempNode.z, this.nodeType));
         }
 
         mergeNodesList.add(curveEndNode);
-        changeManager.addChangeable(new ChangeManager.CurveChanger(mergeNodesList, isReversePath, isDualPath));
-        connectNodes(mergeNodesList, isReversePath, isDualPath);
+        transaction.connectChain(mergeNodesList, getCurveConnectionType(isReversePath, isDualPath));
 
-        canAutoSave = true;
-
-        if (AutoDriveEditor.DEBUG) LOG.info("QuadCurve created {} nodes", mergeNodesList.size() - 2);
-    }
+        // the undo record backs up the end nodes connections, so it's made before they change
 
-    public static void connectNodes(LinkedList<MapNode> mergeNodesList, boolean reversePath, boolean dualPath) {
         canAutoSave = false;
-        for (int j = 0; j < mergeNodesList.size() - 1; j++) {
-            MapNode startNode = mergeNodesList.get(j);
-            MapNode endNode = mergeNodesList.get(j + 1);
-            if (reversePath) {
-                MapPanel.createConnectionBetween(startNode, endNode, CONNECTION_REVERSE);
-            } else if (dualPath) {
-                MapPanel.createConnectionBetween(startNode, endNode, CONNECTION_DUAL);
-            } else {
-                MapPanel.createConnectionBetween(startNode, endNode, CONNECTION_STANDARD);
-            }
-        }
+        changeManager.addChangeable(new ChangeManager.CurveChanger(mergeNodesList, isReversePath, isDualPath));
+        transaction.commit();
         canAutoSave = true;
+        getMapPanel().repaint();
+
+        if (AutoDriveEditor.DEBUG) LOG.info("QuadCurve created {} nodes", mergeNodesList.size() - 2);
     }
 
     public void clear() {
@@ -0,0 +1,518 @@
+package AutoDriveEditor.MapPanel;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+
+import AutoDriveEditor.RoadNetwork.GraphStore;
+import AutoDriveEditor.RoadNetwork.MapNode;
+
+import static AutoDriveEditor.GUI.GUIImages.*;
+import static AutoDriveEditor.RoadNetwork.MapNode.*;
+import static AutoDriveEditor.Utils.GUIUtils.*;
+import static AutoDriveEditor.Utils.LoggerUtils.*;
+
+//
+// Draws the map panel frames on a pool of render workers, so the EDT never waits for one.
+//
+// requestFrame() is called on the EDT, it takes everything the frame is drawn from there
+// and then ( see FrameRequest ) and hands the frame to the pool. One worker draws the map
+// image, the grid and the connection tiles into the frame, while the visible nodes are split
+// into runs of the snapshot, each run drawn into a layer image of its own by another worker.
+// The node layers are then laid over the frame in snapshot order, so nodes overlap exactly
+// as if they had been drawn one after the other, the labels go on top and the finished frame
+// goes back to the EDT to be shown.
+//
+// Only one frame is drawn at a time. Asking for one while a frame is in progress marks a
+// new one as wanted, it is started from the editor state as it is when the current one
+// finishes, so a burst of requests costs at most one extra frame.
+//
+// Frames are drawn into two images in turn, the one on screen is never drawn into.
+//
+
+public class RenderPipeline {
+
+    // fewer nodes than this in a layer and splitting them up costs more than it saves
+
+    private static final int NODES_PER_LAYER = 16384;
+
+    private final ForkJoinPool pool;
+    private final ConnectionTileCache connectionTiles;
+    private final Supplier<FrameRequest> capture;
+    private final Runnable present;
+
+    private final BufferedImage[] frames;
+    private int nextFrame;
+    private volatile BufferedImage currentFrame;
+    private boolean busy;
+    private boolean pending;
+
+    // only ever used by the frame being drawn, kept from frame to frame
+
+    private final ArrayList<NodeLayer> layers;
+    private final ViewTransform.ScreenBuffer screenBuffer;
+    private final NodeDensityLayer densityLayer;
+    private final LabelCache labelCache;
+
+    // The map image under the panel, a level of MapImage's pyramid ( imageScale level pixels
+    // per map image pixel ) and the detail tiles of a big map image if it has them. x,y is the
+    // panels top left corner in map image pixels, scaleX/Y the screen pixels per map image pixel
+
+    public static class MapBackground {
+        private final BufferedImage image;
+        private final double imageScale;
+        private final MapTileStore tiles;
+        private final double x;
+        private final double y;
+        private final double scaleX;
+        private final double scaleY;
+
+        public MapBackground(BufferedImage image, double imageScale, MapTileStore tiles, double x, double y, double scaleX, double scaleY) {
+            this.image = image;
+            this.imageScale = imageScale;
+            this.tiles = tiles;
+            this.x = x;
+            this.y = y;
+            this.scaleX = scaleX;
+            this.scaleY = scaleY;
+        }
+    }
+
+    // Everything a frame is drawn from, taken on the EDT so the workers never look at the live
+    // editor state. The selection and warning state of the nodes isn't part of the snapshot,
+    // it is copied into nodeState ( see captureNodeState() ) indexed the same as the snapshot.
+
+    public static final int NODE_STATE_SELECTED = 1;
+    public static final int NODE_STATE_WARNING = 1 << 1;
+    public static final int NODE_STATE_OVERLAP = 1 << 2;
+
+    public static class FrameRequest {
+        private final GraphStore snapshot;
+        private final byte[] nodeState;
+        private final ViewTransform view;
+        private final double nodeSize;
+        private final MapBackground background;
+        private final boolean showGrid;
+        private final double gridSpacingX;
+        private final double gridSpacingY;
+        private final boolean useDensity;
+        private final boolean showIds;
+        private final boolean profile;
+
+        public FrameRequest(GraphStore snapshot, byte[] nodeState, ViewTransform view, double nodeSize, MapBackground background, boolean showGrid, double gridSpacingX, double gridSpacingY, boolean useDensity, boolean showIds, boolean profile) {
+            this.snapshot = snapshot;
+            this.nodeState = nodeState;
+            this.view = view;
+            this.nodeSize = nodeSize;
+            this.background = background;
+            this.showGrid = showGrid;
+            this.gridSpacingX = gridSpacingX;
+            this.gridSpacingY = gridSpacingY;
+            this.useDensity = useDensity;
+            this.showIds = showIds;
+            this.profile = profile;
+        }
+    }
+
+    // EDT only, the NODE_STATE_* bits of every node in the snapshot
+
+    public static byte[] captureNodeState(GraphStore snapshot) {
+        byte[] nodeState = new byte[snapshot.size()];
+        for (int i = 0; i < nodeState.length; i++) {
+            MapNode mapNode = snapshot.getNode(i);
+            int state = 0;
+            if (mapNode.isSelected()) state |= NODE_STATE_SELECTED;
+            if (mapNode.hasWarning()) {
+                state |= NODE_STATE_WARNING;
+                if (mapNode.getWarningType() == NODE_WARNING_OVERLAP) state |= NODE_STATE_OVERLAP;
+            }
+            nodeState[i] = (byte) state;
+        }
+        return nodeState;
+    }
+
+    // One run of nodes drawn by one worker, and the part of the image it drew into so only
+    // that much has to be cleared and laid over the frame
+
+    private static final class NodeLayer {
+        private BufferedImage image;
+        private int minX;
+        private int minY;
+        private int maxX;
+        private int maxY;
+
+        private Graphics2D begin(int width, int height) {
+            if (this.image == null || this.image.getWidth() != width || this.image.getHeight() != height) {
+                this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            } else if (!isEmpty()) {
+                Graphics2D clear = this.image.createGraphics();
+                clear.setComposite(AlphaComposite.Clear);
+                clear.fillRect(this.minX, this.minY, this.maxX - this.minX, this.maxY - this.minY);
+                clear.dispose();
+            }
+            this.minX = width;
+            this.minY = height;
+            this.maxX = 0;
+            this.maxY = 0;
+            Graphics2D g = this.image.createGraphics();
+            applyHints(g);
+            return g;
+        }
+
+        private void touch(int x, int y, int width, int height) {
+            this.minX = Math.max(0, Math.min(this.minX, x));
+            this.minY = Math.max(0, Math.min(this.minY, y));
+            this.maxX = Math.min(this.image.getWidth(), Math.max(this.maxX, x + width));
+            this.maxY = Math.min(this.image.getHeight(), Math.max(this.maxY, y + height));
+        }
+
+        private boolean isEmpty() { return this.minX >= this.maxX || this.minY >= this.maxY; }
+
+        private void drawOnto(Graphics2D g) {
+            if (isEmpty()) return;
+            g.drawImage(this.image, this.minX, this.minY, this.maxX, this.maxY, this.minX, this.minY, this.maxX, this.maxY, null);
+        }
+    }
+
+    // capture is called on the EDT whenever a frame is started and returns null if there is
+    // nothing to draw, present is called on the EDT when a new frame is ready to be shown
+
+    public RenderPipeline(ConnectionTileCache connectionTiles, Supplier<FrameRequest> capture, Runnable present) {
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        LOG.info("Starting render pool with {} workers", workers);
+        this.pool = new ForkJoinPool(workers, RenderPipeline::newWorker, null, false);
+        this.connectionTiles = connectionTiles;
+        this.capture = capture;
+        this.present = present;
+        this.frames = new BufferedImage[2];
+        this.layers = new ArrayList<>();
+        this.screenBuffer = new ViewTransform.ScreenBuffer();
+        this.densityLayer = new NodeDensityLayer();
+        this.labelCache = new LabelCache();
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Render Worker " + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    //
+    // EDT only
+    //
+
+    public void requestFrame() {
+        if (this.busy) {
+            this.pending = true;
+            return;
+        }
+        FrameRequest request = this.capture.get();
+        if (request == null || request.view.getWidth() <= 0 || request.view.getHeight() <= 0) return;
+
+        this.busy = true;
+        this.connectionTiles.prepareFrame(request.snapshot);
+        BufferedImage frame = this.frames[this.nextFrame];
+        if (frame == null || frame.getWidth() != request.view.getWidth() || frame.getHeight() != request.view.getHeight()) {
+            frame = new BufferedImage(request.view.getWidth(), request.view.getHeight(), BufferedImage.TYPE_INT_RGB);
+            this.frames[this.nextFrame] = frame;
+        }
+        BufferedImage target = frame;
+        this.pool.execute(() -> {
+            String profile = null;
+            boolean drawn = false;
+            try {
+                profile = render(request, target);
+                drawn = true;
+            } catch (Exception e) {
+                LOG.error("## RenderPipeline ## Exception drawing frame", e);
+            }
+            boolean finished = drawn;
+            String profileText = profile;
+            SwingUtilities.invokeLater(() -> frameFinished(finished ? target : null, profileText));
+        });
+    }
+
+    private void frameFinished(BufferedImage frame, String profileText) {
+        this.busy = false;
+        if (frame != null) {
+            this.currentFrame = frame;
+            this.nextFrame ^= 1;
+            if (profileText != null) showInTextArea(profileText, true, false);
+            this.present.run();
+        }
+        if (this.pending) {
+            this.pending = false;
+            requestFrame();
+        }
+    }
+
+    // the last finished frame, null until the first one is drawn
+
+    public BufferedImage getFrame() { return this.currentFrame; }
+
+    public void shutdown() {
+        LOG.info("Stopping render pool");
+        this.pool.shutdownNow();
+    }
+
+    //
+    // render workers
+    //
+
+    private String render(FrameRequest request, BufferedImage frame) {
+        long startTime = System.currentTimeMillis();
+        GraphStore snapshot = request.snapshot;
+        ViewTransform view = request.view;
+        int width = view.getWidth();
+        int height = view.getHeight();
+
+        this.screenBuffer.project(view, snapshot);
+
+        int layerCount = request.useDensity ? 1 : Math.max(1, Math.min(this.pool.getParallelism(), snapshot.size() / NODES_PER_LAYER));
+        while (this.layers.size() < layerCount) this.layers.add(new NodeLayer());
+
+        Graphics2D g = frame.createGraphics();
+        try {
+            applyHints(g);
+            int[] tilesDrawn = new int[1];
+            long[] connectionTime = new long[1];
+            ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(layerCount + 1);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                long connectionStart = System.currentTimeMillis();
+                if (request.background != null) drawBackground(g, request.background, width, height);
+                if (request.showGrid) drawGrid(g, view, request.gridSpacingX, request.gridSpacingY);
+                tilesDrawn[0] = this.connectionTiles.draw(g, snapshot, view, request.nodeSize);
+                connectionTime[0] = System.currentTimeMillis() - connectionStart;
+            }));
+            for (int i = 0; i < layerCount; i++) {
+                NodeLayer layer = this.layers.get(i);
+                int from = (int) ((long) snapshot.size() * i / layerCount);
+                int to = (int) ((long) snapshot.size() * (i + 1) / layerCount);
+                tasks.add(ForkJoinTask.adapt(() -> drawNodeLayer(layer, request, from, to)));
+            }
+            ForkJoinTask.invokeAll(tasks);
+
+            for (int i = 0; i < layerCount; i++) {
+                this.layers.get(i).drawOnto(g);
+            }
+            drawLabels(g, request);
+
+            if (!request.profile) return null;
+            return "Finished Connection Rendering in " + connectionTime[0] + " ms (" + view.getZoomLevel() + ") , " + tilesDrawn[0] + " tiles redrawn , " + this.connectionTiles.getCachedTileCount() + " cached\n" +
+                    "Finished Frame Rendering in " + (System.currentTimeMillis() - startTime) + " ms , " + layerCount + " node layers";
+        } finally {
+            g.dispose();
+        }
+    }
+
+    // Draw the nodes from..to-1 of the snapshot into the layer, only the ones on screen
+
+    private void drawNodeLayer(NodeLayer layer, FrameRequest request, int from, int to) {
+        GraphStore snapshot = request.snapshot;
+        byte[] nodeState = request.nodeState;
+        int width = request.view.getWidth();
+        int height = request.view.getHeight();
+        Graphics2D g = layer.begin(width, height);
+        try {
+            if (request.useDensity) {
+
+                // zoomed out the nodes are drawn as a density grid, see NodeDensityLayer
+
+                this.densityLayer.begin(width, height);
+                for (int i = from; i < to; i++) {
+                    this.densityLayer.add(this.screenBuffer.getX(i), this.screenBuffer.getY(i), (nodeState[i] & NODE_STATE_SELECTED) != 0);
+                }
+                this.densityLayer.draw(g);
+                layer.touch(0, 0, width, height);
+                return;
+            }
+
+            int sizeScaled = (int) (request.nodeSize * request.view.getZoomLevel());
+            int sizeScaledHalf = (int) (sizeScaled * 0.5);
+
+            // every node is the same size, so the images are scaled once up front and the loop
+            // only copies them
+
+            BufferedImage regular = getScaledImage(nodeImage, sizeScaled, sizeScaled);
+            BufferedImage regularSelected = getScaledImage(nodeImageSelected, sizeScaled, sizeScaled);
+            BufferedImage subPrio = getScaledImage(subPrioNodeImage, sizeScaled, sizeScaled);
+            BufferedImage subPrioSelected = getScaledImage(subPrioNodeImageSelected, sizeScaled, sizeScaled);
+            BufferedImage warning = getScaledImage(warningImage, warningImage.getWidth(), warningImage.getHeight());
+            BufferedImage warningY = getScaledImage(warningYImage, warningYImage.getWidth(), warningYImage.getHeight());
+            int extentX = Math.max(sizeScaled, Math.max(warningImage.getWidth(), warningYImage.getWidth()));
+            int extentY = Math.max(sizeScaled, Math.max(warningImage.getHeight(), warningYImage.getHeight()));
+
+            for (int i = from; i < to; i++) {
+                double nodeX = this.screenBuffer.getX(i);
+                double nodeY = this.screenBuffer.getY(i);
+                if (0 < nodeX && width > nodeX && 0 < nodeY && height > nodeY) {
+                    int state = nodeState[i];
+                    boolean isSelected = (state & NODE_STATE_SELECTED) != 0;
+                    int flag = snapshot.getFlag(i);
+                    int drawX = (int) (nodeX - sizeScaledHalf);
+                    int drawY = (int) (nodeY - sizeScaledHalf);
+                    BufferedImage sprite;
+                    if ((state & NODE_STATE_WARNING) != 0 && isSelected) {
+                        sprite = regularSelected;
+                    } else if (isSelected && flag == 0) {
+                        sprite = regularSelected;
+                    } else if (isSelected && flag == 1) {
+                        sprite = subPrioSelected;
+                    } else if (flag == 1) {
+                        sprite = subPrio;
+                    } else {
+                        sprite = regular;
+                    }
+                    if (sprite != null) g.drawImage(sprite, drawX, drawY, null);
+
+                    if ((state & NODE_STATE_WARNING) != 0) {
+                        if ((state & NODE_STATE_OVERLAP) != 0) {
+                            g.drawImage(warning, drawX, drawY, null);
+                        }
+                    } else {
+                        if (snapshot.getY(i) == -1) {
+                            g.drawImage(warningY, drawX, drawY, null);
+                        }
+                    }
+                    layer.touch(drawX, drawY, extentX, extentY);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    // The map marker names, and the node ID's in debug mode, drawn over all the nodes. The
+    // marker names go first so where labels overlap ( see LabelCache ) the names are kept.
+
+    private void drawLabels(Graphics2D g, FrameRequest request) {
+        GraphStore snapshot = request.snapshot;
+        ViewTransform view = request.view;
+        this.labelCache.begin(view.getWidth(), view.getHeight());
+
+        for (int marker = 0; marker < snapshot.getMarkerCount(); marker++) {
+            int markerNode = snapshot.getMarkerNode(marker);
+            double markerX = view.toScreenX(snapshot.getX(markerNode) - 1);
+            double markerY = view.toScreenY(snapshot.getZ(markerNode) - 1);
+            this.labelCache.draw(g, snapshot.getMarkerName(marker), LabelCache.PLAIN, (int) markerX, (int) markerY);
+        }
+
+        // show the node ID if we in debug mode, the higher the node count, the more text spam there is :-P
+        // Overlapping ID's are skipped, so it is only as slow as the number that fit on screen
+
+        if (request.showIds) {
+            for (int i = 0; i < snapshot.size(); i++) {
+                double nodeX = this.screenBuffer.getX(i);
+                double nodeY = this.screenBuffer.getY(i);
+                if (view.isOnScreen(nodeX, nodeY, 40)) {
+                    this.labelCache.draw(g, String.valueOf(snapshot.getId(i)), LabelCache.PLAIN, (int) (nodeX - 12), (int) (nodeY + 30));
+                }
+            }
+        }
+    }
+
+    // Draw the snap grid
+
+    private static void drawGrid(Graphics2D g, ViewTransform view, double gridSpacingX, double gridSpacingY) {
+
+        if (view.getZoomLevel() <= 2) return;
+
+        int worldMax = 1024 * view.getMapZoomFactor();
+        double topLeftX = view.toWorldX(0);
+        double topLeftY = view.toWorldY(0);
+        double bottomRightX = view.toWorldX(view.getWidth());
+        double bottomRightY = view.toWorldY(view.getHeight());
+
+        g.setPaint(new Color(25,25,25));
+        for (double worldX = 0; worldX < worldMax; worldX += gridSpacingX) {
+            if (worldX < bottomRightX) {
+                g.drawLine((int) view.toScreenX(worldX), (int) view.toScreenY(topLeftY), (int) view.toScreenX(worldX), (int) view.toScreenY(bottomRightY));
+            }
+            if (-worldX > topLeftX) {
+                g.drawLine((int) view.toScreenX(-worldX), (int) view.toScreenY(topLeftY), (int) view.toScreenX(-worldX), (int) view.toScreenY(bottomRightY));
+            }
+        }
+        for (double worldY = 0; worldY < worldMax; worldY += gridSpacingY) {
+            if (worldY > topLeftY && worldY < bottomRightY) {
+                g.drawLine((int) view.toScreenX(topLeftX), (int) view.toScreenY(worldY), (int) view.toScreenX(bottomRightX), (int) view.toScreenY(worldY));
+            }
+            if (-worldY < bottomRightY) {
+                g.drawLine((int) view.toScreenX(topLeftX), (int) view.toScreenY(-worldY), (int) view.toScreenX(bottomRightX), (int) view.toScreenY(-worldY));
+            }
+        }
+    }
+
+    // Only the whole level pixels under the panel are drawn, the edges are placed to the nearest
+    // screen pixel. At level 0 this is exactly the old scaled crop of the full size image.
+    //
+    // Zoomed in on a big map image the detail tiles go on top, any not read in yet leave the
+    // 2048 image showing through until the frame is drawn again.
+
+    private static void drawBackground(Graphics2D g, MapBackground background, int width, int height) {
+        drawRegion(g, background.image, 0, 0, background.image.getWidth(), background.image.getHeight(),
+                background.x * background.imageScale, background.y * background.imageScale,
+                background.scaleX / background.imageScale, background.scaleY / background.imageScale, width, height);
+
+        MapTileStore tiles = background.tiles;
+        if (tiles == null) return;
+        int level = tiles.getLevelForZoom(Math.min(background.scaleX, background.scaleY));
+        if (level == 0) return;
+        int levelScale = 1 << level;
+        double levelX = background.x * levelScale;
+        double levelY = background.y * levelScale;
+        double scaleX = background.scaleX / levelScale;
+        double scaleY = background.scaleY / levelScale;
+        int lastTile = ((MapTileStore.BASE_SIZE * levelScale) / MapTileStore.TILE_SIZE) - 1;
+        int startColumn = Math.max(0, (int) Math.floor(levelX / MapTileStore.TILE_SIZE));
+        int startRow = Math.max(0, (int) Math.floor(levelY / MapTileStore.TILE_SIZE));
+        int endColumn = Math.min(lastTile, (int) Math.floor((levelX + (width / scaleX)) / MapTileStore.TILE_SIZE));
+        int endRow = Math.min(lastTile, (int) Math.floor((levelY + (height / scaleY)) / MapTileStore.TILE_SIZE));
+        tiles.setVisibleTileCount((endColumn - startColumn + 1) * (endRow - startRow + 1));
+        for (int row = startRow; row <= endRow; row++) {
+            for (int column = startColumn; column <= endColumn; column++) {
+                BufferedImage tile = tiles.getTile(level, column, row);
+                if (tile == null) continue;
+                drawRegion(g, tile, column * MapTileStore.TILE_SIZE, row * MapTileStore.TILE_SIZE, MapTileStore.TILE_SIZE, MapTileStore.TILE_SIZE,
+                        levelX, levelY, scaleX, scaleY, width, height);
+            }
+        }
+    }
+
+    // Draw the part of image under the screen, image covers left,top to left+imageWidth,
+    // top+imageHeight of a level where the screens top left corner is at x,y and a level pixel
+    // is scaleX x scaleY screen pixels. Neighbouring images round their shared edge the same
+    // way so there are no gaps between them.
+
+    private static void drawRegion(Graphics2D g, BufferedImage image, int left, int top, int imageWidth, int imageHeight, double x, double y, double scaleX, double scaleY, int width, int height) {
+        int sx1 = Math.max(left, (int) Math.floor(x));
+        int sy1 = Math.max(top, (int) Math.floor(y));
+        int sx2 = Math.min(left + imageWidth, (int) Math.ceil(x + (width / scaleX) - 0.0001));
+        int sy2 = Math.min(top + imageHeight, (int) Math.ceil(y + (height / scaleY) - 0.0001));
+        if (sx2 <= sx1 || sy2 <= sy1) return;
+        int dx1 = (int) Math.round((sx1 - x) * scaleX);
+        int dy1 = (int) Math.round((sy1 - y) * scaleY);
+        int dx2 = (int) Math.round((sx2 - x) * scaleX);
+        int dy2 = (int) Math.round((sy2 - y) * scaleY);
+        g.drawImage(image, dx1, dy1, dx2, dy2, sx1 - left, sy1 - top, sx2 - left, sy2 - top, null);
+    }
+
+    // the rendering hints the map panel has always been drawn with
+
+    public static void applyHints(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_COLOR_RENDERING, RenderingHints.VALUE_COLOR_RENDER_SPEED);
+        g.setRenderingHint(RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_DISABLE);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+    }
+}
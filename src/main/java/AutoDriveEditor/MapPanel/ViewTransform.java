@@ -0,0 +1,105 @@
+package AutoDriveEditor.MapPanel;
+
+import java.util.Arrays;
+
+import AutoDriveEditor.RoadNetwork.GraphStore;
+
+//
+// The world <-> screen mapping of one frame.
+//
+// worldPosToScreenPos() works the mapping out again from the map image, the panel size and
+// the zoom on every call and hands back a new Point2D each time, which adds up when it is
+// called for every node and connection end of every frame. A ViewTransform is taken once
+// at the start of a frame ( see MapPanel.captureFrame() ), after that a screen position
+// is one multiply and one add, and whole snapshots can be projected into a ScreenBuffer
+// that is reused from frame to frame.
+//
+// screen = world * scale + translate, the same sum worldPosToScreenPos() does.
+//
+
+public class ViewTransform {
+
+    private final double zoomLevel;
+    private final int mapZoomFactor;
+    private final double scale;
+    private final double translateX;
+    private final double translateY;
+    private final int width;
+    private final int height;
+
+    // topLeftX/Y is the position of the panels top left corner in zoomed map image pixels
+
+    public ViewTransform(double zoomLevel, int mapZoomFactor, double topLeftX, double topLeftY, int width, int height) {
+        this.zoomLevel = zoomLevel;
+        this.mapZoomFactor = mapZoomFactor;
+        this.scale = zoomLevel / mapZoomFactor;
+        double centerPointOffset = 1024 * mapZoomFactor;
+        this.translateX = (centerPointOffset * this.scale) - topLeftX;
+        this.translateY = (centerPointOffset * this.scale) - topLeftY;
+        this.width = width;
+        this.height = height;
+    }
+
+    public double toScreenX(double worldX) { return (worldX * this.scale) + this.translateX; }
+
+    public double toScreenY(double worldZ) { return (worldZ * this.scale) + this.translateY; }
+
+    public double toWorldX(double screenX) { return (screenX - this.translateX) / this.scale; }
+
+    public double toWorldY(double screenY) { return (screenY - this.translateY) / this.scale; }
+
+    // is the screen position inside the panel, grown by margin pixels on every side
+
+    public boolean isOnScreen(double screenX, double screenY, double margin) {
+        return screenX > -margin && screenX < this.width + margin && screenY > -margin && screenY < this.height + margin;
+    }
+
+    //
+    // getters
+    //
+
+    public double getZoomLevel() { return this.zoomLevel; }
+
+    public int getMapZoomFactor() { return this.mapZoomFactor; }
+
+    public double getScale() { return this.scale; }
+
+    public int getWidth() { return this.width; }
+
+    public int getHeight() { return this.height; }
+
+    //
+    // Screen positions of every node in a snapshot, the arrays only grow so after the first
+    // few frames projecting a snapshot allocates nothing.
+    //
+
+    public static class ScreenBuffer {
+
+        private double[] x = new double[0];
+        private double[] y = new double[0];
+        private int size;
+
+        public void project(ViewTransform transform, GraphStore snapshot) {
+            int count = snapshot.size();
+            if (count > this.x.length) {
+                int capacity = Math.max(count, this.x.length + (this.x.length >> 1));
+                this.x = Arrays.copyOf(this.x, capacity);
+                this.y = Arrays.copyOf(this.y, capacity);
+            }
+            double scale = transform.scale;
+            double translateX = transform.translateX;
+            double translateY = transform.translateY;
+            for (int i = 0; i < count; i++) {
+                this.x[i] = (snapshot.getX(i) * scale) + translateX;
+                this.y[i] = (snapshot.getZ(i) * scale) + translateY;
+            }
+            this.size = count;
+        }
+
+        public double getX(int index) { return this.x[index]; }
+
+        public double getY(int index) { return this.y[index]; }
+
+        public int size() { return this.size; }
+    }
+}
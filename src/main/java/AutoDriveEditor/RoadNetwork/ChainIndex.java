@@ -0,0 +1,493 @@
+package AutoDriveEditor.RoadNetwork;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+//
+// The road network with its plain stretches of road collapsed into chains.
+//
+// Most nodes are joined to exactly two other nodes, the one before and the one after them
+// on the road, by the same type of connection. A chain is a run of those ( the interior
+// nodes ) plus the junction, dead end or change of road type at either end, kept as one
+// polyline with its bounds. Every pair of connected nodes is in exactly one chain, so
+// drawing every chain draws every connection, but there are far fewer chains than nodes to
+// look through when culling, drawing zoomed out or doing a rough "what is near the mouse"
+// test.
+//
+// Whether nodes are joined doesn't depend on direction here, a connection in either
+// direction ( or both ) joins two nodes. A closed loop with no junction on it is one chain
+// that starts and ends on the same node.
+//
+// Kept up to date from the RoadMap change events like SpatialIndex, an edit only rebuilds
+// the chains running through the nodes it touched.
+//
+// The render workers query it while the EDT may be editing, so the public methods lock. A
+// chain itself never changes once built, an edit replaces it with new ones.
+//
+
+public class ChainIndex implements NetworkListener {
+
+    private static final double CELL_SIZE = 128;
+
+    // long chains also keep the bounds of every BLOCK_SIZE connections, so a caller only
+    // interested in a small area can skip most of a road that runs through it
+
+    public static final int BLOCK_SIZE = 32;
+
+    private final HashMap<Long, ArrayList<Chain>> cells;
+    private final IdentityHashMap<MapNode, Chain> interiorChains;
+    private final IdentityHashMap<MapNode, ArrayList<Chain>> endChains;
+    private int chainCount;
+
+    public static class Chain {
+        private final MapNode[] nodes;
+        private final int type;
+        private final double[] blockBounds;
+        private double minX;
+        private double minZ;
+        private double maxX;
+        private double maxZ;
+        private long[] cells;
+
+        private Chain(MapNode[] nodes) {
+            this.nodes = nodes;
+            this.type = pairType(nodes[0], nodes[1]);
+            int blocks = getBlockCount();
+            this.blockBounds = new double[blocks * 4];
+            for (int block = 0; block < blocks; block++) {
+                double blockMinX = Double.MAX_VALUE, blockMinZ = Double.MAX_VALUE;
+                double blockMaxX = -Double.MAX_VALUE, blockMaxZ = -Double.MAX_VALUE;
+                for (int i = getBlockStart(block); i <= getBlockEnd(block); i++) {
+                    blockMinX = Math.min(blockMinX, nodes[i].x);
+                    blockMinZ = Math.min(blockMinZ, nodes[i].z);
+                    blockMaxX = Math.max(blockMaxX, nodes[i].x);
+                    blockMaxZ = Math.max(blockMaxZ, nodes[i].z);
+                }
+                this.blockBounds[block * 4] = blockMinX;
+                this.blockBounds[block * 4 + 1] = blockMinZ;
+                this.blockBounds[block * 4 + 2] = blockMaxX;
+                this.blockBounds[block * 4 + 3] = blockMaxZ;
+            }
+            this.minX = this.minZ = Double.MAX_VALUE;
+            this.maxX = this.maxZ = -Double.MAX_VALUE;
+            for (int block = 0; block < blocks; block++) {
+                this.minX = Math.min(this.minX, this.blockBounds[block * 4]);
+                this.minZ = Math.min(this.minZ, this.blockBounds[block * 4 + 1]);
+                this.maxX = Math.max(this.maxX, this.blockBounds[block * 4 + 2]);
+                this.maxZ = Math.max(this.maxZ, this.blockBounds[block * 4 + 3]);
+            }
+        }
+
+        //
+        // getters
+        //
+
+        public int size() { return this.nodes.length; }
+
+        public MapNode getNode(int index) { return this.nodes[index]; }
+
+        public MapNode getStart() { return this.nodes[0]; }
+
+        public MapNode getEnd() { return this.nodes[this.nodes.length - 1]; }
+
+        // ConnectionList.TYPE_* of every connection in the chain
+
+        public int getType() { return this.type; }
+
+        public double getMinX() { return this.minX; }
+
+        public double getMinZ() { return this.minZ; }
+
+        public double getMaxX() { return this.maxX; }
+
+        public double getMaxZ() { return this.maxZ; }
+
+        public boolean intersects(double minX, double minZ, double maxX, double maxZ) {
+            return this.minX <= maxX && this.maxX >= minX && this.minZ <= maxZ && this.maxZ >= minZ;
+        }
+
+        // block b covers the connections between nodes getBlockStart(b) and getBlockEnd(b)
+
+        public int getBlockCount() { return (this.nodes.length - 2) / BLOCK_SIZE + 1; }
+
+        public int getBlockStart(int block) { return block * BLOCK_SIZE; }
+
+        public int getBlockEnd(int block) { return Math.min((block + 1) * BLOCK_SIZE, this.nodes.length - 1); }
+
+        public boolean blockIntersects(int block, double minX, double minZ, double maxX, double maxZ) {
+            int offset = block * 4;
+            return this.blockBounds[offset] <= maxX && this.blockBounds[offset + 2] >= minX && this.blockBounds[offset + 1] <= maxZ && this.blockBounds[offset + 3] >= minZ;
+        }
+
+        // distance from the world position to the nearest point of the polyline
+
+        public double distanceTo(double x, double z) {
+            double best = Double.MAX_VALUE;
+            for (int block = 0; block < getBlockCount(); block++) {
+
+                // a block whose bounds are further away than the best so far can't beat it
+
+                int offset = block * 4;
+                double outsideX = Math.max(0, Math.max(this.blockBounds[offset] - x, x - this.blockBounds[offset + 2]));
+                double outsideZ = Math.max(0, Math.max(this.blockBounds[offset + 1] - z, z - this.blockBounds[offset + 3]));
+                if ((outsideX * outsideX) + (outsideZ * outsideZ) >= best) continue;
+                for (int i = getBlockStart(block) + 1; i <= getBlockEnd(block); i++) {
+                    best = Math.min(best, segmentDistanceSq(x, z, this.nodes[i - 1], this.nodes[i]));
+                }
+            }
+            return Math.sqrt(best);
+        }
+
+        // the node of the chain nearest to the world position
+
+        public MapNode getNearestNode(double x, double z) {
+            MapNode best = null;
+            double bestDistance = Double.MAX_VALUE;
+            for (MapNode mapNode : this.nodes) {
+                double distance = ((mapNode.x - x) * (mapNode.x - x)) + ((mapNode.z - z) * (mapNode.z - z));
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = mapNode;
+                }
+            }
+            return best;
+        }
+    }
+
+    public ChainIndex() {
+        this.cells = new HashMap<>();
+        this.interiorChains = new IdentityHashMap<>();
+        this.endChains = new IdentityHashMap<>();
+    }
+
+    @Override
+    public synchronized void networkChanged(List<NetworkEvent> events) {
+        Set<MapNode> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (NetworkEvent event : events) {
+            switch (event.type) {
+                case NetworkEvent.NETWORK_RESET:
+                    rebuild();
+                    touched.clear();
+                    break;
+                case NetworkEvent.NODE_ADDED:
+                case NetworkEvent.NODE_REMOVED:
+                case NetworkEvent.NODE_MOVED:
+                case NetworkEvent.CONNECTION_CHANGED:
+                case NetworkEvent.FLAG_CHANGED:
+                    if (event.mapNode != null) touched.add(event.mapNode);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!touched.isEmpty()) update(touched);
+    }
+
+    // Every chain passing through minX <= x <= maxX and minZ <= z <= maxZ, plus a few that
+    // only come close
+
+    public synchronized ArrayList<Chain> getChainsInArea(double minX, double minZ, double maxX, double maxZ) {
+        ArrayList<Chain> result = new ArrayList<>();
+        if (minX > maxX || minZ > maxZ) return result;
+        Set<Chain> found = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        long startX = cellOf(minX);
+        long startZ = cellOf(minZ);
+        long endX = cellOf(maxX);
+        long endZ = cellOf(maxZ);
+
+        if ((endX - startX + 1) * (endZ - startZ + 1) > this.cells.size()) {
+            for (ArrayList<Chain> cell : this.cells.values()) {
+                collect(cell, minX, minZ, maxX, maxZ, found, result);
+            }
+        } else {
+            for (long cellX = startX; cellX <= endX; cellX++) {
+                for (long cellZ = startZ; cellZ <= endZ; cellZ++) {
+                    ArrayList<Chain> cell = this.cells.get(key(cellX, cellZ));
+                    if (cell != null) collect(cell, minX, minZ, maxX, maxZ, found, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    // The chain passing closest to the world position, if it is within range of it
+
+    public synchronized Chain getChainAt(double x, double z, double range) {
+        Chain best = null;
+        double bestDistance = range;
+        for (Chain chain : getChainsInArea(x - range, z - range, x + range, z + range)) {
+            double distance = chain.distanceTo(x, z);
+            if (distance <= bestDistance) {
+                bestDistance = distance;
+                best = chain;
+            }
+        }
+        return best;
+    }
+
+    public synchronized int size() { return this.chainCount; }
+
+    // the chain the node is part of, for junctions and ends the first of them
+
+    public synchronized Chain getChainOf(MapNode mapNode) {
+        Chain chain = this.interiorChains.get(mapNode);
+        if (chain != null) return chain;
+        ArrayList<Chain> chains = this.endChains.get(mapNode);
+        return (chains != null && !chains.isEmpty()) ? chains.get(0) : null;
+    }
+
+    //
+    // internal
+    //
+
+    private static void collect(ArrayList<Chain> cell, double minX, double minZ, double maxX, double maxZ, Set<Chain> found, ArrayList<Chain> result) {
+        for (Chain chain : cell) {
+            if (chain.intersects(minX, minZ, maxX, maxZ) && found.add(chain)) result.add(chain);
+        }
+    }
+
+    private void rebuild() {
+        this.cells.clear();
+        this.interiorChains.clear();
+        this.endChains.clear();
+        this.chainCount = 0;
+        if (RoadMap.mapNodes == null) return;
+        for (MapNode mapNode : RoadMap.mapNodes) {
+            buildFrom(mapNode);
+        }
+    }
+
+    private void update(Set<MapNode> touched) {
+
+        // throw away every chain a touched node was part of, and the chain of any neighbour
+        // that was an interior node and may now be a junction
+
+        Set<Chain> stale = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayList<MapNode> loose = new ArrayList<>();
+        Set<MapNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (MapNode mapNode : touched) {
+            addLoose(mapNode, seen, loose);
+            Chain interior = this.interiorChains.get(mapNode);
+            if (interior != null) stale.add(interior);
+            ArrayList<Chain> ends = this.endChains.get(mapNode);
+            if (ends != null) stale.addAll(ends);
+            if (RoadMap.isInNetwork(mapNode)) {
+                for (MapNode neighbour : getNeighbours(mapNode)) {
+                    addLoose(neighbour, seen, loose);
+                    Chain neighbourChain = this.interiorChains.get(neighbour);
+                    if (neighbourChain != null) stale.add(neighbourChain);
+                }
+            }
+        }
+
+        // removing a connection can leave a junction with only two neighbours, the chains
+        // meeting there have to be joined up, so keep going until nothing else turns stale
+
+        ArrayList<Chain> pending = new ArrayList<>(stale);
+        int checked = 0;
+        while (!pending.isEmpty() || checked < loose.size()) {
+            for (Chain chain : pending) {
+                removeChain(chain);
+                for (MapNode mapNode : chain.nodes) {
+                    addLoose(mapNode, seen, loose);
+                }
+            }
+            pending.clear();
+            for (; checked < loose.size(); checked++) {
+                MapNode mapNode = loose.get(checked);
+                ArrayList<Chain> ends = this.endChains.get(mapNode);
+                if (ends != null && RoadMap.isInNetwork(mapNode) && isInterior(mapNode)) {
+                    for (Chain chain : ends) {
+                        if (stale.add(chain)) pending.add(chain);
+                    }
+                }
+            }
+        }
+
+        for (MapNode mapNode : loose) {
+            if (RoadMap.isInNetwork(mapNode)) buildFrom(mapNode);
+        }
+    }
+
+    private static void addLoose(MapNode mapNode, Set<MapNode> seen, ArrayList<MapNode> loose) {
+        if (seen.add(mapNode)) loose.add(mapNode);
+    }
+
+    // make sure every connection of the node is in a chain
+
+    private void buildFrom(MapNode mapNode) {
+        if (this.interiorChains.containsKey(mapNode)) return;
+        MapNode end = mapNode;
+        if (isInterior(mapNode)) {
+
+            // walk along the road to the junction or end it leads to, or all the way round
+            // if it is a closed loop
+
+            MapNode previous = mapNode;
+            MapNode current = getNeighbours(mapNode).get(0);
+            while (current != mapNode && isInterior(current)) {
+                MapNode next = otherNeighbour(current, previous);
+                previous = current;
+                current = next;
+            }
+            end = current;
+        }
+        for (MapNode neighbour : getNeighbours(end)) {
+            if (!isCovered(end, neighbour)) addChain(walk(end, neighbour));
+        }
+    }
+
+    private ArrayList<MapNode> walk(MapNode start, MapNode first) {
+        ArrayList<MapNode> nodes = new ArrayList<>();
+        nodes.add(start);
+        MapNode previous = start;
+        MapNode current = first;
+        while (true) {
+            nodes.add(current);
+            if (current == start || !isInterior(current)) break;
+            MapNode next = otherNeighbour(current, previous);
+            previous = current;
+            current = next;
+        }
+        return nodes;
+    }
+
+    private boolean isCovered(MapNode end, MapNode neighbour) {
+        ArrayList<Chain> chains = this.endChains.get(end);
+        if (chains == null) return false;
+        for (Chain chain : chains) {
+            int last = chain.nodes.length - 1;
+            if (chain.nodes[0] == end && chain.nodes[1] == neighbour) return true;
+            if (chain.nodes[last] == end && chain.nodes[last - 1] == neighbour) return true;
+        }
+        return false;
+    }
+
+    private void addChain(ArrayList<MapNode> nodeList) {
+        Chain chain = new Chain(nodeList.toArray(new MapNode[0]));
+        int last = chain.nodes.length - 1;
+        for (int i = 1; i < last; i++) {
+            this.interiorChains.put(chain.nodes[i], chain);
+        }
+        this.endChains.computeIfAbsent(chain.nodes[0], k -> new ArrayList<>(2)).add(chain);
+        if (chain.nodes[last] != chain.nodes[0]) this.endChains.computeIfAbsent(chain.nodes[last], k -> new ArrayList<>(2)).add(chain);
+
+        LinkedHashSet<Long> wanted = new LinkedHashSet<>();
+        for (int i = 1; i <= last; i++) {
+            addSegmentCells(chain.nodes[i - 1], chain.nodes[i], wanted);
+        }
+        chain.cells = new long[wanted.size()];
+        int index = 0;
+        for (Long cellKey : wanted) {
+            chain.cells[index++] = cellKey;
+            this.cells.computeIfAbsent(cellKey, k -> new ArrayList<>(4)).add(chain);
+        }
+        this.chainCount++;
+    }
+
+    private void removeChain(Chain chain) {
+        int last = chain.nodes.length - 1;
+        for (int i = 1; i < last; i++) {
+            if (this.interiorChains.get(chain.nodes[i]) == chain) this.interiorChains.remove(chain.nodes[i]);
+        }
+        removeEnd(chain.nodes[0], chain);
+        removeEnd(chain.nodes[last], chain);
+        for (long cellKey : chain.cells) {
+            ArrayList<Chain> cell = this.cells.get(cellKey);
+            if (cell == null) continue;
+            cell.remove(chain);
+            if (cell.isEmpty()) this.cells.remove(cellKey);
+        }
+        this.chainCount--;
+    }
+
+    private void removeEnd(MapNode mapNode, Chain chain) {
+        ArrayList<Chain> chains = this.endChains.get(mapNode);
+        if (chains == null) return;
+        chains.remove(chain);
+        if (chains.isEmpty()) this.endChains.remove(mapNode);
+    }
+
+    //
+    // neighbours, the nodes joined to a node by a connection in either direction
+    //
+
+    private static ArrayList<MapNode> getNeighbours(MapNode mapNode) {
+        ArrayList<MapNode> neighbours = new ArrayList<>(4);
+        for (MapNode target : mapNode.outgoing) {
+            addNeighbour(mapNode, target, neighbours);
+        }
+        for (int i = 0; i < mapNode.outgoingReferrerCount; i++) {
+            addNeighbour(mapNode, mapNode.outgoingReferrers[i], neighbours);
+        }
+        return neighbours;
+    }
+
+    private static void addNeighbour(MapNode mapNode, MapNode neighbour, ArrayList<MapNode> neighbours) {
+        if (neighbour != mapNode && RoadMap.isInNetwork(neighbour) && !neighbours.contains(neighbour)) neighbours.add(neighbour);
+    }
+
+    private static boolean isInterior(MapNode mapNode) {
+        ArrayList<MapNode> neighbours = getNeighbours(mapNode);
+        return neighbours.size() == 2 && pairType(mapNode, neighbours.get(0)) == pairType(mapNode, neighbours.get(1));
+    }
+
+    private static MapNode otherNeighbour(MapNode mapNode, MapNode previous) {
+        ArrayList<MapNode> neighbours = getNeighbours(mapNode);
+        return (neighbours.get(0) == previous) ? neighbours.get(1) : neighbours.get(0);
+    }
+
+    // the type of the connection(s) between two nodes, the same whichever way round they
+    // are asked for. A dual connection counts as subprio if either end is.
+
+    private static int pairType(MapNode first, MapNode second) {
+        int forward = first.outgoing.indexOf(second);
+        int backward = second.outgoing.indexOf(first);
+        if (forward == -1) return (backward != -1) ? second.outgoing.getType(backward) : ConnectionList.TYPE_STANDARD;
+        int type = first.outgoing.getType(forward);
+        if (backward != -1 && second.outgoing.getType(backward) == ConnectionList.TYPE_SUBPRIO_DUAL) return ConnectionList.TYPE_SUBPRIO_DUAL;
+        return type;
+    }
+
+    private static double segmentDistanceSq(double x, double z, MapNode start, MapNode end) {
+        double dx = end.x - start.x;
+        double dz = end.z - start.z;
+        double lengthSq = (dx * dx) + (dz * dz);
+        double t = (lengthSq > 0) ? (((x - start.x) * dx) + ((z - start.z) * dz)) / lengthSq : 0;
+        t = Math.max(0, Math.min(1, t));
+        double nearX = start.x + (t * dx) - x;
+        double nearZ = start.z + (t * dz) - z;
+        return (nearX * nearX) + (nearZ * nearZ);
+    }
+
+    private static void addSegmentCells(MapNode start, MapNode end, LinkedHashSet<Long> wanted) {
+        long startX = cellOf(Math.min(start.x, end.x));
+        long startZ = cellOf(Math.min(start.z, end.z));
+        long endX = cellOf(Math.max(start.x, end.x));
+        long endZ = cellOf(Math.max(start.z, end.z));
+        for (long cellX = startX; cellX <= endX; cellX++) {
+            for (long cellZ = startZ; cellZ <= endZ; cellZ++) {
+                if (startX != endX && startZ != endZ) {
+                    double minX = cellX * CELL_SIZE;
+                    double minZ = cellZ * CELL_SIZE;
+                    if (!EdgeIndex.segmentIntersectsRect(start.x, start.z, end.x, end.z, minX, minZ, minX + CELL_SIZE, minZ + CELL_SIZE)) continue;
+                }
+                wanted.add(key(cellX, cellZ));
+            }
+        }
+    }
+
+    private static long cellOf(double position) {
+        return (long) Math.floor(position / CELL_SIZE);
+    }
+
+    private static Long key(long cellX, long cellZ) {
+        return (cellX << 32) ^ (cellZ & 0xFFFFFFFFL);
+    }
+}
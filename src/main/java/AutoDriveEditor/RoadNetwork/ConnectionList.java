@@ -0,0 +1,415 @@
+package AutoDriveEditor.RoadNetwork;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static AutoDriveEditor.RoadNetwork.MapNode.NODE_FLAG_SUBPRIO;
+
+//
+// The list of connections a MapNode holds in one direction.
+//
+// Behaves like any other List<MapNode>, but every node added or removed also has the owner
+// added or removed from that node's referrer list, so for any node RoadMap can answer
+// "who has me in their outgoing/incoming list" without walking the whole network.
+//
+// Outgoing lists also cache the shape of every connection ( is it dual, is it reverse ),
+// any change to either end's lists re-checks the connections between the two nodes, so
+// the renderer can read the type of a connection without scanning the neighbour lists.
+//
+// Most nodes only have one or two connections, a plain array scan is the fastest lookup for
+// those. Once a list grows past HASH_THRESHOLD ( busy yards, merged nodes ) it also keeps an
+// open addressed identity set of its members along with where each one first appears in the
+// list, so contains(), indexOf() and the type updates stay O(1) however many connections pile
+// up on one node. Inserting or removing anywhere but the end still shifts the entries after
+// it, the list keeps the order the connections are saved in.
+//
+// All the mutating List methods ( add, remove, clear, removeIf, addAll, iterator removal.. )
+// end up in add(int, MapNode), set(), remove(int) or clear(), which is where the index and
+// the cached types are kept in step, and where a CONNECTION_CHANGED event is raised for the
+// owner if it is part of the network.
+//
+
+public class ConnectionList extends AbstractList<MapNode> implements RandomAccess {
+
+    public static final int CONNECTIONS_OUTGOING = 0;
+    public static final int CONNECTIONS_INCOMING = 1;
+
+    // connection types returned by getType(), the first four match MapPanel.CONNECTION_*
+
+    public static final int TYPE_STANDARD = 0;
+    public static final int TYPE_SUBPRIO = 1;
+    public static final int TYPE_DUAL = 2;
+    public static final int TYPE_REVERSE = 3;
+    public static final int TYPE_SUBPRIO_DUAL = 4;
+
+    // cached shape bits, the subprio part of the type comes from the owners flag when read
+
+    private static final byte SHAPE_DUAL = 1;
+    private static final byte SHAPE_REVERSE = 2;
+
+    private static final int HASH_THRESHOLD = 8;
+
+    // dead end nodes have an empty list in one direction, they all share these until the
+    // first add()
+
+    private static final MapNode[] NO_CONNECTIONS = new MapNode[0];
+    private static final byte[] NO_SHAPES = new byte[0];
+
+    private final MapNode owner;
+    private final int direction;
+    private MapNode[] connections;
+    private byte[] shapes;
+    private int size;
+
+    // membership set, only created above HASH_THRESHOLD. Counts are kept per key as the
+    // same node can be in the list more than once, hashFirst is the index of its first entry.
+
+    private MapNode[] hashKeys;
+    private int[] hashCounts;
+    private int[] hashFirst;
+    private int hashUsed;
+
+    public ConnectionList(MapNode owner, int direction) {
+        this.owner = owner;
+        this.direction = direction;
+        this.connections = NO_CONNECTIONS;
+        this.shapes = (direction == CONNECTIONS_OUTGOING) ? NO_SHAPES : null;
+        this.size = 0;
+    }
+
+    @Override
+    public MapNode get(int index) {
+        checkIndex(index, this.size);
+        return this.connections[index];
+    }
+
+    @Override
+    public int size() { return this.size; }
+
+    @Override
+    public int indexOf(Object o) {
+        if (this.hashKeys != null) {
+            if (!(o instanceof MapNode)) return -1;
+            int slot = findSlot((MapNode) o);
+            return (this.hashKeys[slot] != null) ? this.hashFirst[slot] : -1;
+        }
+        for (int i = 0; i < this.size; i++) {
+            if (this.connections[i] == o) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (this.hashKeys == null) return indexOf(o) != -1;
+        if (!(o instanceof MapNode)) return false;
+        return this.hashKeys[findSlot((MapNode) o)] != null;
+    }
+
+    @Override
+    public void add(int index, MapNode mapNode) {
+        checkIndex(index, this.size + 1);
+        if (this.size == this.connections.length) {
+            int newLength = Math.max(2, this.size * 2);
+            this.connections = Arrays.copyOf(this.connections, newLength);
+            if (this.shapes != null) this.shapes = Arrays.copyOf(this.shapes, newLength);
+        }
+        System.arraycopy(this.connections, index, this.connections, index + 1, this.size - index);
+        if (this.shapes != null) System.arraycopy(this.shapes, index, this.shapes, index + 1, this.size - index);
+        this.connections[index] = mapNode;
+        this.size++;
+        this.modCount++;
+        if (this.hashKeys != null) {
+            hashShift(index + 1, 1);
+            hashAdd(mapNode, index);
+        } else if (this.size > HASH_THRESHOLD) {
+            buildHash();
+        }
+        addReferrer(mapNode);
+        connectionChanged(mapNode);
+        fireChanged();
+    }
+
+    @Override
+    public MapNode set(int index, MapNode mapNode) {
+        checkIndex(index, this.size);
+        MapNode previous = this.connections[index];
+        this.connections[index] = mapNode;
+        if (this.hashKeys != null) {
+            hashRemove(previous, index);
+            hashAdd(mapNode, index);
+        }
+        removeReferrer(previous);
+        addReferrer(mapNode);
+        connectionChanged(previous);
+        connectionChanged(mapNode);
+        fireChanged();
+        return previous;
+    }
+
+    @Override
+    public MapNode remove(int index) {
+        checkIndex(index, this.size);
+        MapNode removed = this.connections[index];
+        System.arraycopy(this.connections, index + 1, this.connections, index, this.size - index - 1);
+        if (this.shapes != null) System.arraycopy(this.shapes, index + 1, this.shapes, index, this.size - index - 1);
+        this.connections[--this.size] = null;
+        this.modCount++;
+        if (this.hashKeys != null) {
+            hashShift(index, -1);
+            hashRemove(removed, index);
+        }
+        removeReferrer(removed);
+        connectionChanged(removed);
+        fireChanged();
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index == -1) return false;
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        MapNode[] removed = Arrays.copyOf(this.connections, this.size);
+        Arrays.fill(this.connections, 0, this.size, null);
+        this.size = 0;
+        this.modCount++;
+        this.hashKeys = null;
+        this.hashCounts = null;
+        this.hashFirst = null;
+        this.hashUsed = 0;
+        for (MapNode mapNode : removed) {
+            removeReferrer(mapNode);
+            connectionChanged(mapNode);
+        }
+        if (removed.length > 0) fireChanged();
+    }
+
+    //
+    // connection types
+    //
+
+    public int getType(int index) {
+        checkIndex(index, this.size);
+        if (this.shapes == null) return TYPE_STANDARD;
+        boolean subPrio = this.owner.flag == NODE_FLAG_SUBPRIO;
+        if ((this.shapes[index] & SHAPE_DUAL) != 0) return subPrio ? TYPE_SUBPRIO_DUAL : TYPE_DUAL;
+        if ((this.shapes[index] & SHAPE_REVERSE) != 0) return TYPE_REVERSE;
+        return subPrio ? TYPE_SUBPRIO : TYPE_STANDARD;
+    }
+
+    // The type a connection of the given type has once its owner's flag is changed to flag,
+    // only the subprio part depends on it
+
+    static int typeForFlag(int type, int flag) {
+        boolean subPrio = flag == NODE_FLAG_SUBPRIO;
+        if (type == TYPE_DUAL || type == TYPE_SUBPRIO_DUAL) return subPrio ? TYPE_SUBPRIO_DUAL : TYPE_DUAL;
+        if (type == TYPE_REVERSE) return TYPE_REVERSE;
+        return subPrio ? TYPE_SUBPRIO : TYPE_STANDARD;
+    }
+
+    public boolean isDual(int index) {
+        checkIndex(index, this.size);
+        return this.shapes != null && (this.shapes[index] & SHAPE_DUAL) != 0;
+    }
+
+    public boolean isReverse(int index) {
+        checkIndex(index, this.size);
+        return this.shapes != null && (this.shapes[index] & SHAPE_REVERSE) != 0;
+    }
+
+    // Something in this list changed with regard to mapNode, re-check every connection
+    // between the two nodes whose shape could depend on it.
+
+    private void connectionChanged(MapNode mapNode) {
+        if (mapNode == null) return;
+        if (this.direction == CONNECTIONS_OUTGOING) {
+            this.updateShapes(mapNode);
+            mapNode.outgoing.updateShapes(this.owner);
+        } else {
+            mapNode.outgoing.updateShapes(this.owner);
+        }
+    }
+
+    private void updateShapes(MapNode target) {
+        int first = indexOf(target);
+        if (first == -1) return;
+
+        // the set knows how many entries there are, the scan can stop at the last of them
+
+        int remaining = this.size;
+        if (this.hashKeys != null) remaining = this.hashCounts[findSlot(target)];
+        byte shape = 0;
+        if (target.outgoing.contains(this.owner)) shape |= SHAPE_DUAL;
+        if (!target.incoming.contains(this.owner)) shape |= SHAPE_REVERSE;
+        for (int i = first; i < this.size && remaining > 0; i++) {
+            if (this.connections[i] == target) {
+                this.shapes[i] = shape;
+                remaining--;
+            }
+        }
+    }
+
+    private void fireChanged() {
+        if (RoadMap.isInNetwork(this.owner)) RoadMap.fireNetworkEvent(NetworkEvent.CONNECTION_CHANGED, this.owner);
+    }
+
+    //
+    // membership set, linear probing on the identity hash with backward shift deletion
+    //
+
+    private void buildHash() {
+        int capacity = Integer.highestOneBit(Math.max(this.size, HASH_THRESHOLD) * 4);
+        this.hashKeys = new MapNode[capacity];
+        this.hashCounts = new int[capacity];
+        this.hashFirst = new int[capacity];
+        this.hashUsed = 0;
+        for (int i = 0; i < this.size; i++) {
+            hashAdd(this.connections[i], i);
+        }
+    }
+
+    private int homeSlot(MapNode mapNode) {
+        int hash = System.identityHashCode(mapNode) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (this.hashKeys.length - 1);
+    }
+
+    private int findSlot(MapNode mapNode) {
+        int mask = this.hashKeys.length - 1;
+        int slot = homeSlot(mapNode);
+        while (this.hashKeys[slot] != null && this.hashKeys[slot] != mapNode) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // mapNode has just been put in the list at index
+
+    private void hashAdd(MapNode mapNode, int index) {
+        if (mapNode == null) return;
+        if ((this.hashUsed + 1) * 2 > this.hashKeys.length) {
+            MapNode[] oldKeys = this.hashKeys;
+            int[] oldCounts = this.hashCounts;
+            int[] oldFirst = this.hashFirst;
+            this.hashKeys = new MapNode[oldKeys.length * 2];
+            this.hashCounts = new int[oldKeys.length * 2];
+            this.hashFirst = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int slot = findSlot(oldKeys[i]);
+                    this.hashKeys[slot] = oldKeys[i];
+                    this.hashCounts[slot] = oldCounts[i];
+                    this.hashFirst[slot] = oldFirst[i];
+                }
+            }
+        }
+        int slot = findSlot(mapNode);
+        if (this.hashKeys[slot] == null) {
+            this.hashKeys[slot] = mapNode;
+            this.hashFirst[slot] = index;
+            this.hashUsed++;
+        } else if (index < this.hashFirst[slot]) {
+            this.hashFirst[slot] = index;
+        }
+        this.hashCounts[slot]++;
+    }
+
+    // The entries from index to the end have just moved by offset ( 1 after an insert, -1
+    // after a remove ), move the first positions that pointed at them along. Walked in the
+    // direction of the move so two entries of the same node next to each other can't be
+    // mistaken for one another.
+
+    private void hashShift(int index, int offset) {
+        if (offset > 0) {
+            for (int i = this.size - 1; i >= index; i--) {
+                hashMoved(i, offset);
+            }
+        } else {
+            for (int i = index; i < this.size; i++) {
+                hashMoved(i, offset);
+            }
+        }
+    }
+
+    private void hashMoved(int index, int offset) {
+        if (this.connections[index] == null) return;
+        int slot = findSlot(this.connections[index]);
+        if (this.hashFirst[slot] == index - offset) this.hashFirst[slot] = index;
+    }
+
+    // mapNode has just been taken out of the list at index, the entries after it already
+    // moved along
+
+    private void hashRemove(MapNode mapNode, int index) {
+        if (mapNode == null) return;
+        int slot = findSlot(mapNode);
+        if (this.hashKeys[slot] == null) return;
+        if (--this.hashCounts[slot] > 0) {
+
+            // it was the first entry, the next one is somewhere after it
+
+            if (this.hashFirst[slot] == index) {
+                int next = index;
+                while (this.connections[next] != mapNode) next++;
+                this.hashFirst[slot] = next;
+            }
+            return;
+        }
+
+        // shift any following entries of the same probe run back into the gap
+
+        int mask = this.hashKeys.length - 1;
+        int gap = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            MapNode key = this.hashKeys[next];
+            if (key == null) break;
+            int home = homeSlot(key);
+            boolean canMove = (gap <= next) ? (home <= gap || home > next) : (home <= gap && home > next);
+            if (canMove) {
+                this.hashKeys[gap] = key;
+                this.hashCounts[gap] = this.hashCounts[next];
+                this.hashFirst[gap] = this.hashFirst[next];
+                gap = next;
+            }
+        }
+        this.hashKeys[gap] = null;
+        this.hashCounts[gap] = 0;
+        this.hashFirst[gap] = 0;
+        this.hashUsed--;
+    }
+
+    //
+    // referrer index upkeep
+    //
+
+    private void addReferrer(MapNode target) {
+        if (target != null) target.addReferrer(this.direction, this.owner);
+    }
+
+    private void removeReferrer(MapNode target) {
+        if (target != null) target.removeReferrer(this.direction, this.owner);
+    }
+
+    //
+    // allocated sizes, for NetworkFootprint
+    //
+
+    int getCapacity() { return this.connections.length; }
+
+    boolean hasShapes() { return this.shapes != null; }
+
+    int getHashCapacity() { return (this.hashKeys != null) ? this.hashKeys.length : 0; }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+    }
+}
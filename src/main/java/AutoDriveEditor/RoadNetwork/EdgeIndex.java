@@ -0,0 +1,207 @@
+package AutoDriveEditor.RoadNetwork;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+//
+// Uniform grid over the x/z plane holding every connection in the network, so "which
+// connections cross this area" only looks at the cells covering the area. A connection is
+// entered in every cell its line actually passes through ( not every cell of its bounding
+// box ), so a long diagonal connection doesn't turn up in queries for areas it misses.
+//
+// Connections are filed under the node they start from, a query hands back the start nodes
+// and the caller walks their outgoing lists. Like SpatialIndex it is kept up to date from the
+// RoadMap change events.
+//
+// The render workers query it while the EDT may be editing, so the public methods lock.
+//
+
+public class EdgeIndex implements NetworkListener {
+
+    private static final double CELL_SIZE = 64;
+
+    private final HashMap<Long, ArrayList<MapNode>> cells;
+    private final IdentityHashMap<MapNode, long[]> nodeCells;
+
+    public EdgeIndex() {
+        this.cells = new HashMap<>();
+        this.nodeCells = new IdentityHashMap<>();
+    }
+
+    @Override
+    public synchronized void networkChanged(List<NetworkEvent> events) {
+        for (NetworkEvent event : events) {
+            switch (event.type) {
+                case NetworkEvent.NETWORK_RESET:
+                    rebuild();
+                    break;
+                case NetworkEvent.CONNECTION_CHANGED:
+                    refresh(event.mapNode);
+                    break;
+                case NetworkEvent.NODE_ADDED:
+                case NetworkEvent.NODE_REMOVED:
+                case NetworkEvent.NODE_MOVED:
+
+                    // the connections ending at the node came, went or moved as well
+
+                    refresh(event.mapNode);
+                    for (MapNode referrer : RoadMap.getOutgoingReferrers(event.mapNode)) {
+                        refresh(referrer);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Every node with an outgoing connection passing through minX <= x <= maxX and
+    // minZ <= z <= maxZ, in no particular order. Connections that only come close are
+    // included too, the caller does the exact test.
+
+    public synchronized ArrayList<MapNode> getStartNodesInArea(double minX, double minZ, double maxX, double maxZ) {
+        ArrayList<MapNode> result = new ArrayList<>();
+        if (minX > maxX || minZ > maxZ) return result;
+        Set<MapNode> found = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        long startX = cellOf(minX);
+        long startZ = cellOf(minZ);
+        long endX = cellOf(maxX);
+        long endZ = cellOf(maxZ);
+
+        if ((endX - startX + 1) * (endZ - startZ + 1) > this.cells.size()) {
+
+            // the area covers more cells than are in use, cheaper to walk the occupied ones
+
+            for (Long key : this.cells.keySet()) {
+                long cellX = key >> 32;
+                long cellZ = (int) (long) key;
+                if (cellX >= startX && cellX <= endX && cellZ >= startZ && cellZ <= endZ) {
+                    collect(this.cells.get(key), found, result);
+                }
+            }
+        } else {
+            for (long cellX = startX; cellX <= endX; cellX++) {
+                for (long cellZ = startZ; cellZ <= endZ; cellZ++) {
+                    ArrayList<MapNode> cell = this.cells.get(key(cellX, cellZ));
+                    if (cell != null) collect(cell, found, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() { return this.nodeCells.size(); }
+
+    // Does the line x1,y1 - x2,y2 pass through the rectangle, Liang-Barsky clipping
+
+    public static boolean segmentIntersectsRect(double x1, double y1, double x2, double y2, double minX, double minY, double maxX, double maxY) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double[] p = { -dx, dx, -dy, dy };
+        double[] q = { x1 - minX, maxX - x1, y1 - minY, maxY - y1 };
+        double enter = 0;
+        double leave = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) return false;
+            } else {
+                double t = q[i] / p[i];
+                if (p[i] < 0) {
+                    if (t > leave) return false;
+                    if (t > enter) enter = t;
+                } else {
+                    if (t < enter) return false;
+                    if (t < leave) leave = t;
+                }
+            }
+        }
+        return true;
+    }
+
+    //
+    // internal
+    //
+
+    private static void collect(ArrayList<MapNode> cell, Set<MapNode> found, ArrayList<MapNode> result) {
+        for (MapNode mapNode : cell) {
+            if (found.add(mapNode)) result.add(mapNode);
+        }
+    }
+
+    private void rebuild() {
+        this.cells.clear();
+        this.nodeCells.clear();
+        if (RoadMap.mapNodes == null) return;
+        for (MapNode mapNode : RoadMap.mapNodes) {
+            refresh(mapNode);
+        }
+    }
+
+    private void refresh(MapNode mapNode) {
+        long[] current = this.nodeCells.remove(mapNode);
+        if (current != null) {
+            for (long cellKey : current) {
+                removeFromCell(mapNode, cellKey);
+            }
+        }
+        if (!RoadMap.isInNetwork(mapNode) || mapNode.outgoing.isEmpty()) return;
+
+        ArrayList<Long> wanted = new ArrayList<>(4);
+        for (MapNode target : mapNode.outgoing) {
+            if (RoadMap.isInNetwork(target)) addSegmentCells(mapNode.x, mapNode.z, target.x, target.z, wanted);
+        }
+        if (wanted.isEmpty()) return;
+
+        long[] keys = new long[wanted.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = wanted.get(i);
+            this.cells.computeIfAbsent(keys[i], k -> new ArrayList<>(4)).add(mapNode);
+        }
+        this.nodeCells.put(mapNode, keys);
+    }
+
+    private static void addSegmentCells(double x1, double z1, double x2, double z2, ArrayList<Long> wanted) {
+        long startX = cellOf(Math.min(x1, x2));
+        long startZ = cellOf(Math.min(z1, z2));
+        long endX = cellOf(Math.max(x1, x2));
+        long endZ = cellOf(Math.max(z1, z2));
+        for (long cellX = startX; cellX <= endX; cellX++) {
+            for (long cellZ = startZ; cellZ <= endZ; cellZ++) {
+                if (startX != endX && startZ != endZ) {
+                    double minX = cellX * CELL_SIZE;
+                    double minZ = cellZ * CELL_SIZE;
+                    if (!segmentIntersectsRect(x1, z1, x2, z2, minX, minZ, minX + CELL_SIZE, minZ + CELL_SIZE)) continue;
+                }
+                Long key = key(cellX, cellZ);
+                if (!wanted.contains(key)) wanted.add(key);
+            }
+        }
+    }
+
+    private void removeFromCell(MapNode mapNode, long cellKey) {
+        ArrayList<MapNode> cell = this.cells.get(cellKey);
+        if (cell == null) return;
+        for (int i = cell.size() - 1; i >= 0; i--) {
+            if (cell.get(i) == mapNode) {
+                int last = cell.size() - 1;
+                cell.set(i, cell.get(last));
+                cell.remove(last);
+                break;
+            }
+        }
+        if (cell.isEmpty()) this.cells.remove(cellKey);
+    }
+
+    private static long cellOf(double position) {
+        return (long) Math.floor(position / CELL_SIZE);
+    }
+
+    private static Long key(long cellX, long cellZ) {
+        return (cellX << 32) ^ (cellZ & 0xFFFFFFFFL);
+    }
+}
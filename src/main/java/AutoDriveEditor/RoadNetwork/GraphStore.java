@@ -0,0 +1,309 @@
+package AutoDriveEditor.RoadNetwork;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+//
+// Compact struct-of-arrays copy of the road network.
+//
+// Coordinates and flags are held in primitive arrays indexed by the node's position in
+// RoadMap.mapNodes ( which also gives the AutoDrive id, position + 1 ), the connections are
+// stored in CSR form ( a start offset per node into one shared int array of target indexes ),
+// so walking the whole network touches a handful of arrays instead of chasing one object per
+// node and one per list entry.
+//
+// A GraphStore is never modified after it is built. RoadMap.getSnapshot() hands out one per
+// network version, so the draw threads and the autosave can read a consistent copy of the
+// network on their own threads while the editor carries on changing the live one.
+//
+// Because of that the arrays can be shared between versions, patch() makes the next version
+// from the last one when no node was added, removed or reordered in between, and only copies
+// the blocks ( node arrays, connections, markers ) that actually changed.
+//
+
+public class GraphStore {
+
+    private final long version;
+
+    private final MapNode[] nodes;
+    private final int[] id;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final int[] flag;
+
+    // CSR adjacency, the targets of node i are in [outStart[i], outStart[i+1])
+
+    private final Adjacency adjacency;
+
+    // markers, copied so later edits to the live MapMarker don't show through
+
+    private final Markers markers;
+
+    // reverse lookup for indexOf(), only built if a node has moved position in mapNodes
+    // since this copy was taken
+
+    private IdentityHashMap<MapNode, Integer> indexLookup;
+
+    private static final class Adjacency {
+        private final int[] outStart;
+        private final int[] outTarget;
+        private final byte[] outType;
+        private final int[] inStart;
+        private final int[] inTarget;
+
+        private Adjacency(int nodeCount, int outCount, int inCount) {
+            this.outStart = new int[nodeCount + 1];
+            this.outTarget = new int[outCount];
+            this.outType = new byte[outCount];
+            this.inStart = new int[nodeCount + 1];
+            this.inTarget = new int[inCount];
+        }
+
+        // the same connections with different types
+
+        private Adjacency(Adjacency shared, byte[] outType) {
+            this.outStart = shared.outStart;
+            this.outTarget = shared.outTarget;
+            this.outType = outType;
+            this.inStart = shared.inStart;
+            this.inTarget = shared.inTarget;
+        }
+    }
+
+    private static final class Markers {
+        private final int[] node;
+        private final String[] name;
+        private final String[] group;
+
+        private Markers(int markerCount) {
+            this.node = new int[markerCount];
+            this.name = new String[markerCount];
+            this.group = new String[markerCount];
+        }
+    }
+
+    private GraphStore(long version, MapNode[] nodes, int[] id, double[] x, double[] y, double[] z, int[] flag, Adjacency adjacency, Markers markers) {
+        this.version = version;
+        this.nodes = nodes;
+        this.id = id;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.flag = flag;
+        this.adjacency = adjacency;
+        this.markers = markers;
+    }
+
+    public static GraphStore build(List<MapNode> mapNodes) {
+        return build(mapNodes, Collections.emptyList(), 0);
+    }
+
+    public static GraphStore build(List<MapNode> mapNodes, Collection<MapMarker> mapMarkers, long version) {
+        int nodeCount = mapNodes.size();
+
+        // a NodeList already knows the position of each of its nodes
+
+        NodeList network = (mapNodes instanceof NodeList) ? (NodeList) mapNodes : null;
+        IdentityHashMap<MapNode, Integer> indexLookup = null;
+        if (network == null) indexLookup = new IdentityHashMap<>(nodeCount);
+
+        MapNode[] nodes = new MapNode[nodeCount];
+        int[] id = new int[nodeCount];
+        double[] x = new double[nodeCount];
+        double[] y = new double[nodeCount];
+        double[] z = new double[nodeCount];
+        int[] flag = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            MapNode mapNode = mapNodes.get(i);
+            if (indexLookup != null) indexLookup.put(mapNode, i);
+            nodes[i] = mapNode;
+            id[i] = i + 1;
+            x[i] = mapNode.x;
+            y[i] = mapNode.y;
+            z[i] = mapNode.z;
+            flag[i] = mapNode.flag;
+        }
+        return new GraphStore(version, nodes, id, x, y, z, flag, buildAdjacency(nodes, network, indexLookup), buildMarkers(mapMarkers, network, indexLookup));
+    }
+
+    //
+    // The next version of previous, where since it was taken only the nodes in changedNodes
+    // have moved or had their flag changed, and the connections and markers have changed
+    // if connectionsChanged / markersChanged say so. Nothing may have been added to, removed
+    // from or moved around in network. Returns null if a changed node isn't where previous
+    // has it, the caller should build() instead.
+    //
+
+    public static GraphStore patch(GraphStore previous, NodeList network, Collection<MapNode> changedNodes, boolean connectionsChanged, Collection<MapMarker> mapMarkers, boolean markersChanged, long version) {
+        int nodeCount = previous.nodes.length;
+        if (network.size() != nodeCount) return null;
+
+        double[] x = previous.x;
+        double[] y = previous.y;
+        double[] z = previous.z;
+        int[] flag = previous.flag;
+        byte[] outType = null;
+        if (!changedNodes.isEmpty()) {
+            x = x.clone();
+            y = y.clone();
+            z = z.clone();
+            flag = flag.clone();
+            for (MapNode mapNode : changedNodes) {
+                int index = mapNode.networkIndex;
+                if (mapNode.network != network || index < 0 || index >= nodeCount || previous.nodes[index] != mapNode) return null;
+                x[index] = mapNode.x;
+                y[index] = mapNode.y;
+                z[index] = mapNode.z;
+
+                // the subprio flag is part of the type of the node's outgoing connections
+
+                if (flag[index] != mapNode.flag && !connectionsChanged) {
+                    if (outType == null) outType = previous.adjacency.outType.clone();
+                    for (int c = previous.adjacency.outStart[index]; c < previous.adjacency.outStart[index + 1]; c++) {
+                        outType[c] = (byte) ConnectionList.typeForFlag(outType[c], mapNode.flag);
+                    }
+                }
+                flag[index] = mapNode.flag;
+            }
+        }
+        Adjacency adjacency = previous.adjacency;
+        if (connectionsChanged) {
+            adjacency = buildAdjacency(previous.nodes, network, null);
+        } else if (outType != null) {
+            adjacency = new Adjacency(adjacency, outType);
+        }
+        Markers markers = (markersChanged) ? buildMarkers(mapMarkers, network, null) : previous.markers;
+        return new GraphStore(version, previous.nodes, previous.id, x, y, z, flag, adjacency, markers);
+    }
+
+    private static Adjacency buildAdjacency(MapNode[] nodes, NodeList network, IdentityHashMap<MapNode, Integer> indexLookup) {
+        int nodeCount = nodes.length;
+        int outCount = 0;
+        int inCount = 0;
+        for (MapNode mapNode : nodes) {
+            outCount += mapNode.outgoing.size();
+            inCount += mapNode.incoming.size();
+        }
+
+        Adjacency adjacency = new Adjacency(nodeCount, outCount, inCount);
+        int outPos = 0;
+        int inPos = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            MapNode mapNode = nodes[i];
+
+            // connections to nodes that are no longer part of the network are dropped here
+
+            adjacency.outStart[i] = outPos;
+            ConnectionList outgoing = mapNode.outgoing;
+            for (int c = 0; c < outgoing.size(); c++) {
+                int target = indexOf(outgoing.get(c), network, indexLookup);
+                if (target != -1) {
+                    adjacency.outType[outPos] = (byte) outgoing.getType(c);
+                    adjacency.outTarget[outPos++] = target;
+                }
+            }
+            adjacency.inStart[i] = inPos;
+            for (MapNode incoming : mapNode.incoming) {
+                int target = indexOf(incoming, network, indexLookup);
+                if (target != -1) adjacency.inTarget[inPos++] = target;
+            }
+        }
+        adjacency.outStart[nodeCount] = outPos;
+        adjacency.inStart[nodeCount] = inPos;
+        return adjacency;
+    }
+
+    private static Markers buildMarkers(Collection<MapMarker> mapMarkers, NodeList network, IdentityHashMap<MapNode, Integer> indexLookup) {
+        int markerCount = 0;
+        for (MapMarker mapMarker : mapMarkers) {
+            if (indexOf(mapMarker.mapNode, network, indexLookup) != -1) markerCount++;
+        }
+
+        Markers markers = new Markers(markerCount);
+        int markerPos = 0;
+        for (MapMarker mapMarker : mapMarkers) {
+            int index = indexOf(mapMarker.mapNode, network, indexLookup);
+            if (index != -1) {
+                markers.node[markerPos] = index;
+                markers.name[markerPos] = mapMarker.name;
+                markers.group[markerPos] = mapMarker.group;
+                markerPos++;
+            }
+        }
+        return markers;
+    }
+
+    private static int indexOf(MapNode mapNode, NodeList network, IdentityHashMap<MapNode, Integer> indexLookup) {
+        if (network != null) return (mapNode.network == network) ? mapNode.networkIndex : -1;
+        Integer index = indexLookup.get(mapNode);
+        return (index != null) ? index : -1;
+    }
+
+    //
+    // getters
+    //
+
+    public long getVersion() { return this.version; }
+
+    public int size() { return this.nodes.length; }
+
+    public MapNode getNode(int index) { return this.nodes[index]; }
+
+    // The index of mapNode in this copy or -1 if it wasn't part of the network then. Usually
+    // the node's current position in mapNodes, nodes moved around by a delete are looked up.
+
+    public int indexOf(MapNode mapNode) {
+        int index = mapNode.networkIndex;
+        if (index >= 0 && index < this.nodes.length && this.nodes[index] == mapNode) return index;
+        return lookup(mapNode);
+    }
+
+    // the render workers call indexOf() from several threads at once, only the slow path
+    // that builds the reverse lookup needs the lock
+
+    private synchronized int lookup(MapNode mapNode) {
+        if (this.indexLookup == null) {
+            this.indexLookup = new IdentityHashMap<>(this.nodes.length);
+            for (int i = 0; i < this.nodes.length; i++) {
+                this.indexLookup.put(this.nodes[i], i);
+            }
+        }
+        Integer found = this.indexLookup.get(mapNode);
+        return (found != null) ? found : -1;
+    }
+
+    public int getId(int index) { return this.id[index]; }
+
+    public double getX(int index) { return this.x[index]; }
+
+    public double getY(int index) { return this.y[index]; }
+
+    public double getZ(int index) { return this.z[index]; }
+
+    public int getFlag(int index) { return this.flag[index]; }
+
+    public int getOutgoingCount(int index) { return this.adjacency.outStart[index + 1] - this.adjacency.outStart[index]; }
+
+    public int getOutgoing(int index, int connection) { return this.adjacency.outTarget[this.adjacency.outStart[index] + connection]; }
+
+    // one of the ConnectionList.TYPE_* values
+
+    public int getOutgoingType(int index, int connection) { return this.adjacency.outType[this.adjacency.outStart[index] + connection]; }
+
+    public int getIncomingCount(int index) { return this.adjacency.inStart[index + 1] - this.adjacency.inStart[index]; }
+
+    public int getIncoming(int index, int connection) { return this.adjacency.inTarget[this.adjacency.inStart[index] + connection]; }
+
+    public int getConnectionCount() { return this.adjacency.outStart[this.nodes.length]; }
+
+    public int getMarkerCount() { return this.markers.node.length; }
+
+    public int getMarkerNode(int marker) { return this.markers.node[marker]; }
+
+    public String getMarkerName(int marker) { return this.markers.name[marker]; }
+
+    public String getMarkerGroup(int marker) { return this.markers.group[marker]; }
+}
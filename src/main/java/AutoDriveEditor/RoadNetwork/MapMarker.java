@@ -17,7 +17,7 @@ public class MapMarker implements Comparable {
     public int compareTo(Object o) {
         if (o instanceof MapMarker) {
             MapMarker other = (MapMarker) o;
-            if (other.name.equals(name) && other.mapNode.id == mapNode.id) {
+            if (other.name.equals(name) && other.mapNode == mapNode) {
                 return 0;
             }
         }
@@ -25,26 +25,6 @@ public class MapMarker implements Comparable {
         return 1;
     }
 
-    @Override
-    public boolean equals(Object o) {
-
-        // If the object is compared with itself then return true
-        if (o == this) {
-            return true;
-        }
-
-        if (o instanceof MapMarker) {
-            MapMarker other = (MapMarker) o;
-            return other.name.equals(name) && other.mapNode.id == mapNode.id;
-        }
-
-        return false;
-    }
-
-    @Override
-    public int hashCode() {
-        int result = 17;
-        result = 31 * result + mapNode.id;
-        return result;
-    }
+    // equals()/hashCode() are left as identity, markers are looked up through RoadMap's
+    // node index and a node's id is free to change while the marker is stored there
 }
@@ -1,6 +1,19 @@
 package AutoDriveEditor.RoadNetwork;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+//
+// One waypoint of the road network.
+//
+// The big savegames have a few hundred thousand of these, so a node only holds what every
+// node needs. The editor only state ( selected, control node, warning + its type, scheduled
+// for delete ) is packed into one byte behind the accessors below, the overlap warning list
+// is only created for nodes that actually overlap something and the referrer lists are
+// bare arrays instead of one ArrayList per node.
+//
 
 public class MapNode {
 
@@ -13,40 +26,155 @@ public class MapNode {
     public static final int NODE_WARNING_NEGATIVE_Y = 2;
     public static final int NODE_WARNING_OVERLAP_Y = 3;
 
+    // bit layout of state, the warning type ( 0 - 3 ) sits in the top two bits used. The bits
+    // are read and written together, so only the EDT may change them ( the overlap scan hands
+    // its results back to the EDT, see ScanManager.ScanNetworkWorker )
+
+    private static final int STATE_SELECTED = 1;
+    private static final int STATE_CONTROL_NODE = 1 << 1;
+    private static final int STATE_WARNING = 1 << 2;
+    private static final int STATE_SCHEDULE_DELETE = 1 << 3;
+    private static final int STATE_WARNING_TYPE_SHIFT = 4;
+    private static final int STATE_WARNING_TYPE_MASK = 3 << STATE_WARNING_TYPE_SHIFT;
 
+    private static final MapNode[] NO_NODES = new MapNode[0];
 
-    public LinkedList<MapNode> incoming;
-    public LinkedList<MapNode> outgoing;
+    public ConnectionList incoming;
+    public ConnectionList outgoing;
     public double x, y, z;
     public int id, flag;
-    public boolean isControlNode;
-    public boolean isSelected;
-    public boolean hasWarning;
-    public int warningType;
-    public LinkedList<MapNode> warningNodes;
-    public boolean scheduleDelete;
+
+    // editor use only!
+
+    private byte state;
+    private ArrayList<MapNode> warningNodes;
+
+    // every node that has this node in its outgoing/incoming list, kept up to date by
+    // ConnectionList. Only the first xxxReferrerCount entries are in use.
+
+    MapNode[] outgoingReferrers;
+    MapNode[] incomingReferrers;
+    int outgoingReferrerCount;
+    int incomingReferrerCount;
+
+    // the NodeList this node is part of and its position in it, maintained by NodeList
+
+    NodeList network;
+    int networkIndex;
 
     public MapNode(int id, double x, double y, double z, int flag, boolean isSelected, boolean isControlNode) {
         this.id = id;
         this.x = x;
         this.y = y;
         this.z = z;
-        this.incoming = new LinkedList<>();
-        this.outgoing = new LinkedList<>();
+        this.outgoingReferrers = NO_NODES;
+        this.incomingReferrers = NO_NODES;
+        this.incoming = new ConnectionList(this, ConnectionList.CONNECTIONS_INCOMING);
+        this.outgoing = new ConnectionList(this, ConnectionList.CONNECTIONS_OUTGOING);
         this.flag = flag;
+        this.state = 0;
+        setSelected(isSelected);
+        setState(STATE_CONTROL_NODE, isControlNode);
+        this.warningNodes = null;
+        this.network = null;
+        this.networkIndex = -1;
+    }
+
+    //
+    // editor state
+    //
 
-        // editor use only!
+    public boolean isSelected() { return (this.state & STATE_SELECTED) != 0; }
 
-        this.isSelected = isSelected;
-        this.isControlNode = isControlNode;
-        this.hasWarning = false;
-        this.warningNodes = new LinkedList<>();
-        this.warningType = NODE_WARNING_NONE;
-        this.scheduleDelete = false;
+    public void setSelected(boolean selected) { setState(STATE_SELECTED, selected); }
+
+    public boolean isControlNode() { return (this.state & STATE_CONTROL_NODE) != 0; }
+
+    public boolean isScheduledForDelete() { return (this.state & STATE_SCHEDULE_DELETE) != 0; }
+
+    public void setScheduledForDelete(boolean scheduleDelete) { setState(STATE_SCHEDULE_DELETE, scheduleDelete); }
+
+    public boolean hasWarning() { return (this.state & STATE_WARNING) != 0; }
+
+    public int getWarningType() { return (this.state & STATE_WARNING_TYPE_MASK) >> STATE_WARNING_TYPE_SHIFT; }
+
+    // Flag the node with one of the NODE_WARNING_* types
+
+    public void setWarning(int warningType) {
+        this.state = (byte) ((this.state & ~STATE_WARNING_TYPE_MASK) | STATE_WARNING | ((warningType << STATE_WARNING_TYPE_SHIFT) & STATE_WARNING_TYPE_MASK));
     }
 
     public void clearWarning() {
-        this.hasWarning = false;
-        this.warningType = NODE_WARNING_NONE;
+        this.state = (byte) (this.state & ~(STATE_WARNING | STATE_WARNING_TYPE_MASK));
+    }
+
+    private void setState(int bit, boolean value) {
+        this.state = (byte) (value ? (this.state | bit) : (this.state & ~bit));
+    }
+
+    //
+    // overlap warnings, the list is only allocated while there is something in it
+    //
+
+    public List<MapNode> getWarningNodes() {
+        return (this.warningNodes != null) ? this.warningNodes : Collections.emptyList();
+    }
+
+    public int getWarningNodeCount() {
+        return (this.warningNodes != null) ? this.warningNodes.size() : 0;
+    }
+
+    public void addWarningNode(MapNode mapNode) {
+        if (this.warningNodes == null) this.warningNodes = new ArrayList<>(1);
+        if (!this.warningNodes.contains(mapNode)) this.warningNodes.add(mapNode);
+    }
+
+    public void removeWarningNode(MapNode mapNode) {
+        if (this.warningNodes == null) return;
+        this.warningNodes.remove(mapNode);
+        if (this.warningNodes.isEmpty()) this.warningNodes = null;
+    }
+
+    public void clearWarningNodes() {
+        this.warningNodes = null;
+    }
+
+    //
+    // referrers, only called by ConnectionList
+    //
+
+    void addReferrer(int direction, MapNode referrer) {
+        if (direction == ConnectionList.CONNECTIONS_OUTGOING) {
+            if (this.outgoingReferrerCount == this.outgoingReferrers.length) {
+                this.outgoingReferrers = Arrays.copyOf(this.outgoingReferrers, Math.max(2, this.outgoingReferrerCount * 2));
+            }
+            this.outgoingReferrers[this.outgoingReferrerCount++] = referrer;
+        } else {
+            if (this.incomingReferrerCount == this.incomingReferrers.length) {
+                this.incomingReferrers = Arrays.copyOf(this.incomingReferrers, Math.max(2, this.incomingReferrerCount * 2));
+            }
+            this.incomingReferrers[this.incomingReferrerCount++] = referrer;
+        }
+    }
+
+    void removeReferrer(int direction, MapNode referrer) {
+        if (direction == ConnectionList.CONNECTIONS_OUTGOING) {
+            this.outgoingReferrerCount = removeByIdentity(this.outgoingReferrers, this.outgoingReferrerCount, referrer);
+        } else {
+            this.incomingReferrerCount = removeByIdentity(this.incomingReferrers, this.incomingReferrerCount, referrer);
+        }
+    }
+
+    // removes the last occurrence, order doesn't matter so the last entry fills the gap
+
+    private static int removeByIdentity(MapNode[] referrers, int count, MapNode referrer) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (referrers[i] == referrer) {
+                referrers[i] = referrers[count - 1];
+                referrers[count - 1] = null;
+                return count - 1;
+            }
+        }
+        return count;
     }
 }
@@ -0,0 +1,123 @@
+package AutoDriveEditor.RoadNetwork;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static AutoDriveEditor.GUI.MenuBuilder.*;
+import static AutoDriveEditor.Utils.LoggerUtils.*;
+
+//
+// Stages a batch of edits to the road network and applies them in one go.
+//
+// The tools that build many nodes at once ( curves, linear lines, paste ) create their nodes
+// and connections through a transaction instead of adding them to RoadMap one at a time.
+// commit() appends all the new nodes to mapNodes in a single step and makes the staged
+// connections in the order they were staged, the change events of the whole commit reach
+// the listeners as one batch. Recording the undo step and repainting are left to the caller.
+//
+// Get one from RoadMap.beginTransaction(), a transaction can only be committed once.
+//
+
+public class MapTransaction {
+
+    private final ArrayList<MapNode> addedNodes;
+    private final ArrayList<PendingConnection> connections;
+    private boolean committed;
+
+    private static class PendingConnection {
+        private final MapNode start;
+        private final MapNode target;
+        private final int type;
+
+        private PendingConnection(MapNode start, MapNode target, int type) {
+            this.start = start;
+            this.target = target;
+            this.type = type;
+        }
+    }
+
+    MapTransaction() {
+        this.addedNodes = new ArrayList<>();
+        this.connections = new ArrayList<>();
+        this.committed = false;
+    }
+
+    // Create a new node that will be added to the network on commit()
+
+    public MapNode createNode(double x, double y, double z, int flag) {
+        checkOpen();
+        MapNode mapNode = new MapNode(RoadMap.mapNodes.size() + this.addedNodes.size() + 1, x, y, z, flag, false, false);
+        this.addedNodes.add(mapNode);
+        return mapNode;
+    }
+
+    // Stage an existing node ( e.g. one restored by redo ) to be added on commit(), the nodes
+    // connection lists are left as they are.
+
+    public void addNode(MapNode mapNode) {
+        checkOpen();
+        this.addedNodes.add(mapNode);
+    }
+
+    public void addNodes(Collection<MapNode> mapNodes) {
+        checkOpen();
+        this.addedNodes.addAll(mapNodes);
+    }
+
+    // Stage a connection, applied on commit() with RoadMap.toggleConnection(), so connecting
+    // two nodes that are already connected removes the connection.
+
+    public void connect(MapNode start, MapNode target, int type) {
+        checkOpen();
+        this.connections.add(new PendingConnection(start, target, type));
+    }
+
+    // Stage a connection between each node in the list and the one after it
+
+    public void connectChain(List<MapNode> chain, int type) {
+        checkOpen();
+        Iterator<MapNode> iterator = chain.iterator();
+        if (!iterator.hasNext()) return;
+        MapNode previous = iterator.next();
+        while (iterator.hasNext()) {
+            MapNode next = iterator.next();
+            this.connections.add(new PendingConnection(previous, next, type));
+            previous = next;
+        }
+    }
+
+    // Apply everything that was staged. An undo record that backs up connections has to be
+    // made before this is called.
+
+    public void commit() {
+        checkOpen();
+        this.committed = true;
+
+        RoadMap.beginEventBatch();
+        try {
+            RoadMap.mapNodes.addAll(this.addedNodes);
+            for (PendingConnection connection : this.connections) {
+                RoadMap.toggleConnection(connection.start, connection.target, connection.type);
+            }
+        } finally {
+            RoadMap.endEventBatch();
+        }
+
+        if (bDebugUndoRedo) LOG.info("## MapTransaction.commit() ## added {} nodes, {} connections", this.addedNodes.size(), this.connections.size());
+    }
+
+    //
+    // getters
+    //
+
+    public List<MapNode> getAddedNodes() { return Collections.unmodifiableList(this.addedNodes); }
+
+    public boolean isCommitted() { return this.committed; }
+
+    private void checkOpen() {
+        if (this.committed) throw new IllegalStateException("MapTransaction has already been committed");
+    }
+}
@@ -0,0 +1,29 @@
+package AutoDriveEditor.RoadNetwork;
+
+//
+// One change to the road network, delivered to every NetworkListener registered with RoadMap.
+//
+// Events are only raised for nodes that are part of the network ( RoadMap.mapNodes ), the
+// exception being NODE_REMOVED which is raised as the node leaves it. A listener should
+// treat an event as "this node needs looking at again" rather than a full description of
+// the change, the node itself always holds the current state.
+//
+
+public class NetworkEvent {
+
+    public static final int NETWORK_RESET = 0;
+    public static final int NODE_ADDED = 1;
+    public static final int NODE_MOVED = 2;
+    public static final int NODE_REMOVED = 3;
+    public static final int CONNECTION_CHANGED = 4;
+    public static final int FLAG_CHANGED = 5;
+    public static final int MARKER_CHANGED = 6;
+
+    public final int type;
+    public final MapNode mapNode;
+
+    public NetworkEvent(int type, MapNode mapNode) {
+        this.type = type;
+        this.mapNode = mapNode;
+    }
+}
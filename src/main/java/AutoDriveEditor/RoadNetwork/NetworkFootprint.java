@@ -0,0 +1,160 @@
+package AutoDriveEditor.RoadNetwork;
+
+import java.util.ArrayList;
+
+//
+// Estimates how much heap a RoadMap takes up, for the debug menu and the -FOOTPRINT
+// command line option.
+//
+// There is no way to ask the JVM for the size of an object, so this adds up the fields and
+// the allocated array lengths of everything the network holds using the usual HotSpot
+// layout ( 12 byte object header, 16 byte array header, 4 byte references with compressed
+// oops, everything padded to 8 bytes ). Good enough to see where the memory goes and how
+// many bytes each node costs, not an exact count.
+//
+
+public class NetworkFootprint {
+
+    private static final int OBJECT_ALIGN = 8;
+
+    private final int objectHeader;
+    private final int arrayHeader;
+    private final int referenceSize;
+
+    private int nodeCount;
+    private int connectionCount;
+    private int markerCount;
+    private long nodeBytes;
+    private long connectionBytes;
+    private long referrerBytes;
+    private long warningBytes;
+    private long nodeListBytes;
+    private long markerBytes;
+
+    private NetworkFootprint() {
+
+        // compressed oops are on by default for heaps below 32GB
+
+        boolean compressed = !"32".equals(System.getProperty("sun.arch.data.model")) && Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024;
+        this.referenceSize = compressed ? 4 : 8;
+        this.objectHeader = compressed ? 12 : 16;
+        this.arrayHeader = compressed ? 16 : 24;
+    }
+
+    public static NetworkFootprint measure(RoadMap roadMap) {
+        NetworkFootprint footprint = new NetworkFootprint();
+        if (roadMap != null) footprint.add(roadMap);
+        return footprint;
+    }
+
+    private void add(RoadMap roadMap) {
+        NodeList nodes = roadMap.getNodes();
+        this.nodeCount = nodes.size();
+
+        // NodeList: elements, size, idsDirty + AbstractList.modCount
+
+        this.nodeListBytes = object(this.referenceSize + 4 + 1 + 4) + array(nodes.capacity(), this.referenceSize);
+
+        // MapNode: incoming, outgoing, x/y/z, id, flag, state, warningNodes, the two referrer
+        // arrays and their counts, network and networkIndex
+
+        long mapNodeSize = object(this.referenceSize * 2 + 8 * 3 + 4 * 2 + 1 + this.referenceSize * 3 + 4 * 2 + this.referenceSize + 4);
+
+        // ConnectionList: owner, direction, connections, shapes, size, hashKeys, hashCounts,
+        // hashUsed + AbstractList.modCount
+
+        long connectionListSize = object(this.referenceSize + 4 + this.referenceSize * 2 + 4 + this.referenceSize * 2 + 4 + 4);
+
+        // ArrayList: elementData, size + modCount
+
+        long arrayListSize = object(this.referenceSize + 4 + 4);
+
+        for (MapNode mapNode : nodes) {
+            this.nodeBytes += mapNodeSize;
+            this.connectionCount += mapNode.outgoing.size();
+            this.connectionBytes += connectionListSize * 2 + connectionArrays(mapNode.incoming) + connectionArrays(mapNode.outgoing);
+            if (mapNode.outgoingReferrers.length > 0) this.referrerBytes += array(mapNode.outgoingReferrers.length, this.referenceSize);
+            if (mapNode.incomingReferrers.length > 0) this.referrerBytes += array(mapNode.incomingReferrers.length, this.referenceSize);
+            int warnings = mapNode.getWarningNodeCount();
+            if (warnings > 0) this.warningBytes += arrayListSize + array(warnings, this.referenceSize);
+        }
+
+        // MapMarker: mapNode, name, group + the strings, a LinkedHashSet entry and an
+        // entry + list in the node index
+
+        long markerSize = object(this.referenceSize * 3);
+        long setEntrySize = object(4 + this.referenceSize * 5);
+        long indexEntrySize = this.referenceSize * 2L + arrayListSize;
+        for (MapMarker mapMarker : roadMap.getMarkers()) {
+            this.markerCount++;
+            this.markerBytes += markerSize + setEntrySize + indexEntrySize + array(1, this.referenceSize);
+            this.markerBytes += string(mapMarker.name) + string(mapMarker.group);
+        }
+    }
+
+    private long connectionArrays(ConnectionList connections) {
+        if (connections.getCapacity() == 0) return 0;
+        long bytes = array(connections.getCapacity(), this.referenceSize);
+        if (connections.hasShapes()) bytes += array(connections.getCapacity(), 1);
+        int hashCapacity = connections.getHashCapacity();
+        if (hashCapacity > 0) bytes += array(hashCapacity, this.referenceSize) + array(hashCapacity, 4) * 2;
+        return bytes;
+    }
+
+    // compact Latin-1 strings, value array + hash, coder and the header
+
+    private long string(String text) {
+        if (text == null) return 0;
+        return object(this.referenceSize + 4 + 1 + 1) + array(text.length(), 1);
+    }
+
+    private long object(int fieldBytes) {
+        return align(this.objectHeader + fieldBytes);
+    }
+
+    private long array(int length, int elementSize) {
+        return align(this.arrayHeader + (long) length * elementSize);
+    }
+
+    private static long align(long size) {
+        return (size + OBJECT_ALIGN - 1) / OBJECT_ALIGN * OBJECT_ALIGN;
+    }
+
+    //
+    // getters
+    //
+
+    public int getNodeCount() { return this.nodeCount; }
+
+    public int getConnectionCount() { return this.connectionCount; }
+
+    public long getTotalBytes() {
+        return this.nodeBytes + this.connectionBytes + this.referrerBytes + this.warningBytes + this.nodeListBytes + this.markerBytes;
+    }
+
+    public double getBytesPerNode() {
+        return (this.nodeCount > 0) ? (double) (getTotalBytes() - this.markerBytes) / this.nodeCount : 0;
+    }
+
+    // The whole report as it is shown in the text area / log
+
+    public ArrayList<String> getReport() {
+        ArrayList<String> lines = new ArrayList<>();
+        Runtime runtime = Runtime.getRuntime();
+        lines.add("Network footprint ( estimated, " + this.referenceSize + " byte references )");
+        lines.add(String.format("  Nodes %d , connections %d , markers %d", this.nodeCount, this.connectionCount, this.markerCount));
+        lines.add(String.format("  MapNode objects      %s", toMB(this.nodeBytes)));
+        lines.add(String.format("  Connection lists     %s", toMB(this.connectionBytes)));
+        lines.add(String.format("  Referrer arrays      %s", toMB(this.referrerBytes)));
+        lines.add(String.format("  Overlap warnings     %s", toMB(this.warningBytes)));
+        lines.add(String.format("  Node list            %s", toMB(this.nodeListBytes)));
+        lines.add(String.format("  Markers              %s", toMB(this.markerBytes)));
+        lines.add(String.format("  Total %s , %.1f bytes per node", toMB(getTotalBytes()), getBytesPerNode()));
+        lines.add(String.format("  JVM heap used %s of %s", toMB(runtime.totalMemory() - runtime.freeMemory()), toMB(runtime.maxMemory())));
+        return lines;
+    }
+
+    private static String toMB(long bytes) {
+        return String.format("%.2f MB", bytes / (1024.0 * 1024.0));
+    }
+}
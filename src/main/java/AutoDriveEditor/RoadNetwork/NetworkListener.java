@@ -0,0 +1,17 @@
+package AutoDriveEditor.RoadNetwork;
+
+import java.util.List;
+
+//
+// Anything that keeps data derived from the road network ( indexes, caches ) can register
+// with RoadMap.addNetworkListener() to be told what changed instead of rescanning mapNodes.
+//
+// Changes made inside a batch ( a MapTransaction commit, a bulk add/remove, a drag step.. )
+// are delivered together once the batch ends, in the order they happened. A node can appear
+// more than once in the same batch.
+//
+
+public interface NetworkListener {
+
+    void networkChanged(List<NetworkEvent> events);
+}
@@ -0,0 +1,307 @@
+package AutoDriveEditor.RoadNetwork;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static AutoDriveEditor.Utils.LoggerUtils.*;
+
+//
+// The list holding every MapNode in the network ( RoadMap.mapNodes ).
+//
+// Each node remembers which list it is in and at what position, so contains() and indexOf()
+// are O(1) and removeNode() can take a node out in O(1) by moving the last node into its
+// slot.
+//
+// The position of a node in this list has no meaning while editing, the AutoDrive id's
+// ( 1 based, contiguous ) are only written back into MapNode.id when something needs them,
+// see ensureIds(). Nothing has to renumber the network when a node is added or removed.
+//
+// Adding and removing nodes raises the matching RoadMap change events, the bulk operations
+// deliver theirs as one batch.
+//
+
+public class NodeList extends AbstractList<MapNode> implements RandomAccess {
+
+    private MapNode[] elements;
+    private int size;
+    private boolean idsDirty;
+
+    public NodeList() {
+        this.elements = new MapNode[16];
+        this.size = 0;
+        this.idsDirty = false;
+    }
+
+    @Override
+    public MapNode get(int index) {
+        checkIndex(index, this.size);
+        return this.elements[index];
+    }
+
+    @Override
+    public int size() { return this.size; }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof MapNode && ((MapNode) o).network == this;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return contains(o) ? ((MapNode) o).networkIndex : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) { return indexOf(o); }
+
+    @Override
+    public void add(int index, MapNode mapNode) {
+        checkIndex(index, this.size + 1);
+        if (contains(mapNode)) {
+            LOG.info("## NodeList.add() ## MapNode ID {} is already part of the network, ignoring", mapNode.id);
+            return;
+        }
+        if (this.size == this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, this.size * 2);
+        }
+        System.arraycopy(this.elements, index, this.elements, index + 1, this.size - index);
+        this.elements[index] = mapNode;
+        this.size++;
+        this.modCount++;
+        mapNode.network = this;
+        reindexFrom(index);
+        if (mapNode.id != index + 1 || index != this.size - 1) this.idsDirty = true;
+        fire(NetworkEvent.NODE_ADDED, mapNode);
+    }
+
+    // Append a whole batch, the backing array is grown at most once
+
+    @Override
+    public boolean addAll(Collection<? extends MapNode> c) {
+        int required = this.size + c.size();
+        if (required > this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, Math.max(required, this.size * 2));
+        }
+        boolean changed = false;
+        boolean live = isLive();
+        if (live) RoadMap.beginEventBatch();
+        try {
+            for (MapNode mapNode : c) {
+                if (contains(mapNode)) {
+                    LOG.info("## NodeList.addAll() ## MapNode ID {} is already part of the network, ignoring", mapNode.id);
+                    continue;
+                }
+                int index = this.size++;
+                this.elements[index] = mapNode;
+                mapNode.network = this;
+                mapNode.networkIndex = index;
+                if (mapNode.id != index + 1) this.idsDirty = true;
+                changed = true;
+                fire(NetworkEvent.NODE_ADDED, mapNode);
+            }
+        } finally {
+            if (changed) this.modCount++;
+            if (live) RoadMap.endEventBatch();
+        }
+        return changed;
+    }
+
+    @Override
+    public MapNode set(int index, MapNode mapNode) {
+        checkIndex(index, this.size);
+        MapNode previous = this.elements[index];
+        if (previous == mapNode) return previous;
+        if (contains(mapNode)) throw new IllegalArgumentException("MapNode ID " + mapNode.id + " is already part of the network");
+        release(previous);
+        this.elements[index] = mapNode;
+        mapNode.network = this;
+        mapNode.networkIndex = index;
+        this.idsDirty = true;
+        fire(NetworkEvent.NODE_REMOVED, previous);
+        fire(NetworkEvent.NODE_ADDED, mapNode);
+        return previous;
+    }
+
+    @Override
+    public MapNode remove(int index) {
+        checkIndex(index, this.size);
+        MapNode removed = this.elements[index];
+        System.arraycopy(this.elements, index + 1, this.elements, index, this.size - index - 1);
+        this.elements[--this.size] = null;
+        this.modCount++;
+        release(removed);
+        reindexFrom(index);
+        if (index != this.size) this.idsDirty = true;
+        fire(NetworkEvent.NODE_REMOVED, removed);
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index == -1) return false;
+        remove(index);
+        return true;
+    }
+
+    // Take a node out of the network in O(1), the last node in the list is moved into the gap
+    // so the order of the remaining nodes is not preserved.
+
+    public boolean removeNode(MapNode mapNode) {
+        int index = indexOf(mapNode);
+        if (index == -1) return false;
+        int last = this.size - 1;
+        if (index != last) {
+            this.elements[index] = this.elements[last];
+            this.elements[index].networkIndex = index;
+            this.idsDirty = true;
+        }
+        this.elements[last] = null;
+        this.size--;
+        this.modCount++;
+        release(mapNode);
+        fire(NetworkEvent.NODE_REMOVED, mapNode);
+        return true;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super MapNode> filter) {
+        int writeIndex = 0;
+        boolean live = isLive();
+        if (live) RoadMap.beginEventBatch();
+        try {
+            for (int readIndex = 0; readIndex < this.size; readIndex++) {
+                MapNode mapNode = this.elements[readIndex];
+                if (filter.test(mapNode)) {
+                    release(mapNode);
+                    fire(NetworkEvent.NODE_REMOVED, mapNode);
+                } else {
+                    mapNode.networkIndex = writeIndex;
+                    this.elements[writeIndex++] = mapNode;
+                }
+            }
+            if (writeIndex == this.size) return false;
+            Arrays.fill(this.elements, writeIndex, this.size, null);
+            this.size = writeIndex;
+            this.modCount++;
+            this.idsDirty = true;
+            return true;
+        } finally {
+            if (live) RoadMap.endEventBatch();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        Set<Object> toRemove = Collections.newSetFromMap(new IdentityHashMap<>(c.size() * 2));
+        toRemove.addAll(c);
+        return removeIf(toRemove::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        Set<Object> toKeep = Collections.newSetFromMap(new IdentityHashMap<>(c.size() * 2));
+        toKeep.addAll(c);
+        return removeIf(mapNode -> !toKeep.contains(mapNode));
+    }
+
+    @Override
+    public void clear() {
+        boolean live = isLive();
+        if (live) RoadMap.beginEventBatch();
+        try {
+            for (int i = 0; i < this.size; i++) {
+                MapNode mapNode = this.elements[i];
+                release(mapNode);
+                this.elements[i] = null;
+                fire(NetworkEvent.NODE_REMOVED, mapNode);
+            }
+            this.size = 0;
+            this.modCount++;
+            this.idsDirty = false;
+        } finally {
+            if (live) RoadMap.endEventBatch();
+        }
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        MapNode[] removed = Arrays.copyOfRange(this.elements, fromIndex, toIndex);
+        for (MapNode mapNode : removed) {
+            release(mapNode);
+        }
+        System.arraycopy(this.elements, toIndex, this.elements, fromIndex, this.size - toIndex);
+        Arrays.fill(this.elements, this.size - (toIndex - fromIndex), this.size, null);
+        this.size -= toIndex - fromIndex;
+        this.modCount++;
+        reindexFrom(fromIndex);
+        this.idsDirty = true;
+        boolean live = isLive();
+        if (live) RoadMap.beginEventBatch();
+        try {
+            for (MapNode mapNode : removed) {
+                fire(NetworkEvent.NODE_REMOVED, mapNode);
+            }
+        } finally {
+            if (live) RoadMap.endEventBatch();
+        }
+    }
+
+    //
+    // AutoDrive id's
+    //
+
+    // Write the 1 based position of every node into its id, only does any work if the list
+    // changed shape since the last call.
+
+    public void ensureIds() {
+        if (!this.idsDirty) return;
+        for (int i = 0; i < this.size; i++) {
+            this.elements[i].id = i + 1;
+        }
+        this.idsDirty = false;
+    }
+
+    // allocated length of the backing array, for NetworkFootprint
+
+    int capacity() { return this.elements.length; }
+
+    //
+    // internal
+    //
+
+    // only the list that is currently RoadMap.mapNodes raises change events, a list that
+    // belongs to an inactive RoadMap may be in use on another thread and must not touch the
+    // shared event batch either
+
+    private boolean isLive() {
+        return this == RoadMap.mapNodes;
+    }
+
+    private void fire(int type, MapNode mapNode) {
+        if (isLive()) RoadMap.fireNetworkEvent(type, mapNode);
+    }
+
+    private void reindexFrom(int index) {
+        for (int i = index; i < this.size; i++) {
+            this.elements[i].networkIndex = i;
+        }
+    }
+
+    private void release(MapNode mapNode) {
+        if (mapNode.network == this) {
+            mapNode.network = null;
+            mapNode.networkIndex = -1;
+        }
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+    }
+}
@@ -1,44 +1,211 @@
 package AutoDriveEditor.RoadNetwork;
 
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import javax.swing.SwingUtilities;
 
 import static AutoDriveEditor.GUI.MenuBuilder.*;
 import static AutoDriveEditor.Utils.LoggerUtils.*;
 
+//
+// A road network, the nodes, the markers attached to them and the name of the map.
+//
+// Any number of RoadMaps can exist but only one is active, that is the one being edited.
+// The active map's collections are also reachable through the static mapNodes/mapMarkers
+// and only the active map raises change events. An inactive map can be worked on from
+// any one thread ( e.g. a merge or an import running in a SwingWorker on a copy() ) and
+// is then swapped in on the EDT with activate().
+//
+
 public class RoadMap {
 
     public String roadMapName;
-    public static LinkedList<MapNode> mapNodes;
-    public static LinkedList<MapMarker> mapMarkers;
+    public static NodeList mapNodes;
+    public static LinkedHashSet<MapMarker> mapMarkers;
+
+    private final NodeList nodes;
+    private final LinkedHashSet<MapMarker> markers;
+
+    // all the markers attached to each node, markers and this are only changed together
+    // through addMapMarker()/removeMapMarker() so lookups never have to scan the marker list
+
+    private final IdentityHashMap<MapNode, ArrayList<MapMarker>> markersByNode;
+
+    private static RoadMap activeMap;
+    private static IdentityHashMap<MapNode, ArrayList<MapMarker>> markerIndex = new IdentityHashMap<>();
+
+    // change events, see NetworkListener. Events raised while a batch is open are held in
+    // pendingEvents and delivered when the outermost batch ends.
+
+    private static final ArrayList<NetworkListener> networkListeners = new ArrayList<>();
+    private static ArrayList<NetworkEvent> pendingEvents = new ArrayList<>();
+    private static int batchDepth = 0;
+
+    public static final SpatialIndex spatialIndex = new SpatialIndex();
+    public static final EdgeIndex edgeIndex = new EdgeIndex();
+    public static final ChainIndex chainIndex = new ChainIndex();
+
+    // bumped by every change event, getSnapshot() only rebuilds when it has moved on. What
+    // changed since the last snapshot is noted so it can patch that one instead of building
+    // the whole network again, see GraphStore.patch()
+
+    private static volatile long networkVersion = 0;
+    private static volatile GraphStore snapshot;
+    private static final Set<MapNode> snapshotChangedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+    private static boolean snapshotConnectionsChanged = false;
+    private static boolean snapshotMarkersChanged = false;
+    private static boolean snapshotRebuild = true;
+
+    static {
+        addNetworkListener(spatialIndex);
+        addNetworkListener(edgeIndex);
+        addNetworkListener(chainIndex);
+    }
 
     public RoadMap() {
-        mapMarkers = new LinkedList<>();
-        mapNodes = new LinkedList<>();
+        this(true);
+    }
+
+    public RoadMap(boolean activate) {
+        this.nodes = new NodeList();
+        this.markers = new LinkedHashSet<>();
+        this.markersByNode = new IdentityHashMap<>();
         this.roadMapName = null;
+        if (activate) activate();
+    }
+
+    // Make this the map being edited, everything listening for change events is told the
+    // whole network has been replaced. EDT only.
+
+    public void activate() {
+        activeMap = this;
+        mapNodes = this.nodes;
+        mapMarkers = this.markers;
+        markerIndex = this.markersByNode;
+        fireNetworkEvent(NetworkEvent.NETWORK_RESET, null);
+    }
+
+    public boolean isActive() { return activeMap == this; }
+
+    // A structural copy of this map, every node, connection, marker and overlap warning is
+    // duplicated so the copy shares nothing with the original. The copy is not active.
+    // Read from the thread that edits this map.
+
+    public RoadMap copy() {
+        RoadMap copy = new RoadMap(false);
+        copy.roadMapName = this.roadMapName;
+
+        int count = this.nodes.size();
+        ArrayList<MapNode> clones = new ArrayList<>(count);
+        for (MapNode mapNode : this.nodes) {
+            MapNode clone = new MapNode(mapNode.id, mapNode.x, mapNode.y, mapNode.z, mapNode.flag, false, mapNode.isControlNode());
+            if (mapNode.hasWarning()) clone.setWarning(mapNode.getWarningType());
+            clone.setScheduledForDelete(mapNode.isScheduledForDelete());
+            clones.add(clone);
+        }
+
+        // connections are remapped through the node positions, anything pointing outside
+        // this map is left behind
+
+        for (int i = 0; i < count; i++) {
+            MapNode mapNode = this.nodes.get(i);
+            MapNode clone = clones.get(i);
+            for (MapNode target : mapNode.outgoing) {
+                if (this.nodes.contains(target)) clone.outgoing.add(clones.get(target.networkIndex));
+            }
+            for (MapNode target : mapNode.incoming) {
+                if (this.nodes.contains(target)) clone.incoming.add(clones.get(target.networkIndex));
+            }
+            for (MapNode warningNode : mapNode.getWarningNodes()) {
+                if (this.nodes.contains(warningNode)) clone.addWarningNode(clones.get(warningNode.networkIndex));
+            }
+        }
+        copy.nodes.addAll(clones);
+
+        for (MapMarker mapMarker : this.markers) {
+            if (this.nodes.contains(mapMarker.mapNode)) {
+                copy.addMapMarker(new MapMarker(clones.get(mapMarker.mapNode.networkIndex), mapMarker.name, mapMarker.group));
+            }
+        }
+        return copy;
+    }
+
+    //
+    // getters
+    //
+
+    public NodeList getNodes() { return this.nodes; }
 
+    public LinkedHashSet<MapMarker> getMarkers() { return this.markers; }
+
+    public boolean contains(MapNode mapNode) { return this.nodes.contains(mapNode); }
+
+    public ArrayList<MapMarker> getMarkersFor(MapNode mapNode) {
+        ArrayList<MapMarker> found = this.markersByNode.get(mapNode);
+        return (found != null) ? found : new ArrayList<>(0);
     }
 
+    //
+    // Markers
+    //
+
     public void addMapMarker(MapMarker mapMarker) {
-        mapMarkers.add(mapMarker);
+        if (this.markers.add(mapMarker)) {
+            this.markersByNode.computeIfAbsent(mapMarker.mapNode, k -> new ArrayList<>(1)).add(mapMarker);
+            if (isActive()) fireNetworkEvent(NetworkEvent.MARKER_CHANGED, mapMarker.mapNode);
+        }
     }
 
-    public void insertMapNode(MapNode toAdd, LinkedList<MapNode> otherNodesInList, LinkedList<MapNode> otherNodesOutList) {
+    public static ArrayList<MapMarker> getMapMarkers(MapNode mapNode) {
+        ArrayList<MapMarker> markers = markerIndex.get(mapNode);
+        return (markers != null) ? markers : new ArrayList<>(0);
+    }
+
+    public static MapMarker getMapMarker(MapNode mapNode) {
+        ArrayList<MapMarker> markers = markerIndex.get(mapNode);
+        return (markers != null) ? markers.get(0) : null;
+    }
+
+    public static boolean hasMapMarker(MapNode mapNode) {
+        return markerIndex.containsKey(mapNode);
+    }
 
-        // starting at the index of where we need to insert the node
-        // increment the ID's of all nodes to the right of the mapNodes by +1
-        // so when we insert the node all the id's match their index
+    public static void removeMapMarker(MapMarker mapMarker) {
+        if (activeMap != null) activeMap.removeMarkersOf(mapMarker.mapNode);
+    }
 
-        LinkedList<MapNode> nodes = mapNodes;
-        if (bDebugUndoRedo) LOG.info("## insertMapNode() ## bumping all ID's of mapNodes index {} -> {} by +1", toAdd.id - 1, nodes.size() - 1);
-        for (int i = toAdd.id - 1; i <= nodes.size() - 1; i++) {
-            MapNode mapNode = nodes.get(i);
-            mapNode.id++;
+    private void removeMarkersOf(MapNode mapNode) {
+        ArrayList<MapMarker> removed = this.markersByNode.remove(mapNode);
+        if (removed != null) {
+            this.markers.removeAll(removed);
+            if (isActive()) fireNetworkEvent(NetworkEvent.MARKER_CHANGED, mapNode);
         }
+    }
+
+    //
+    // Nodes
+    //
 
-        // insert the MapNode into the list
+    // Start staging a batch of node/connection changes, see MapTransaction
+
+    public static MapTransaction beginTransaction() {
+        return new MapTransaction();
+    }
+
+    public void insertMapNode(MapNode toAdd, LinkedList<MapNode> otherNodesInList, LinkedList<MapNode> otherNodesOutList) {
 
-        if (bDebugUndoRedo) LOG.info("## insertMapNode() ## inserting index {} ( ID {} ) into mapNodes", toAdd.id - 1, toAdd.id );
-        mapNodes.add(toAdd.id -1 , toAdd);
+        // nodes are handles that keep their identity while editing, so putting one back into
+        // the network is just an append, the AutoDrive id's get sorted out by ensureIds()
+
+        if (bDebugUndoRedo) LOG.info("## insertMapNode() ## adding MapNode to the end of mapNodes");
+        this.nodes.add(toAdd);
 
         //now we need to restore all the connections to/from it
 
@@ -58,75 +225,300 @@ public class RoadMap {
     }
 
     public static void removeMapNode(MapNode toDelete) {
-        boolean deleted = false;
-        /*if (mapNodes.contains(toDelete)) {*/
-            mapNodes.remove(toDelete);
-            //deleted = true;
-        /*}*/
-
-        LinkedList<MapNode> nodes = mapNodes;
-        for (MapNode mapNode : nodes) {
-            mapNode.outgoing.remove(toDelete);
-            mapNode.incoming.remove(toDelete);
-            if (mapNode.id > toDelete.id) {
-                mapNode.id--;
-            }
+        if (activeMap != null) activeMap.removeNode(toDelete);
+    }
+
+    public static void removeMapNodes(Collection<MapNode> toDelete) {
+        if (activeMap != null) activeMap.removeNodes(toDelete);
+    }
+
+    public void removeNode(MapNode toDelete) {
+        boolean active = isActive();
+        if (active) beginEventBatch();
+        try {
+            this.nodes.removeNode(toDelete);
+            stripConnectionsTo(toDelete);
+            removeMarkersOf(toDelete);
+        } finally {
+            if (active) endEventBatch();
         }
+    }
+
+    public void removeNodes(Collection<MapNode> toDelete) {
+
+        // all the nodes are marked first, the node list is compacted in one pass and only
+        // the neighbours that actually point at a deleted node are touched.
 
-        LinkedList<MapMarker> mapMarkersToDelete = new LinkedList<>();
-        for (MapMarker mapMarker : mapMarkers) {
-            if (mapMarker.mapNode == toDelete) {
+        if (toDelete.isEmpty()) return;
+        Set<MapNode> tombstones = Collections.newSetFromMap(new IdentityHashMap<>(toDelete.size() * 2));
+        tombstones.addAll(toDelete);
 
-                mapMarkersToDelete.add(mapMarker);
+        boolean active = isActive();
+        if (active) beginEventBatch();
+        try {
+            int before = this.nodes.size();
+            this.nodes.removeIf(tombstones::contains);
+            if (bDebugUndoRedo) LOG.info("## removeMapNodes() ## removed {} nodes, {} remaining", before - this.nodes.size(), this.nodes.size());
+
+            for (MapNode mapNode : tombstones) {
+                stripConnectionsTo(mapNode);
+
+                // any markers linked to the deleted nodes go with them
+
+                removeMarkersOf(mapNode);
             }
-        }
-        for (MapMarker mapMarker : mapMarkersToDelete) {
-            removeMapMarker(mapMarker);
-            mapMarkers.remove(mapMarker);
+        } finally {
+            if (active) endEventBatch();
         }
     }
 
-    public static void removeMapMarker(MapMarker mapMarker) {
-        LinkedList<MapMarker> mapMarkersToKeep = new LinkedList<>();
-        for (MapMarker marker : mapMarkers) {
-            if (marker.mapNode.id != mapMarker.mapNode.id) {
-                mapMarkersToKeep.add(marker);
-            }
+    // Remove every connection a node still in the network has to a deleted node, the deleted
+    // node keeps its own lists so undo can restore them.
+
+    private void stripConnectionsTo(MapNode deleted) {
+        for (MapNode referrer : outgoingReferrersOf(deleted)) {
+            referrer.outgoing.removeIf(mapNode -> mapNode == deleted);
+        }
+        for (MapNode referrer : incomingReferrersOf(deleted)) {
+            referrer.incoming.removeIf(mapNode -> mapNode == deleted);
         }
-        mapMarkers = mapMarkersToKeep;
     }
 
-    public static boolean isDual(MapNode start, MapNode target) {
-        LinkedList<MapNode> nodes = start.outgoing;
-        for (MapNode outgoing : nodes) {
-            if (outgoing == target) {
-                LinkedList<MapNode> mapNodeLinkedList = target.outgoing;
-                for (MapNode outgoingTarget : mapNodeLinkedList) {
-                    if (outgoingTarget == start) {
-                        return true;
-                    }
+    // Write the AutoDrive id's ( 1 based position in mapNodes ) back into every node, only
+    // does any work if nodes were added or removed since the last call. Call this before
+    // anything that needs to read or show MapNode.id.
+
+    public static void ensureIds() {
+        if (mapNodes != null) mapNodes.ensureIds();
+    }
+
+    //
+    // Connections
+    //
+
+    // Connect start to target, or disconnect them if start already has a connection to target.
+    // type is one of ConnectionList.TYPE_STANDARD, TYPE_DUAL or TYPE_REVERSE ( the same values
+    // as MapPanel.CONNECTION_* ), a reverse connection only exists in start's outgoing list.
+
+    public static void toggleConnection(MapNode start, MapNode target, int type) {
+        if (start == target) {
+            return;
+        }
+
+        if (!start.outgoing.contains(target)) {
+            start.outgoing.add(target);
+
+            if (type == ConnectionList.TYPE_STANDARD) {
+                if (!target.incoming.contains(start))
+                target.incoming.add(start);
+            } else if (type == ConnectionList.TYPE_REVERSE ) {
+                start.incoming.remove(target);
+                target.incoming.remove(start);
+                target.outgoing.remove(start);
+            } else if (type == ConnectionList.TYPE_DUAL) {
+                if (!target.incoming.contains(start)) {
+                    target.incoming.add(start);
+                }
+                if (!target.outgoing.contains(start)) {
+                    target.outgoing.add(start);
+                }
+                if (!start.incoming.contains(target)) {
+                    start.incoming.add(target);
                 }
             }
+        } else {
+            if (type == ConnectionList.TYPE_STANDARD) {
+                start.outgoing.remove(target);
+                target.incoming.remove(start);
+            } else if (type == ConnectionList.TYPE_REVERSE ) {
+                start.outgoing.remove(target);
+                start.incoming.remove(target);
+                target.outgoing.remove(start);
+                target.incoming.remove(start);
+
+            } else if (type == ConnectionList.TYPE_DUAL) {
+                start.outgoing.remove(target);
+                start.incoming.remove(target);
+                target.incoming.remove(start);
+                target.outgoing.remove(start);
+            }
         }
+    }
 
-        return false;
+    //
+    // Referrer lookups, these only return nodes that are currently part of the network,
+    // a deleted node keeps its own connection lists so undo can put it back.
+    //
+
+    public static LinkedList<MapNode> getOutgoingReferrers(MapNode mapNode) {
+        return collectReferrers(mapNode.outgoingReferrers, mapNode.outgoingReferrerCount, mapNodes);
+    }
+
+    public static LinkedList<MapNode> getIncomingReferrers(MapNode mapNode) {
+        return collectReferrers(mapNode.incomingReferrers, mapNode.incomingReferrerCount, mapNodes);
+    }
+
+    // the same for the nodes of this map, active or not
+
+    public LinkedList<MapNode> outgoingReferrersOf(MapNode mapNode) {
+        return collectReferrers(mapNode.outgoingReferrers, mapNode.outgoingReferrerCount, this.nodes);
+    }
+
+    public LinkedList<MapNode> incomingReferrersOf(MapNode mapNode) {
+        return collectReferrers(mapNode.incomingReferrers, mapNode.incomingReferrerCount, this.nodes);
+    }
+
+    private static LinkedList<MapNode> collectReferrers(MapNode[] referrers, int count, NodeList network) {
+        LinkedList<MapNode> result = new LinkedList<>();
+        if (network == null) return result;
+        for (int i = 0; i < count; i++) {
+            MapNode referrer = referrers[i];
+            if (network.contains(referrer) && !result.contains(referrer)) result.add(referrer);
+        }
+        return result;
+    }
+
+    public static boolean isInNetwork(MapNode mapNode) {
+        return mapNodes != null && mapNodes.contains(mapNode);
+    }
+
+    public static boolean isDual(MapNode start, MapNode target) {
+        int index = start.outgoing.indexOf(target);
+        return index != -1 && start.outgoing.isDual(index);
     }
 
     public static boolean isReverse(MapNode start, MapNode target) {
-        LinkedList<MapNode> startNodes = target.incoming;
-        if (startNodes.size() >0) {
-            for (MapNode incoming : startNodes) {
-                if (incoming.id == start.id) {
-                    return false;
-                }
-            }
+        int index = start.outgoing.indexOf(target);
+        return index != -1 && start.outgoing.isReverse(index);
+    }
+
+    //
+    // Change events
+    //
+
+    public static synchronized void addNetworkListener(NetworkListener listener) {
+        if (!networkListeners.contains(listener)) networkListeners.add(listener);
+    }
+
+    public static synchronized void removeNetworkListener(NetworkListener listener) {
+        networkListeners.remove(listener);
+    }
+
+    // Hold back events until the matching endEventBatch(), batches can be nested. Always pair
+    // the two with try/finally.
+
+    public static synchronized void beginEventBatch() {
+        batchDepth++;
+    }
+
+    public static synchronized void endEventBatch() {
+        if (batchDepth == 0) return;
+        if (--batchDepth == 0 && !pendingEvents.isEmpty()) {
+            List<NetworkEvent> events = pendingEvents;
+            pendingEvents = new ArrayList<>();
+            deliverEvents(events);
         }
-        LinkedList<MapNode> outNodes = start.outgoing;
-        for (MapNode outgoing : outNodes) {
-            if (outgoing.id == target.id) {
-                return true;
-            }
+    }
+
+    // Node coordinates and flags are plain fields, whatever changes them has to say so
+
+    public static void fireNodeMoved(MapNode mapNode) {
+        if (isInNetwork(mapNode)) fireNetworkEvent(NetworkEvent.NODE_MOVED, mapNode);
+    }
+
+    public static void fireNodeFlagChanged(MapNode mapNode) {
+        if (isInNetwork(mapNode)) fireNetworkEvent(NetworkEvent.FLAG_CHANGED, mapNode);
+    }
+
+    public static void fireMarkerChanged(MapNode mapNode) {
+        if (isInNetwork(mapNode)) fireNetworkEvent(NetworkEvent.MARKER_CHANGED, mapNode);
+    }
+
+    static synchronized void fireNetworkEvent(int type, MapNode mapNode) {
+        networkVersion++;
+        noteSnapshotChange(type, mapNode);
+        NetworkEvent event = new NetworkEvent(type, mapNode);
+        if (batchDepth > 0) {
+            pendingEvents.add(event);
+        } else {
+            deliverEvents(Collections.singletonList(event));
+        }
+    }
+
+    // anything that adds, removes or reorders nodes moves the positions a GraphStore is indexed
+    // by, so the next snapshot has to be built from scratch
+
+    private static void noteSnapshotChange(int type, MapNode mapNode) {
+        if (snapshotRebuild) return;
+        switch (type) {
+            case NetworkEvent.NODE_MOVED:
+            case NetworkEvent.FLAG_CHANGED:
+                snapshotChangedNodes.add(mapNode);
+                break;
+            case NetworkEvent.CONNECTION_CHANGED:
+                snapshotConnectionsChanged = true;
+                break;
+            case NetworkEvent.MARKER_CHANGED:
+                snapshotMarkersChanged = true;
+                break;
+            default:
+                snapshotRebuild = true;
+                snapshotChangedNodes.clear();
+                break;
+        }
+    }
+
+    private static void deliverEvents(List<NetworkEvent> events) {
+        for (NetworkListener listener : networkListeners) {
+            listener.networkChanged(events);
+        }
+    }
+
+    //
+    // Snapshots
+    //
+
+    public static long getNetworkVersion() { return networkVersion; }
+
+    // An immutable copy of the network as it is now, the same copy is handed out until the
+    // network changes again. Only call this from the thread that edits the network ( the
+    // EDT ), anything else should use getSnapshotFromEditThread().
+
+    public static synchronized GraphStore getSnapshot() {
+        GraphStore current = snapshot;
+        long version = networkVersion;
+        if (current != null && current.getVersion() == version) return current;
+        NodeList network = (mapNodes != null) ? mapNodes : new NodeList();
+        Collection<MapMarker> markers = (mapMarkers != null) ? mapMarkers : Collections.emptyList();
+        GraphStore next = null;
+        if (current != null && !snapshotRebuild) {
+            next = GraphStore.patch(current, network, snapshotChangedNodes, snapshotConnectionsChanged, markers, snapshotMarkersChanged, version);
+        }
+        if (next == null) next = GraphStore.build(network, markers, version);
+        snapshotChangedNodes.clear();
+        snapshotConnectionsChanged = false;
+        snapshotMarkersChanged = false;
+        snapshotRebuild = false;
+        snapshot = next;
+        return next;
+    }
+
+    // For background threads ( autosave ), the snapshot is built on the EDT between two edits
+    // unless an up to date one already exists. Returns null if the EDT couldn't be asked, the
+    // caller should give up rather than read the live network from its own thread.
+
+    public static GraphStore getSnapshotFromEditThread() {
+        GraphStore current = snapshot;
+        if (SwingUtilities.isEventDispatchThread()) return getSnapshot();
+        if (current != null && current.getVersion() == networkVersion) return current;
+        GraphStore[] result = new GraphStore[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> result[0] = getSnapshot());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            LOG.error(e.getMessage(), e);
         }
-        return false;
+        return result[0];
     }
 }
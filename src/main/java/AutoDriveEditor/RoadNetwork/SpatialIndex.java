@@ -0,0 +1,135 @@
+package AutoDriveEditor.RoadNetwork;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+//
+// Uniform grid over the x/z plane holding every node in the network, so "which nodes are
+// near here" ( mouse hit testing, area selection, overlap checks ) only looks at the few
+// cells covering the area instead of the whole of mapNodes.
+//
+// The grid is kept up to date from the RoadMap change events, nothing else needs to call
+// into it to keep it in step.
+//
+
+public class SpatialIndex implements NetworkListener {
+
+    private static final double CELL_SIZE = 32;
+
+    private final HashMap<Long, ArrayList<MapNode>> cells;
+    private final IdentityHashMap<MapNode, Long> nodeCells;
+
+    public SpatialIndex() {
+        this.cells = new HashMap<>();
+        this.nodeCells = new IdentityHashMap<>();
+    }
+
+    @Override
+    public void networkChanged(List<NetworkEvent> events) {
+        for (NetworkEvent event : events) {
+            switch (event.type) {
+                case NetworkEvent.NETWORK_RESET:
+                    rebuild();
+                    break;
+                case NetworkEvent.NODE_ADDED:
+                case NetworkEvent.NODE_MOVED:
+                case NetworkEvent.NODE_REMOVED:
+                    refresh(event.mapNode);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // All the nodes with minX <= x <= maxX and minZ <= z <= maxZ, in mapNodes order
+
+    public ArrayList<MapNode> getNodesInArea(double minX, double minZ, double maxX, double maxZ) {
+        ArrayList<MapNode> result = new ArrayList<>();
+        if (minX > maxX || minZ > maxZ) return result;
+
+        long startX = cellOf(minX);
+        long startZ = cellOf(minZ);
+        long endX = cellOf(maxX);
+        long endZ = cellOf(maxZ);
+
+        if ((endX - startX + 1) * (endZ - startZ + 1) > this.cells.size()) {
+
+            // the area covers more cells than are in use, cheaper to walk the occupied ones
+
+            for (ArrayList<MapNode> cell : this.cells.values()) {
+                collect(cell, minX, minZ, maxX, maxZ, result);
+            }
+        } else {
+            for (long cellX = startX; cellX <= endX; cellX++) {
+                for (long cellZ = startZ; cellZ <= endZ; cellZ++) {
+                    ArrayList<MapNode> cell = this.cells.get(key(cellX, cellZ));
+                    if (cell != null) collect(cell, minX, minZ, maxX, maxZ, result);
+                }
+            }
+        }
+        result.sort((a, b) -> Integer.compare(a.networkIndex, b.networkIndex));
+        return result;
+    }
+
+    public int size() { return this.nodeCells.size(); }
+
+    //
+    // internal
+    //
+
+    private void rebuild() {
+        this.cells.clear();
+        this.nodeCells.clear();
+        if (RoadMap.mapNodes == null) return;
+        for (MapNode mapNode : RoadMap.mapNodes) {
+            refresh(mapNode);
+        }
+    }
+
+    private void refresh(MapNode mapNode) {
+        Long current = this.nodeCells.get(mapNode);
+        if (!RoadMap.isInNetwork(mapNode)) {
+            if (current != null) removeFromCell(mapNode, current);
+            return;
+        }
+        Long wanted = key(cellOf(mapNode.x), cellOf(mapNode.z));
+        if (wanted.equals(current)) return;
+        if (current != null) removeFromCell(mapNode, current);
+        this.cells.computeIfAbsent(wanted, k -> new ArrayList<>(4)).add(mapNode);
+        this.nodeCells.put(mapNode, wanted);
+    }
+
+    private void removeFromCell(MapNode mapNode, Long cellKey) {
+        this.nodeCells.remove(mapNode);
+        ArrayList<MapNode> cell = this.cells.get(cellKey);
+        if (cell == null) return;
+        for (int i = cell.size() - 1; i >= 0; i--) {
+            if (cell.get(i) == mapNode) {
+                int last = cell.size() - 1;
+                cell.set(i, cell.get(last));
+                cell.remove(last);
+                break;
+            }
+        }
+        if (cell.isEmpty()) this.cells.remove(cellKey);
+    }
+
+    private static void collect(ArrayList<MapNode> cell, double minX, double minZ, double maxX, double maxZ, ArrayList<MapNode> result) {
+        for (MapNode mapNode : cell) {
+            if (mapNode.x >= minX && mapNode.x <= maxX && mapNode.z >= minZ && mapNode.z <= maxZ) {
+                result.add(mapNode);
+            }
+        }
+    }
+
+    private static long cellOf(double position) {
+        return (long) Math.floor(position / CELL_SIZE);
+    }
+
+    private static Long key(long cellX, long cellZ) {
+        return (cellX << 32) ^ (cellZ & 0xFFFFFFFFL);
+    }
+}
@@ -49,6 +49,16 @@ public class EditorXML {
     public static int autoSaveInterval = 10;
     public static int maxAutoSaveSlots = 10;
 
+    // below these zoom levels nodes are drawn as a density grid and connections as plain
+    // lines without arrows, see NodeDensityLayer and ConnectionTileCache
+
+    public static double lodNodeZoomLevel = 2.0;
+    public static double lodConnectionZoomLevel = 1.0;
+
+    // the map panel never redraws more often than this, see MapPanel.requestRender()
+
+    public static int maxFrameRate = 60;
+
     public static ArrayList<MapZoomStore> mapZoomStore  = new ArrayList<>();
 
     public static class MapZoomStore {
@@ -96,6 +106,9 @@ public class EditorXML {
             bGridSnapSubs = getBooleanValue(bGridSnapSubs, e, "SnapSubDivision");
             gridSubDivisions = getIntegerValue(gridSubDivisions, e, "GridSubDivisions");
             rotationAngle = getIntegerValue( rotationAngle, e, "RotationStep");
+            lodNodeZoomLevel = getFloatValue((float)lodNodeZoomLevel, e, "LOD_NodeZoomLevel");
+            lodConnectionZoomLevel = getFloatValue((float)lodConnectionZoomLevel, e, "LOD_ConnectionZoomLevel");
+            maxFrameRate = getIntegerValue(maxFrameRate, e, "MaxFrameRate");
 
 
             NodeList zoomFactorList = doc.getElementsByTagName("mapzoomfactor");
@@ -163,6 +176,9 @@ public class EditorXML {
             setBooleanValue("SnapSubDivision",doc, bGridSnapSubs, root);
             setIntegerValue("GridSubDivisions", doc, gridSubDivisions, root);
             setIntegerValue("RotationStep", doc, rotationAngle, root);
+            setFloatValue("LOD_NodeZoomLevel", doc, (float)lodNodeZoomLevel, root);
+            setFloatValue("LOD_ConnectionZoomLevel", doc, (float)lodConnectionZoomLevel, root);
+            setIntegerValue("MaxFrameRate", doc, maxFrameRate, root);
 
 
             doc.appendChild(root);
@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
+import AutoDriveEditor.RoadNetwork.GraphStore;
 import AutoDriveEditor.RoadNetwork.MapMarker;
 import AutoDriveEditor.RoadNetwork.MapNode;
 import AutoDriveEditor.RoadNetwork.RoadMap;
@@ -86,7 +87,7 @@ public class GameXML {
         try
         {
             if (xmlConfigFile == null) return false;
-            saveXmlConfig(xmlConfigFile, newName, isAutoSave);
+            if (!saveXmlConfig(xmlConfigFile, newName, isAutoSave)) return false;
             getMapPanel().setStale(false);
             if (!isAutoSave) {
                 JOptionPane.showMessageDialog(editor, xmlConfigFile.getName() + " " + localeString.getString("dialog_save_success"), "AutoDrive", JOptionPane.INFORMATION_MESSAGE);
@@ -202,7 +203,7 @@ public class GameXML {
 
         NodeList nList = doc.getElementsByTagName("waypoints");
 
-        LinkedList<MapNode> nodes = new LinkedList<>();
+        ArrayList<MapNode> nodes = new ArrayList<>();
         for (int temp = 0; temp < nList.getLength(); temp++) {
 
             Node nNode = nList.item(temp);
@@ -310,9 +311,13 @@ public class GameXML {
             }
         }
 
-        RoadMap roadMap = new RoadMap();
-        RoadMap.mapNodes = nodes;
-        RoadMap.mapMarkers = mapMarkers;
+        // built off to the side, the editor only switches over to it in setRoadMap()
+
+        RoadMap roadMap = new RoadMap(false);
+        roadMap.getNodes().addAll(nodes);
+        for (MapMarker mapMarker : mapMarkers) {
+            roadMap.addMapMarker(mapMarker);
+        }
 
         // check for MapName element
 
@@ -329,7 +334,7 @@ public class GameXML {
         return roadMap;
     }
 
-    private static void saveXmlConfig(File file, String newName, boolean isAutoSave) throws ParserConfigurationException, IOException, SAXException, TransformerException, XPathExpressionException {
+    private static boolean saveXmlConfig(File file, String newName, boolean isAutoSave) throws ParserConfigurationException, IOException, SAXException, TransformerException, XPathExpressionException {
 
         DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
         DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
@@ -346,6 +351,15 @@ public class GameXML {
 
 
 
+        // work from an immutable snapshot of the network ( autosave runs off the EDT ), all the fields below are written from its arrays
+
+        GraphStore store = RoadMap.getSnapshotFromEditThread();
+        if (store == null) {
+            LOG.info("Unable to copy the road network, save skipped");
+            return false;
+        }
+        int nodeCount = store.size();
+
         // loop the staff child node
         NodeList list = waypoints.getChildNodes();
 
@@ -353,99 +367,90 @@ public class GameXML {
             Node node = list.item(i);
 
             if ("id".equals(node.getNodeName())) {
-                StringBuilder ids = new StringBuilder();
-                for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-                    MapNode mapNode = RoadMap.mapNodes.get(j);
-                    ids.append(mapNode.id);
-                    if (j < (RoadMap.mapNodes.size() - 1)) {
+                StringBuilder ids = new StringBuilder(nodeCount * 6);
+                for (int j = 0; j < nodeCount; j++) {
+                    ids.append(store.getId(j));
+                    if (j < (nodeCount - 1)) {
                         ids.append(",");
                     }
                 }
                 node.setTextContent(ids.toString());
             }
             if ("x".equals(node.getNodeName())) {
-                StringBuilder xPositions = new StringBuilder();
-                for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-                    MapNode mapNode = RoadMap.mapNodes.get(j);
-                    xPositions.append(mapNode.x);
-                    if (j < (RoadMap.mapNodes.size() - 1)) {
+                StringBuilder xPositions = new StringBuilder(nodeCount * 10);
+                for (int j = 0; j < nodeCount; j++) {
+                    xPositions.append(store.getX(j));
+                    if (j < (nodeCount - 1)) {
                         xPositions.append(",");
                     }
                 }
                 node.setTextContent(xPositions.toString());
             }
             if ("y".equals(node.getNodeName())) {
-                StringBuilder yPositions = new StringBuilder();
-                for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-                    MapNode mapNode = RoadMap.mapNodes.get(j);
-                    yPositions.append(mapNode.y);
-                    if (j < (RoadMap.mapNodes.size() - 1)) {
+                StringBuilder yPositions = new StringBuilder(nodeCount * 10);
+                for (int j = 0; j < nodeCount; j++) {
+                    yPositions.append(store.getY(j));
+                    if (j < (nodeCount - 1)) {
                         yPositions.append(",");
                     }
                 }
                 node.setTextContent(yPositions.toString());
             }
             if ("z".equals(node.getNodeName())) {
-                StringBuilder zPositions = new StringBuilder();
-                for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-                    MapNode mapNode = RoadMap.mapNodes.get(j);
-                    zPositions.append(mapNode.z);
-                    if (j < (RoadMap.mapNodes.size() - 1)) {
+                StringBuilder zPositions = new StringBuilder(nodeCount * 10);
+                for (int j = 0; j < nodeCount; j++) {
+                    zPositions.append(store.getZ(j));
+                    if (j < (nodeCount - 1)) {
                         zPositions.append(",");
                     }
                 }
                 node.setTextContent(zPositions.toString());
             }
             if ("incoming".equals(node.getNodeName())) {
-                StringBuilder incomingString = new StringBuilder();
-                for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-                    MapNode mapNode = RoadMap.mapNodes.get(j);
-                    StringBuilder incomingsPerNode = new StringBuilder();
-                    for (int incomingIndex = 0; incomingIndex < mapNode.incoming.size(); incomingIndex++) {
-                        MapNode incomingNode = mapNode.incoming.get(incomingIndex);
-                        incomingsPerNode.append(incomingNode.id);
-                        if (incomingIndex < (mapNode.incoming.size() - 1)) {
-                            incomingsPerNode.append(",");
+                StringBuilder incomingString = new StringBuilder(nodeCount * 8);
+                for (int j = 0; j < nodeCount; j++) {
+                    int incomingCount = store.getIncomingCount(j);
+                    if (incomingCount == 0) {
+                        incomingString.append("-1");
+                    } else {
+                        for (int incomingIndex = 0; incomingIndex < incomingCount; incomingIndex++) {
+                            incomingString.append(store.getId(store.getIncoming(j, incomingIndex)));
+                            if (incomingIndex < (incomingCount - 1)) {
+                                incomingString.append(",");
+                            }
                         }
                     }
-                    if (incomingsPerNode.toString().isEmpty()) {
-                        incomingsPerNode = new StringBuilder("-1");
-                    }
-                    incomingString.append(incomingsPerNode);
-                    if (j < (RoadMap.mapNodes.size() - 1)) {
+                    if (j < (nodeCount - 1)) {
                         incomingString.append(";");
                     }
                 }
                 node.setTextContent(incomingString.toString());
             }
             if ("out".equals(node.getNodeName())) {
-                StringBuilder outgoingString = new StringBuilder();
-                for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-                    MapNode mapNode = RoadMap.mapNodes.get(j);
-                    StringBuilder outgoingPerNode = new StringBuilder();
-                    for (int outgoingIndex = 0; outgoingIndex < mapNode.outgoing.size(); outgoingIndex++) {
-                        MapNode outgoingNode = mapNode.outgoing.get(outgoingIndex);
-                        outgoingPerNode.append(outgoingNode.id);
-                        if (outgoingIndex < (mapNode.outgoing.size() - 1)) {
-                            outgoingPerNode.append(",");
+                StringBuilder outgoingString = new StringBuilder(nodeCount * 8);
+                for (int j = 0; j < nodeCount; j++) {
+                    int outgoingCount = store.getOutgoingCount(j);
+                    if (outgoingCount == 0) {
+                        outgoingString.append("-1");
+                    } else {
+                        for (int outgoingIndex = 0; outgoingIndex < outgoingCount; outgoingIndex++) {
+                            outgoingString.append(store.getId(store.getOutgoing(j, outgoingIndex)));
+                            if (outgoingIndex < (outgoingCount - 1)) {
+                                outgoingString.append(",");
+                            }
                         }
                     }
-                    if (outgoingPerNode.toString().isEmpty()) {
-                        outgoingPerNode = new StringBuilder("-1");
-                    }
-                    outgoingString.append(outgoingPerNode);
-                    if (j < (RoadMap.mapNodes.size() - 1)) {
+                    if (j < (nodeCount - 1)) {
                         outgoingString.append(";");
                     }
                 }
                 node.setTextContent(outgoingString.toString());
             }
             if ("flags".equals(node.getNodeName())) {
-                StringBuilder flags = new StringBuilder();
-                for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-                    MapNode mapNode = RoadMap.mapNodes.get(j);
-                    flags.append(mapNode.flag);
-                    if (j < (RoadMap.mapNodes.size() - 1)) {
+                StringBuilder flags = new StringBuilder(nodeCount * 2);
+                for (int j = 0; j < nodeCount; j++) {
+                    flags.append(store.getFlag(j));
+                    if (j < (nodeCount - 1)) {
                         flags.append(",");
                     }
                 }
@@ -455,7 +460,7 @@ public class GameXML {
 
 
 
-        for (int markerIndex = 1; markerIndex < RoadMap.mapMarkers.size() + 100; markerIndex++) {
+        for (int markerIndex = 1; markerIndex < store.getMarkerCount() + 100; markerIndex++) {
             Element element = (Element) doc.getElementsByTagName("mm" + (markerIndex)).item(0);
             if (element != null) {
                 Element parent = (Element) element.getParentNode();
@@ -467,7 +472,7 @@ public class GameXML {
 
         NodeList testwaypoints = doc.getElementsByTagName("mapmarker");
 
-        if (RoadMap.mapMarkers.size() > 0 && testwaypoints.getLength() == 0 ) {
+        if (store.getMarkerCount() > 0 && testwaypoints.getLength() == 0 ) {
             LOG.info("{}", localeString.getString("console_markers_new"));
             Element test = doc.createElement("mapmarker");
             AutoDrive.appendChild(test);
@@ -476,19 +481,19 @@ public class GameXML {
         NodeList markerList = doc.getElementsByTagName("mapmarker");
         Node markerNode = markerList.item(0);
         int mapMarkerCount = 1;
-        for (MapMarker mapMarker : RoadMap.mapMarkers) {
+        for (int marker = 0; marker < store.getMarkerCount(); marker++) {
             Element newMapMarker = doc.createElement("mm" + mapMarkerCount);
 
             Element markerID = doc.createElement("id");
-            markerID.appendChild(doc.createTextNode("" + mapMarker.mapNode.id));
+            markerID.appendChild(doc.createTextNode("" + store.getId(store.getMarkerNode(marker))));
             newMapMarker.appendChild(markerID);
 
             Element markerName = doc.createElement("name");
-            markerName.appendChild(doc.createTextNode(mapMarker.name));
+            markerName.appendChild(doc.createTextNode(store.getMarkerName(marker)));
             newMapMarker.appendChild(markerName);
 
             Element markerGroup = doc.createElement("group");
-            markerGroup.appendChild(doc.createTextNode(mapMarker.group));
+            markerGroup.appendChild(doc.createTextNode(store.getMarkerGroup(marker)));
             newMapMarker.appendChild(markerGroup);
 
             markerNode.appendChild(newMapMarker);
@@ -536,7 +541,6 @@ public class GameXML {
         } else {
             LOG.info("{}", localeString.getString("console_config_save_end"));
         }
-
-
+        return true;
     }
 }
@@ -13,6 +13,8 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.XPathExpressionException;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Objects;
 import org.w3c.dom.Document;
@@ -21,6 +23,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import AutoDriveEditor.RoadNetwork.GraphStore;
 import AutoDriveEditor.RoadNetwork.MapMarker;
 import AutoDriveEditor.RoadNetwork.MapNode;
 import AutoDriveEditor.RoadNetwork.MarkerGroup;
@@ -40,6 +43,23 @@ import static AutoDriveEditor.XMLConfig.GameXML.*;
 public class RouteManagerXML {
 
     public static LinkedList<MarkerGroup> markerGroup = new LinkedList<>();
+    private static final HashMap<String, MarkerGroup> markerGroupIndex = new HashMap<>();
+
+    // markerGroup keeps the file order for saving, markerGroupIndex answers name lookups
+
+    public static void addMarkerGroup(MarkerGroup group) {
+        markerGroup.add(group);
+        markerGroupIndex.putIfAbsent(group.groupName, group);
+    }
+
+    public static boolean hasMarkerGroup(String groupName) {
+        return markerGroupIndex.containsKey(groupName);
+    }
+
+    public static void clearMarkerGroups() {
+        markerGroup.clear();
+        markerGroupIndex.clear();
+    }
 
     public static boolean  loadRouteManagerXML(File fXmlFile, boolean skipRoutesCheck, String mapName) {
         LOG.info("routemanager loadFile: {}", fXmlFile.getAbsolutePath());
@@ -97,7 +117,7 @@ public class RouteManagerXML {
         try
         {
             if (xmlConfigFile == null) return;
-            saveRouteXML(xmlConfigFile, newName, isAutoSave);
+            if (!saveRouteXML(xmlConfigFile, newName, isAutoSave)) return;
             getMapPanel().setStale(false);
             if (!isAutoSave) {
                 JOptionPane.showMessageDialog(editor, xmlConfigFile.getName() + " " + localeString.getString("dialog_save_success"), "AutoDrive", JOptionPane.INFORMATION_MESSAGE);
@@ -153,7 +173,7 @@ public class RouteManagerXML {
 
         NodeList waypointsList = doc.getElementsByTagName("waypoints");
 
-        LinkedList<MapNode> nodes = new LinkedList<>();
+        ArrayList<MapNode> nodes = new ArrayList<>();
 
         for (int temp = 0; temp < waypointsList.getLength(); temp++) {
             LOG.info("----------------------------");
@@ -239,7 +259,7 @@ public class RouteManagerXML {
         }
 
         NodeList groupList = doc.getElementsByTagName("g");
-        markerGroup.clear();
+        clearMarkerGroups();
         if (bDebugRouteManager) {
             LOG.info("----------------------------");
             LOG.info("Group Index length = {}", groupList.getLength());
@@ -253,7 +273,7 @@ public class RouteManagerXML {
                 String groupName = eElement.getAttribute("n");
                 if (bDebugRouteManager) LOG.info("Group {} : index {} , name {}", temp+1, groupId, groupName);
                 MarkerGroup group = new MarkerGroup(Integer.parseInt(groupId), groupName);
-                markerGroup.add(group);
+                addMarkerGroup(group);
             }
         }
         if (bDebugRouteManager) LOG.info("markerGroup size {}", markerGroup.size());
@@ -277,9 +297,13 @@ public class RouteManagerXML {
             }
         }
 
-        RoadMap roadMap = new RoadMap();
-        RoadMap.mapNodes = nodes;
-        RoadMap.mapMarkers = mapMarkers;
+        // built off to the side, the editor only switches over to it in setRoadMap()
+
+        RoadMap roadMap = new RoadMap(false);
+        roadMap.getNodes().addAll(nodes);
+        for (MapMarker mapMarker : mapMarkers) {
+            roadMap.addMapMarker(mapMarker);
+        }
 
         return roadMap;
     }
@@ -501,7 +525,7 @@ public class RouteManagerXML {
 
     }*/
 
-    private static void saveRouteXML(File file, String newName, boolean isAutoSave) throws ParserConfigurationException, IOException, SAXException, TransformerException, XPathExpressionException {
+    private static boolean saveRouteXML(File file, String newName, boolean isAutoSave) throws ParserConfigurationException, IOException, SAXException, TransformerException, XPathExpressionException {
 
         DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
         DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
@@ -512,21 +536,29 @@ public class RouteManagerXML {
         Element root = doc.createElement("routeExport");
         doc.appendChild(root);
 
+        // work from an immutable snapshot of the network ( autosave runs off the EDT ), all the child nodes are written from its arrays
+
+        GraphStore store = RoadMap.getSnapshotFromEditThread();
+        if (store == null) {
+            LOG.info("Unable to copy the road network, save skipped");
+            return false;
+        }
+        int nodeCount = store.size();
+
         // create a parent node for the waypoints
 
         Element waypoints = doc.createElement("waypoints");
         root.appendChild(waypoints);
-        waypoints.setAttribute("c", String.valueOf(RoadMap.mapNodes.size()));
+        waypoints.setAttribute("c", String.valueOf(nodeCount));
 
         // create a child node for all x co-ordinates
 
         Element xElement = doc.createElement("x");
         waypoints.appendChild(xElement);
-        StringBuilder xPositions = new StringBuilder();
-        for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-            MapNode mapNode = RoadMap.mapNodes.get(j);
-            xPositions.append(mapNode.x);
-            if (j < (RoadMap.mapNodes.size() - 1)) {
+        StringBuilder xPositions = new StringBuilder(nodeCount * 10);
+        for (int j = 0; j < nodeCount; j++) {
+            xPositions.append(store.getX(j));
+            if (j < (nodeCount - 1)) {
                 xPositions.append(";");
             }
         }
@@ -536,11 +568,10 @@ public class RouteManagerXML {
 
         Element yElement = doc.createElement("y");
         waypoints.appendChild(yElement);
-        StringBuilder yPositions = new StringBuilder();
-        for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-            MapNode mapNode = RoadMap.mapNodes.get(j);
-            yPositions.append(mapNode.y);
-            if (j < (RoadMap.mapNodes.size() - 1)) {
+        StringBuilder yPositions = new StringBuilder(nodeCount * 10);
+        for (int j = 0; j < nodeCount; j++) {
+            yPositions.append(store.getY(j));
+            if (j < (nodeCount - 1)) {
                 yPositions.append(";");
             }
         }
@@ -550,11 +581,10 @@ public class RouteManagerXML {
 
         Element zElement = doc.createElement("z");
         waypoints.appendChild(zElement);
-        StringBuilder zPositions = new StringBuilder();
-        for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-            MapNode mapNode = RoadMap.mapNodes.get(j);
-            zPositions.append(mapNode.z);
-            if (j < (RoadMap.mapNodes.size() - 1)) {
+        StringBuilder zPositions = new StringBuilder(nodeCount * 10);
+        for (int j = 0; j < nodeCount; j++) {
+            zPositions.append(store.getZ(j));
+            if (j < (nodeCount - 1)) {
                 zPositions.append(";");
             }
         }
@@ -564,22 +594,20 @@ public class RouteManagerXML {
 
         Element outElement = doc.createElement("out");
         waypoints.appendChild(outElement);
-        StringBuilder outString = new StringBuilder();
-        for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-            MapNode mapNode = RoadMap.mapNodes.get(j);
-            StringBuilder outgoingPerNode = new StringBuilder();
-            for (int outgoingIndex = 0; outgoingIndex < mapNode.outgoing.size(); outgoingIndex++) {
-                MapNode outgoingNode = mapNode.outgoing.get(outgoingIndex);
-                outgoingPerNode.append(outgoingNode.id);
-                if (outgoingIndex < (mapNode.outgoing.size() - 1)) {
-                    outgoingPerNode.append(",");
+        StringBuilder outString = new StringBuilder(nodeCount * 8);
+        for (int j = 0; j < nodeCount; j++) {
+            int outgoingCount = store.getOutgoingCount(j);
+            if (outgoingCount == 0) {
+                outString.append("-1");
+            } else {
+                for (int outgoingIndex = 0; outgoingIndex < outgoingCount; outgoingIndex++) {
+                    outString.append(store.getId(store.getOutgoing(j, outgoingIndex)));
+                    if (outgoingIndex < (outgoingCount - 1)) {
+                        outString.append(",");
+                    }
                 }
             }
-            if (outgoingPerNode.toString().isEmpty()) {
-                outgoingPerNode = new StringBuilder("-1");
-            }
-            outString.append(outgoingPerNode);
-            if (j < (RoadMap.mapNodes.size() - 1)) {
+            if (j < (nodeCount - 1)) {
                 outString.append(";");
             }
         }
@@ -589,22 +617,20 @@ public class RouteManagerXML {
 
         Element inElement = doc.createElement("in");
         waypoints.appendChild(inElement);
-        StringBuilder inString = new StringBuilder();
-        for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-            MapNode mapNode = RoadMap.mapNodes.get(j);
-            StringBuilder incomingsPerNode = new StringBuilder();
-            for (int incomingIndex = 0; incomingIndex < mapNode.incoming.size(); incomingIndex++) {
-                MapNode incomingNode = mapNode.incoming.get(incomingIndex);
-                incomingsPerNode.append(incomingNode.id);
-                if (incomingIndex < (mapNode.incoming.size() - 1)) {
-                    incomingsPerNode.append(",");
+        StringBuilder inString = new StringBuilder(nodeCount * 8);
+        for (int j = 0; j < nodeCount; j++) {
+            int incomingCount = store.getIncomingCount(j);
+            if (incomingCount == 0) {
+                inString.append("-1");
+            } else {
+                for (int incomingIndex = 0; incomingIndex < incomingCount; incomingIndex++) {
+                    inString.append(store.getId(store.getIncoming(j, incomingIndex)));
+                    if (incomingIndex < (incomingCount - 1)) {
+                        inString.append(",");
+                    }
                 }
             }
-            if (incomingsPerNode.toString().isEmpty()) {
-                incomingsPerNode = new StringBuilder("-1");
-            }
-            inString.append(incomingsPerNode);
-            if (j < (RoadMap.mapNodes.size() - 1)) {
+            if (j < (nodeCount - 1)) {
                 inString.append(";");
             }
         }
@@ -614,11 +640,10 @@ public class RouteManagerXML {
 
         Element flagsElement = doc.createElement("flags");
         waypoints.appendChild(flagsElement);
-        StringBuilder flags = new StringBuilder();
-        for (int j = 0; j < RoadMap.mapNodes.size(); j++) {
-            MapNode mapNode = RoadMap.mapNodes.get(j);
-            flags.append(mapNode.flag);
-            if (j < (RoadMap.mapNodes.size() - 1)) {
+        StringBuilder flags = new StringBuilder(nodeCount * 2);
+        for (int j = 0; j < nodeCount; j++) {
+            flags.append(store.getFlag(j));
+            if (j < (nodeCount - 1)) {
                 flags.append(";");
             }
         }
@@ -630,12 +655,12 @@ public class RouteManagerXML {
         root.appendChild(markers);
 
         // add all markers to the markers parent
-        for (MapMarker mapMarker : RoadMap.mapMarkers) {
+        for (int marker = 0; marker < store.getMarkerCount(); marker++) {
             Element newMapMarker = doc.createElement("m");
             markers.appendChild(newMapMarker);
-            newMapMarker.setAttribute("i", String.valueOf(mapMarker.mapNode.id));
-            newMapMarker.setAttribute("n", mapMarker.name);
-            newMapMarker.setAttribute("g", mapMarker.group);
+            newMapMarker.setAttribute("i", String.valueOf(store.getId(store.getMarkerNode(marker))));
+            newMapMarker.setAttribute("n", store.getMarkerName(marker));
+            newMapMarker.setAttribute("g", store.getMarkerGroup(marker));
         }
 
         // create a parent node for marker groups
@@ -679,8 +704,7 @@ public class RouteManagerXML {
         } else {
             LOG.info("{}", localeString.getString("console_config_save_end"));
         }
-
-
+        return true;
     }
 
     public static LinkedList<Route> getRoutesConfigContents(File routesFile) {